@@ -0,0 +1,481 @@
+package geometries;
+
+import primitives.BoundingBox;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * FlatBVH is a compact, linearized Bounding Volume Hierarchy.
+ * The nodes are stored in primitive arrays in depth-first order - the left child
+ * of a node always follows it - and the primitives are referenced by their index
+ * in a single array, so the traversal is an iterative loop with an explicit stack
+ * instead of recursion over linked lists of nested collections.<br>
+ * Unbounded geometries (e.g. planes) can't be placed in the hierarchy and are kept
+ * in a separate array that is always tested.<br>
+ * The hierarchy depends only on the boxes of the bounded geometries and their order, so
+ * it can be saved to a binary file ({@link #save(Path)}) keyed by a hash of the boxes
+ * ({@link #geometryKey(List)}), and loaded through a memory mapping for the same
+ * geometries instead of being rebuilt ({@link #load(Path, List)}).
+ */
+public class FlatBVH extends Intersectable {
+    /** The maximal amount of primitives in a leaf node */
+    private static final int MAX_LEAF_SIZE = 4;
+    /** The initial size of the traversal stack, it grows for deeper trees */
+    private static final int STACK_SIZE = 64;
+    /** The first number of a saved hierarchy file */
+    private static final int FILE_MAGIC = 0x48564246; // "FBVH" in little endian
+    /** The version of the saved hierarchy file layout */
+    private static final int FILE_VERSION = 1;
+    /** The size of the header of a saved hierarchy file in bytes */
+    private static final int FILE_HEADER = 24;
+
+    /** The bounded primitives, ordered so that every leaf references a contiguous range */
+    private final Intersectable[] primitives;
+    /** The unbounded primitives which are tested for every ray */
+    private final Intersectable[] unbounded;
+    /** The boxes of the nodes - 6 numbers per node: minimal x, y, z and maximal x, y, z */
+    private final double[] bounds;
+    /**
+     * The structure of the nodes - 2 numbers per node:<br>
+     * for a leaf - the index of its first primitive and the amount of its primitives,<br>
+     * for an internal node - the index of its right child and 0 (the left child is next to it)
+     */
+    private final int[] nodes;
+    /** The amount of nodes in the hierarchy */
+    private int nodeCount = 0;
+    /** The index of every primitive among the bounded geometries given to the constructor */
+    private final int[] order;
+
+    /**
+     * Constructor for FlatBVH - builds the hierarchy over the given geometries
+     * @param geometries the geometries to build the hierarchy over
+     */
+    public FlatBVH(Intersectable... geometries) {
+        this(List.of(geometries));
+    }
+
+    /**
+     * Constructor for FlatBVH - builds the hierarchy over the given geometries
+     * @param geometries the geometries to build the hierarchy over
+     */
+    public FlatBVH(List<Intersectable> geometries) {
+        List<Intersectable> bounded = new ArrayList<>();
+        List<Intersectable> others = new ArrayList<>();
+        for (Intersectable geo : geometries)
+            (geo.getBoundingBox() == null ? others : bounded).add(geo);
+        primitives = bounded.toArray(new Intersectable[0]);
+        unbounded = others.toArray(new Intersectable[0]);
+
+        int n = primitives.length;
+        bounds = new double[Math.max(1, 2 * n - 1) * 6];
+        nodes = new int[Math.max(1, 2 * n - 1) * 2];
+        order = new int[n];
+        if (n > 0) {
+            double[] centers = new double[n * 3];
+            for (int i = 0; i < n; i++) {
+                for (int axis = 0; axis < 3; axis++)
+                    centers[i * 3 + axis] = primitives[i].getBoundingBox().getCenter(axis);
+                order[i] = i;
+            }
+            build(0, n, centers);
+            setBox();
+        }
+    }
+
+    /**
+     * Constructor for FlatBVH over a loaded hierarchy
+     * @param primitives the bounded primitives, in the order of the hierarchy
+     * @param unbounded  the unbounded primitives
+     * @param bounds     the boxes of the nodes
+     * @param nodes      the structure of the nodes
+     * @param order      the index of every primitive among the bounded geometries
+     */
+    private FlatBVH(Intersectable[] primitives, Intersectable[] unbounded, double[] bounds, int[] nodes, int[] order) {
+        this.primitives = primitives;
+        this.unbounded = unbounded;
+        this.bounds = bounds;
+        this.nodes = nodes;
+        this.order = order;
+        nodeCount = nodes.length / 2;
+        setBox();
+    }
+
+    /**
+     * Sets the bounding box of the hierarchy - the box of the root, or none if there are
+     * unbounded primitives
+     */
+    private void setBox() {
+        box = unbounded.length > 0 ? null
+                : new BoundingBox(new Point(bounds[0], bounds[1], bounds[2]), new Point(bounds[3], bounds[4], bounds[5]));
+    }
+
+    /**
+     * Calculates the key of the hierarchy over geometries - a hash of the boxes of the
+     * bounded geometries in their order, which are all the hierarchy depends on
+     * @param geometries the geometries
+     * @return the key
+     */
+    public static long geometryKey(List<Intersectable> geometries) {
+        long hash = FILE_VERSION;
+        int count = 0;
+        for (Intersectable geo : geometries) {
+            BoundingBox box = geo.getBoundingBox();
+            if (box == null) continue;
+            count++;
+            hash = mix(hash, box.min.point.d1());
+            hash = mix(hash, box.min.point.d2());
+            hash = mix(hash, box.min.point.d3());
+            hash = mix(hash, box.max.point.d1());
+            hash = mix(hash, box.max.point.d2());
+            hash = mix(hash, box.max.point.d3());
+        }
+        return mix(hash, count);
+    }
+
+    /**
+     * Mixes a number into a hash
+     * @param hash  the hash
+     * @param value the number
+     * @return the new hash
+     */
+    private static long mix(long hash, double value) {
+        hash = (hash ^ Double.doubleToLongBits(value)) * 0x9e3779b97f4a7c15L;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * Saves the hierarchy to a binary file: a header with the key of the geometries, the
+     * boxes and the structure of the nodes, and the order of the primitives, in little
+     * endian. The file is written aside and then moved into its place, so readers never
+     * see a partial file.
+     * @param file the file
+     * @throws IllegalStateException if the file can't be written
+     */
+    public void save(Path file) {
+        Intersectable[] original = new Intersectable[primitives.length];
+        for (int i = 0; i < primitives.length; i++) original[order[i]] = primitives[i];
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER + nodeCount * 6 * Double.BYTES
+                + (nodeCount * 2 + primitives.length) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(FILE_MAGIC).putInt(FILE_VERSION).putLong(geometryKey(Arrays.asList(original)))
+                .putInt(primitives.length).putInt(nodeCount);
+        buffer.asDoubleBuffer().put(bounds, 0, nodeCount * 6);
+        buffer.position(buffer.position() + nodeCount * 6 * Double.BYTES);
+        buffer.asIntBuffer().put(nodes, 0, nodeCount * 2).put(order);
+        buffer.rewind();
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error - can't save the hierarchy to " + file, e);
+        }
+    }
+
+    /**
+     * Loads a hierarchy saved by {@link #save(Path)} through a memory mapping of the file
+     * @param file       the file
+     * @param geometries the geometries the hierarchy was built over, in the same order
+     * @return the hierarchy, or null if the file is missing, damaged or was saved for
+     *         other geometries
+     */
+    public static FlatBVH load(Path file, List<Intersectable> geometries) {
+        List<Intersectable> bounded = new ArrayList<>();
+        List<Intersectable> others = new ArrayList<>();
+        for (Intersectable geo : geometries)
+            (geo.getBoundingBox() == null ? others : bounded).add(geo);
+        int n = bounded.size();
+        if (n == 0 || !Files.isRegularFile(file)) return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < FILE_HEADER) return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION
+                    || buffer.getLong() != geometryKey(bounded) || buffer.getInt() != n) return null;
+            int nodeCount = buffer.getInt();
+            if (nodeCount < 1 || nodeCount > 2 * n - 1
+                    || size != FILE_HEADER + nodeCount * 6L * Double.BYTES + (nodeCount * 2L + n) * Integer.BYTES)
+                return null;
+
+            double[] bounds = new double[nodeCount * 6];
+            int[] nodes = new int[nodeCount * 2];
+            int[] order = new int[n];
+            buffer.asDoubleBuffer().get(bounds);
+            buffer.position(buffer.position() + bounds.length * Double.BYTES);
+            buffer.asIntBuffer().get(nodes).get(order);
+            if (!validNodes(nodes, n)) return null;
+
+            Intersectable[] primitives = new Intersectable[n];
+            boolean[] used = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                if (order[i] < 0 || order[i] >= n || used[order[i]]) return null; // not a permutation
+                used[order[i]] = true;
+                primitives[i] = bounded.get(order[i]);
+            }
+            return new FlatBVH(primitives, others.toArray(new Intersectable[0]), bounds, nodes, order);
+        } catch (IOException e) {
+            return null; // the hierarchy is rebuilt
+        }
+    }
+
+    /**
+     * Checks that loaded nodes form a hierarchy the traversal can walk: every leaf covers a
+     * range of the primitives, and the children of every internal node come after it
+     * @param nodes the nodes, 2 numbers per node
+     * @param n     the amount of the primitives
+     * @return true if all the nodes are valid
+     */
+    private static boolean validNodes(int[] nodes, int n) {
+        int nodeCount = nodes.length / 2;
+        for (int node = 0; node < nodeCount; node++) {
+            int first = nodes[node * 2], count = nodes[node * 2 + 1];
+            if (count > 0) {
+                if (first < 0 || count > n - first) return false;
+            } else if (count < 0 || node + 1 >= nodeCount || first <= node + 1 || first >= nodeCount)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Recursively builds the nodes over a range of primitives. The range is split in
+     * the middle of the widest extent of the primitive centers, partitioning the
+     * primitives array in place.
+     * @param first   the index of the first primitive in the range
+     * @param count   the amount of primitives in the range
+     * @param centers the centers of the primitives boxes, 3 numbers per primitive
+     * @return the index of the created node
+     */
+    private int build(int first, int count, double[] centers) {
+        int node = nodeCount++;
+        int b = node * 6;
+        bounds[b] = bounds[b + 1] = bounds[b + 2] = Double.POSITIVE_INFINITY;
+        bounds[b + 3] = bounds[b + 4] = bounds[b + 5] = Double.NEGATIVE_INFINITY;
+        double[] cMin = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+        double[] cMax = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int i = first; i < first + count; i++) {
+            BoundingBox box = primitives[i].getBoundingBox();
+            bounds[b] = Math.min(bounds[b], box.min.point.d1());
+            bounds[b + 1] = Math.min(bounds[b + 1], box.min.point.d2());
+            bounds[b + 2] = Math.min(bounds[b + 2], box.min.point.d3());
+            bounds[b + 3] = Math.max(bounds[b + 3], box.max.point.d1());
+            bounds[b + 4] = Math.max(bounds[b + 4], box.max.point.d2());
+            bounds[b + 5] = Math.max(bounds[b + 5], box.max.point.d3());
+            for (int axis = 0; axis < 3; axis++) {
+                cMin[axis] = Math.min(cMin[axis], centers[i * 3 + axis]);
+                cMax[axis] = Math.max(cMax[axis], centers[i * 3 + axis]);
+            }
+        }
+
+        if (count <= MAX_LEAF_SIZE) {
+            nodes[node * 2] = first;
+            nodes[node * 2 + 1] = count;
+            return node;
+        }
+
+        int axis = 0;
+        if (cMax[1] - cMin[1] > cMax[axis] - cMin[axis]) axis = 1;
+        if (cMax[2] - cMin[2] > cMax[axis] - cMin[axis]) axis = 2;
+        double split = (cMin[axis] + cMax[axis]) / 2;
+
+        // Partition the range in place around the split plane
+        int mid = first;
+        for (int i = first; i < first + count; i++)
+            if (centers[i * 3 + axis] < split) swap(i, mid++, centers);
+        // All the centers are on one side - split by count
+        if (mid == first || mid == first + count) mid = first + count / 2;
+
+        build(first, mid - first, centers);
+        int right = build(mid, first + count - mid, centers);
+        nodes[node * 2] = right;
+        nodes[node * 2 + 1] = 0;
+        return node;
+    }
+
+    /**
+     * Swaps two primitives together with their centers and their original indices
+     * @param i       the first primitive index
+     * @param j       the second primitive index
+     * @param centers the centers of the primitives
+     */
+    private void swap(int i, int j, double[] centers) {
+        Intersectable geo = primitives[i];
+        primitives[i] = primitives[j];
+        primitives[j] = geo;
+        int index = order[i];
+        order[i] = order[j];
+        order[j] = index;
+        for (int axis = 0; axis < 3; axis++) {
+            double c = centers[i * 3 + axis];
+            centers[i * 3 + axis] = centers[j * 3 + axis];
+            centers[j * 3 + axis] = c;
+        }
+    }
+
+    /**
+     * Slab test of a ray against the box of a node
+     * @param node        the node index
+     * @param ray         the ray
+     * @param maxDistance the maximal distance along the ray
+     * @return the distance at which the ray enters the box (0 if it starts inside it),
+     *         or positive infinity if it misses the box, the box is behind it or the ray
+     *         enters it beyond the maximal distance
+     */
+    private double entryDistance(int node, Ray ray, double maxDistance) {
+        return BoundingBox.entryDistance(bounds, node * 6, ray, maxDistance);
+    }
+
+    /**
+     * Pushes a node onto the traversal stack unless the ray misses its box
+     * @param stack   the nodes of the stack
+     * @param entries the entry distances of the nodes of the stack
+     * @param top     the amount of nodes in the stack
+     * @param node    the node
+     * @param entry   the distance at which the ray enters the box of the node
+     * @return the new amount of nodes in the stack
+     */
+    private static int push(int[] stack, double[] entries, int top, int node, double entry) {
+        if (entry == Double.POSITIVE_INFINITY) return top;
+        stack[top] = node;
+        entries[top] = entry;
+        return top + 1;
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        List<Intersection> result = new LinkedList<>();
+        for (Intersectable geo : unbounded) {
+            List<Intersection> temp = geo.calculateIntersectionsHelper(ray);
+            if (temp != null) result.addAll(temp);
+        }
+
+        if (nodeCount > 0) {
+            int[] stack = new int[STACK_SIZE];
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                if (entryDistance(node, ray, Double.POSITIVE_INFINITY) == Double.POSITIVE_INFINITY) continue;
+                int count = nodes[node * 2 + 1];
+                if (count > 0) {
+                    int first = nodes[node * 2];
+                    for (int i = first; i < first + count; i++) {
+                        List<Intersection> temp = primitives[i].calculateIntersectionsHelper(ray);
+                        if (temp != null) result.addAll(temp);
+                    }
+                } else {
+                    if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                    stack[top++] = nodes[node * 2]; // right child
+                    stack[top++] = node + 1; // left child
+                }
+            }
+        }
+        return result.isEmpty() ? null : result;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * The children of a node are tested together and the nearer one is visited
+     * first, so the closest intersection is found early and prunes the farther boxes.
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        Intersection closest = null;
+        for (Intersectable geo : unbounded) {
+            Intersection intersection = geo.calculateClosestIntersectionHelper(ray, maxDistance);
+            if (intersection != null) {
+                closest = intersection;
+                maxDistance = intersection.distance;
+            }
+        }
+        if (nodeCount == 0) return closest;
+
+        int[] stack = new int[STACK_SIZE];
+        double[] entries = new double[STACK_SIZE];
+        int top = push(stack, entries, 0, 0, entryDistance(0, ray, maxDistance));
+        while (top > 0) {
+            int node = stack[--top];
+            // skip the boxes which the ray enters beyond the closest intersection found since they were pushed
+            if (entries[top] >= maxDistance) continue;
+            int count = nodes[node * 2 + 1];
+            if (count > 0) {
+                int first = nodes[node * 2];
+                for (int i = first; i < first + count; i++) {
+                    Intersection intersection = primitives[i].calculateClosestIntersectionHelper(ray, maxDistance);
+                    if (intersection != null) {
+                        closest = intersection;
+                        maxDistance = intersection.distance;
+                    }
+                }
+            } else {
+                int left = node + 1, right = nodes[node * 2];
+                double leftEntry = entryDistance(left, ray, maxDistance);
+                double rightEntry = entryDistance(right, ray, maxDistance);
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                    entries = Arrays.copyOf(entries, entries.length * 2);
+                }
+                // push the farther child first, so the nearer one is popped first
+                if (leftEntry <= rightEntry) {
+                    top = push(stack, entries, top, right, rightEntry);
+                    top = push(stack, entries, top, left, leftEntry);
+                } else {
+                    top = push(stack, entries, top, left, leftEntry);
+                    top = push(stack, entries, top, right, rightEntry);
+                }
+            }
+        }
+        return closest;
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        for (Intersectable geo : unbounded) {
+            ktr = geo.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+            if (ktr == Double3.ZERO) return ktr; // an opaque blocker was found
+        }
+        if (nodeCount == 0) return ktr;
+
+        int[] stack = new int[STACK_SIZE];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            // skip the boxes which the ray enters beyond the end of the segment
+            if (entryDistance(node, ray, maxDistance) == Double.POSITIVE_INFINITY) continue;
+            int count = nodes[node * 2 + 1];
+            if (count > 0) {
+                int first = nodes[node * 2];
+                for (int i = first; i < first + count; i++) {
+                    ktr = primitives[i].calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+                    if (ktr == Double3.ZERO) return ktr; // an opaque blocker was found
+                }
+            } else {
+                if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = nodes[node * 2]; // right child
+                stack[top++] = node + 1; // left child
+            }
+        }
+        return ktr;
+    }
+}
\ No newline at end of file
@@ -1,22 +1,44 @@
 package geometries;
 import primitives.BoundingBox;
+import primitives.Double3;
 import primitives.Ray;
 import primitives.Point;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 
 /**
  * Geometries class represents a collection of intersectable geometries.
- * It implements the Intersectable interface and provides methods to add geometries and find intersections with a ray.
+ * It implements the Intersectable interface and provides methods to add geometries and find intersections with a ray.<br>
+ * The unbounded geometries (without a bounding box, e.g. planes) are kept in a separate list which is
+ * always tested, so the bounding box of the other geometries still culls the rays which miss them, and the
+ * hierarchies are built over the bounded geometries only. A collection with an unbounded geometry is
+ * unbounded itself.
  */
 public class Geometries extends Intersectable{
     /**
-     * List of intersectable geometries
+     * List of the bounded intersectable geometries
      */
     private final List<Intersectable> geometries = new LinkedList<>();// List of intersectable geometries
+    /**
+     * List of the unbounded intersectable geometries, which are tested for every ray
+     */
+    private final List<Intersectable> unbounded = new LinkedList<>();
+    /**
+     * The bounding box of the bounded geometries, null if there are none
+     */
+    private BoundingBox boundedBox = null;
+    /**
+     * Rebuilds the last hierarchy built over this collection, null if none was built
+     */
+    private Runnable rebuild = null;
+    /**
+     * The estimated cost of the hierarchy when it was built (see {@link #sahCost()})
+     */
+    private double builtCost = 0;
 
     /**
      * Constructor for Geometries
@@ -31,112 +53,360 @@ public class Geometries extends Intersectable{
         add(geometries);
     }
 
+    /**
+     * Constructor for a node of a hierarchy, with its bounded geometries and their
+     * already known bounding box
+     * @param geometries the bounded geometries
+     * @param box        the bounding box of the geometries
+     */
+    Geometries(List<Intersectable> geometries, BoundingBox box) {
+        this.geometries.addAll(geometries);
+        this.boundedBox = this.box = box;
+    }
+
     /**
      * Add geometries to the list
      * @param geometries1 the geometries to add
      */
     public void add(Intersectable... geometries1) {
+        // the union of the boxes is gathered in numbers, so adding many geometries creates a single box
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        BoundingBox addedBox = null;
+        int added = 0;
         for (Intersectable geo : geometries1) {
-            geometries.add(geo);
-            if (box == null) {
-                box = geo.getBoundingBox();
-            } else if (geo.getBoundingBox() != null) {
-                box = box.union(geo.getBoundingBox());
+            BoundingBox geoBox = geo.getBoundingBox();
+            if (geoBox == null) {
+                unbounded.add(geo);
+            } else {
+                geometries.add(geo);
+                if (++added == 1) addedBox = geoBox;
+                minX = Math.min(minX, geoBox.min.point.d1());
+                minY = Math.min(minY, geoBox.min.point.d2());
+                minZ = Math.min(minZ, geoBox.min.point.d3());
+                maxX = Math.max(maxX, geoBox.max.point.d1());
+                maxY = Math.max(maxY, geoBox.max.point.d2());
+                maxZ = Math.max(maxZ, geoBox.max.point.d3());
             }
         }
+        if (added > 1) addedBox = new BoundingBox(new Point(minX, minY, minZ), new Point(maxX, maxY, maxZ));
+        if (addedBox != null) boundedBox = boundedBox == null ? addedBox : boundedBox.union(addedBox);
+        box = unbounded.isEmpty() ? boundedBox : null;
+    }
+
+    /**
+     * Removes all the geometries from this collection
+     */
+    private void clear() {
+        geometries.clear();
+        unbounded.clear();
+        boundedBox = box = null;
+        rebuild = null;
     }
 
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
-        if (box != null && !box.intersects(ray)) return null;
-
         List<Intersection> result = new LinkedList<>();
-        for (Intersectable geo : geometries) {
+        for (Intersectable geo : unbounded) {
             List<Intersection> temp = geo.calculateIntersectionsHelper(ray);
             if (temp != null) result.addAll(temp);
         }
+        if (boundedBox != null && boundedBox.intersects(ray))
+            for (Intersectable geo : geometries) {
+                List<Intersection> temp = geo.calculateIntersectionsHelper(ray);
+                if (temp != null) result.addAll(temp);
+            }
         return result.isEmpty() ? null : result;
     }
 
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        Intersection closest = null;
+        for (Intersectable geo : unbounded) {
+            Intersection intersection = geo.calculateClosestIntersectionHelper(ray, maxDistance);
+            if (intersection != null) {
+                closest = intersection;
+                maxDistance = intersection.distance; // farther geometries can be skipped
+            }
+        }
+        if (boundedBox == null || !boundedBox.intersects(ray, maxDistance)) return closest;
+
+        for (Intersectable geo : geometries) {
+            Intersection intersection = geo.calculateClosestIntersectionHelper(ray, maxDistance);
+            if (intersection != null) {
+                closest = intersection;
+                maxDistance = intersection.distance; // farther geometries can be skipped
+            }
+        }
+        return closest;
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        for (Intersectable geo : unbounded) {
+            ktr = geo.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+            if (ktr == Double3.ZERO) return ktr; // an opaque blocker was found
+        }
+        if (boundedBox == null || !boundedBox.intersects(ray, maxDistance)) return ktr;
+
+        for (Intersectable geo : geometries) {
+            ktr = geo.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+            if (ktr == Double3.ZERO) return ktr; // an opaque blocker was found
+        }
+        return ktr;
+    }
+
     /**
      * Builds a Bounding Volume Hierarchy (BVH) from the geometries in this collection.
      * This method recursively splits the geometries into smaller groups
      * and builds a tree structure where each node contains a bounding box
      * and either a list of geometries (if it's a leaf node)
-     * or references to child nodes (if it's an internal node).
+     * or references to child nodes (if it's an internal node).<br>
+     * The groups are split at the median of their centroids along the widest axis, and
+     * the subtrees are built in parallel (see {@link ParallelBVHBuilder}).<br>
+     * Nested collections are unwrapped into their primitives first, and the unbounded
+     * primitives are kept aside in the list which is always tested.
      */
     public void buildBVH() {
-        if (geometries.size() <= 2) return; // Already a leaf
+        flatten();
+        buildHierarchy(new ParallelBVHBuilder(geometries).build());
+        hierarchyBuilt(this::buildBVH);
+    }
 
-        // Compute axis to sort by
-        int axis = chooseSplitAxis(); // e.g. axis with largest spread
+    /**
+     * Replaces the nested collections by their primitives, sorting the primitives
+     * into the bounded and the unbounded ones
+     */
+    private void flatten() {
+        List<Intersectable> primitives = getPrimitives();
+        clear();
+        add(primitives.toArray(new Intersectable[0]));
+    }
+
+    /**
+     * Builds a Bounding Volume Hierarchy (BVH) from the geometries in this collection
+     * using the binned Surface Area Heuristic (SAH).<br>
+     * At each level the centroids of the bounded geometries are distributed into
+     * equal-width bins along every axis, and the split plane between bins with the
+     * lowest estimated cost is chosen. The estimated cost of a split is the cost of
+     * traversing one box plus the cost of the primitives of each side weighted by
+     * the probability (the ratio of surface areas) that a ray hitting this node hits
+     * that side. If keeping all the geometries in one leaf is cheaper - no split is
+     * made, so leaves may hold more than two geometries.<br>
+     * Nested collections are unwrapped into their primitives first, and the unbounded
+     * primitives are kept aside in the list which is always tested.
+     * @param bins     the amount of bins per axis (at least 2)
+     * @param leafCost the cost of intersecting one primitive relative to the cost of
+     *                 traversing one bounding box
+     */
+    public void buildBVH(int bins, double leafCost) {
+        if (bins < 2) throw new IllegalArgumentException("SAH BVH needs at least 2 bins");
+        if (leafCost <= 0) throw new IllegalArgumentException("leaf cost must be positive");
+        flatten();
+        buildHierarchy(new ParallelBVHBuilder(geometries, bins, leafCost).build());
+        hierarchyBuilt(() -> buildBVH(bins, leafCost));
+    }
 
-        // Sort by center along axis
-        geometries.sort(Comparator.comparingDouble(
-                g -> g.getBoundingBox().getCenter(axis) // getBoundingBox().getCenter(axis
-        )); // Sort geometries by center along the chosen axis
+    /**
+     * Builds a Linear Bounding Volume Hierarchy (LBVH) from the geometries in this
+     * collection. The geometries are sorted along a Z-order curve by the Morton codes of
+     * their centroids, and the hierarchy is emitted from the sorted order in linear time
+     * (see {@link LinearBVHBuilder}). The build is much faster than the other hierarchies,
+     * but the tree is worse, so it suits very large scenes and previews.<br>
+     * Nested collections are unwrapped into their primitives first, and the unbounded
+     * primitives are kept aside in the list which is always tested.
+     */
+    public void buildLinearBVH() {
+        flatten();
+        buildHierarchy(new LinearBVHBuilder(geometries).build());
+        hierarchyBuilt(this::buildLinearBVH);
+    }
 
-        // Split list
-        int mid = geometries.size() / 2;
-        List<Intersectable> leftList = new ArrayList<>(geometries.subList(0, mid));
-        List<Intersectable> rightList = new ArrayList<>(geometries.subList(mid, geometries.size()));
+    /**
+     * Replaces the bounded geometries in this collection by the children of the root of
+     * a hierarchy over them, the bounding box doesn't change
+     * @param root the root of the hierarchy, null if there are no bounded geometries
+     */
+    private void buildHierarchy(Geometries root) {
+        if (root == null) return;
+        geometries.clear();
+        geometries.addAll(root.geometries);
+    }
 
-        // Wrap sublists in Geometries
-        Geometries left = new Geometries();
-        Geometries right = new Geometries();
-        left.addAll(new ArrayList<>(leftList));
-        right.addAll(new ArrayList<>(rightList));
+    /**
+     * Records a hierarchy which was built over this collection, to track its decay
+     * @param builder rebuilds the hierarchy the same way
+     */
+    private void hierarchyBuilt(Runnable builder) {
+        rebuild = builder;
+        builtCost = sahCost();
+    }
 
-        // Recursively build tree
-        left.buildBVH();
-        right.buildBVH();
+    /**
+     * Replaces a geometry of this collection or of a nested collection by another one,
+     * e.g. by a moved copy of it in an animation. The bounding boxes are not updated -
+     * call {@link #refit()} after replacing the moved geometries.
+     * @param geometry the geometry to replace
+     * @param moved    the geometry to put in its place, bounded if and only if the
+     *                 replaced geometry is bounded
+     * @return true if the geometry was found and replaced
+     */
+    public boolean replace(Intersectable geometry, Intersectable moved) {
+        if ((geometry.getBoundingBox() == null) != (moved.getBoundingBox() == null))
+            throw new IllegalArgumentException("A geometry can only be replaced by a geometry bounded alike");
+        return replace(unbounded, geometry, moved) || replace(geometries, geometry, moved);
+    }
 
-        // Replace current flat list with two children
-        geometries.clear();
-        geometries.add(left);
-        geometries.add(right);
+    /**
+     * Replaces a geometry in a list of geometries or in the nested collections in it
+     * @param list     the list of geometries
+     * @param geometry the geometry to replace
+     * @param moved    the geometry to put in its place
+     * @return true if the geometry was found and replaced
+     */
+    private static boolean replace(List<Intersectable> list, Intersectable geometry, Intersectable moved) {
+        for (ListIterator<Intersectable> it = list.listIterator(); it.hasNext(); ) {
+            Intersectable geo = it.next();
+            if (geo == geometry) {
+                it.set(moved);
+                return true;
+            }
+            if (geo instanceof Geometries nested && nested.replace(geometry, moved)) return true;
+        }
+        return false;
+    }
 
-        // Recompute this group's bounding box
-        this.box = left.getBoundingBox().union(right.getBoundingBox());
+    /**
+     * Updates the bounding boxes of this collection and of all the nested collections
+     * (e.g. the nodes of a hierarchy) bottom-up, after some of the geometries were
+     * replaced or their boxes changed. The structure of the hierarchy doesn't change, so
+     * its quality decays as the geometries move away from their places - see
+     * {@link #refit(double)}. A flat hierarchy ({@link #buildFlatBVH()}) can't be refitted,
+     * it has to be rebuilt.
+     */
+    public void refit() {
+        for (Intersectable geo : unbounded)
+            if (geo instanceof Geometries nested) nested.refit();
+        boundedBox = null;
+        for (Intersectable geo : geometries) {
+            if (geo instanceof Geometries nested) nested.refit();
+            BoundingBox geoBox = geo.getBoundingBox();
+            boundedBox = boundedBox == null ? geoBox : boundedBox.union(geoBox);
+        }
+        box = unbounded.isEmpty() ? boundedBox : null;
     }
 
     /**
-     * Adds a list of geometries to this collection.
-     * @param geometries the list of geometries to add
+     * Refits the hierarchy of this collection (see {@link #refit()}), and rebuilds it
+     * the way it was built if its estimated cost grew too much since it was built
+     * @param maxDecay the maximal ratio of the estimated cost to the cost of the built
+     *                 hierarchy (at least 1)
+     * @return true if the hierarchy was rebuilt
      */
-    public void addAll(List<Intersectable> geometries) {
-        this.add(geometries.toArray(new Intersectable[0]));
+    public boolean refit(double maxDecay) {
+        if (maxDecay < 1) throw new IllegalArgumentException("maximal decay must be at least 1");
+        refit();
+        if (rebuild == null || sahCost() <= builtCost * maxDecay) return false;
+        rebuild.run();
+        return true;
     }
 
     /**
-     * Chooses the axis to split the geometries based on their bounding boxes.
-     * The axis with the largest spread (difference between max and min) is chosen.
-     * @return 0 for X, 1 for Y, 2 for Z
+     * Estimates the cost of tracing a ray through the hierarchy of the bounded
+     * geometries by the Surface Area Heuristic: every node costs a box traversal and
+     * every geometry in it costs an intersection (taken as equal costs), weighted by the
+     * probability that a ray hitting the whole collection hits the node - the ratio of
+     * the surface areas of their boxes
+     * @return the estimated cost, 0 if there are no bounded geometries
      */
-    private int chooseSplitAxis() {
-        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
-        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
-        double minZ = Double.POSITIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+    public double sahCost() {
+        if (boundedBox == null) return 0;
+        double area = boundedBox.halfArea();
+        return area > 0 ? areaCost() / area : 0;
+    }
 
+    /**
+     * Sums the cost of this node and of the nested nodes, weighted by their surface areas
+     * @return the sum
+     */
+    private double areaCost() {
+        double cost = 0;
+        int primitives = 0;
         for (Intersectable geo : geometries) {
-            BoundingBox b = geo.getBoundingBox();
-            if (b == null) continue;
+            if (geo instanceof Geometries nested) cost += nested.areaCost();
+            else primitives++;
+        }
+        return cost + boundedBox.halfArea() * (1 + primitives);
+    }
 
-            double cx = b.getCenter(0);
-            double cy = b.getCenter(1);
-            double cz = b.getCenter(2);
+    /**
+     * Replaces the bounded geometries in this collection by a single flattened, array
+     * based hierarchy ({@link FlatBVH}) over all of them. Nested collections (e.g. from
+     * a previous {@link #buildBVH()}) are unwrapped into their primitives first, and the
+     * unbounded primitives are kept aside in the list which is always tested.
+     */
+    public void buildFlatBVH() {
+        flatten();
+        if (geometries.isEmpty()) return;
+        FlatBVH bvh = new FlatBVH(new ArrayList<>(geometries));
+        geometries.clear();
+        geometries.add(bvh);
+    }
 
-            minX = Math.min(minX, cx); maxX = Math.max(maxX, cx);
-            minY = Math.min(minY, cy); maxY = Math.max(maxY, cy);
-            minZ = Math.min(minZ, cz); maxZ = Math.max(maxZ, cz);
+    /**
+     * Replaces the bounded geometries in this collection by a flattened hierarchy, as
+     * {@link #buildFlatBVH()}, through a cache of hierarchies on the disk. The file of
+     * the hierarchy is named by the key of the geometries ({@link FlatBVH#geometryKey(List)});
+     * if it exists the hierarchy is loaded from it instead of being built, otherwise the
+     * built hierarchy is saved to it for the next runs with the same geometries.
+     * @param cacheDirectory the directory of the cached hierarchies
+     * @throws IllegalStateException if a built hierarchy can't be saved
+     */
+    public void buildFlatBVH(Path cacheDirectory) {
+        flatten();
+        if (geometries.isEmpty()) return;
+        List<Intersectable> bounded = new ArrayList<>(geometries);
+        Path file = cacheDirectory.resolve(String.format("bvh-%016x.bin", FlatBVH.geometryKey(bounded)));
+        FlatBVH bvh = FlatBVH.load(file, bounded);
+        if (bvh == null) {
+            bvh = new FlatBVH(bounded);
+            bvh.save(file);
         }
+        geometries.clear();
+        geometries.add(bvh);
+    }
 
-        double dx = maxX - minX;
-        double dy = maxY - minY;
-        double dz = maxZ - minZ;
+    /**
+     * Gets the primitives of this collection - nested collections (e.g. from a
+     * previous {@link #buildBVH()}) are unwrapped into their primitives.
+     * @return a new list of the primitives
+     */
+    public List<Intersectable> getPrimitives() {
+        List<Intersectable> primitives = new ArrayList<>();
+        collectPrimitives(primitives);
+        return primitives;
+    }
 
-        if (dx >= dy && dx >= dz) return 0;
-        if (dy >= dz) return 1;
-        return 2;
+    /**
+     * Collects the primitives of this collection and of all the nested collections
+     * @param primitives the list to collect the primitives into
+     */
+    private void collectPrimitives(List<Intersectable> primitives) {
+        for (Intersectable geo : unbounded) {
+            if (geo instanceof Geometries nested) nested.collectPrimitives(primitives);
+            else primitives.add(geo);
+        }
+        for (Intersectable geo : geometries) {
+            if (geo instanceof Geometries nested) nested.collectPrimitives(primitives);
+            else primitives.add(geo);
+        }
+    }
+
+    /**
+     * Adds a list of geometries to this collection.
+     * @param geometries the list of geometries to add
+     */
+    public void addAll(List<Intersectable> geometries) {
+        this.add(geometries.toArray(new Intersectable[0]));
     }
 }
@@ -52,6 +52,18 @@ public abstract class Geometry extends Intersectable {
         return this;
     }
 
+    /**
+     * Attenuates an accumulated transparency by the transparency of this geometry,
+     * for a ray segment blocked by it
+     * @param ktr  the transparency accumulated so far
+     * @param minK the transparency below which the segment is considered opaque
+     * @return the attenuated transparency, or {@link Double3#ZERO} if it is lower than minK
+     */
+    protected Double3 blockBy(Double3 ktr, double minK) {
+        ktr = ktr.product(material.KT);
+        return ktr.lowerThan(minK) ? Double3.ZERO : ktr;
+    }
+
     /**
      * Calculates the normal vector to the geometry at a given point
      * @param point the point on the geometry
@@ -0,0 +1,358 @@
+package geometries;
+
+import primitives.BoundingBox;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Grid is a uniform grid accelerator. The bounding box of the bounded geometries
+ * is divided into equal cells - the resolution is chosen by the amount of the
+ * geometries - and every cell references the geometries whose boxes overlap it.
+ * A ray walks only the cells it passes through, in order, by 3D-DDA traversal.<br>
+ * A geometry overlapping several cells is tested once per ray thanks to a
+ * per-thread mailbox, which also keeps the state of the traversal, so a walk
+ * allocates nothing. Unbounded geometries (e.g. planes) are tested for every ray.
+ */
+public class Grid extends Intersectable {
+    /** The desired average amount of cells per geometry */
+    private static final double DENSITY = 3;
+    /** The maximal amount of cells along an axis */
+    private static final int MAX_RESOLUTION = 128;
+
+    /** The bounded geometries, referenced by their index from the cells */
+    private final Intersectable[] primitives;
+    /** The unbounded geometries which are tested for every ray */
+    private final Intersectable[] unbounded;
+    /** The minimal corner of the grid */
+    private final double[] min = new double[3];
+    /** The size of a cell along every axis */
+    private final double[] cellSize = new double[3];
+    /** The amount of cells along every axis */
+    private final int[] resolution = new int[3];
+    /** The index of the first reference of every cell in {@link #cellItems}, and the end of the last cell */
+    private final int[] cellStart;
+    /** The geometries references of all the cells, cell after cell */
+    private final int[] cellItems;
+
+    /**
+     * Per thread mailbox - the last ray number each geometry was tested with, so
+     * that a geometry overlapping several cells is tested once per ray - and the
+     * traversal state of the current ray
+     */
+    private final ThreadLocal<Mailbox> mailboxes;
+
+    /**
+     * Mailbox of a thread, with the 3D-DDA state of the ray walking through the grid
+     */
+    private static class Mailbox {
+        /** The last ray number each geometry was tested with */
+        final int[] stamps;
+        /** The number of the current ray */
+        int ray = 0;
+        /** The current cell along every axis */
+        final int[] cell = new int[3];
+        /** The direction of the walk along every axis: 1, -1 or 0 */
+        final int[] step = new int[3];
+        /** The distance along the ray at which it crosses the next cell boundary of every axis */
+        final double[] tMax = new double[3];
+        /** The distance along the ray between cell boundaries of every axis */
+        final double[] tDelta = new double[3];
+        /** The distance along the ray beyond which the walk stops */
+        double tFar;
+
+        /**
+         * Constructor for Mailbox
+         * @param size the amount of geometries
+         */
+        Mailbox(int size) { stamps = new int[size]; }
+
+        /**
+         * Starts a new ray
+         * @return this mailbox
+         */
+        Mailbox next() {
+            if (++ray == 0) { // the ray numbers wrapped around
+                Arrays.fill(stamps, 0);
+                ray = 1;
+            }
+            return this;
+        }
+
+        /**
+         * Checks whether a geometry hasn't been tested with the current ray yet, and
+         * marks it as tested
+         * @param i the geometry index
+         * @return true if the geometry should be tested
+         */
+        boolean first(int i) {
+            if (stamps[i] == ray) return false;
+            stamps[i] = ray;
+            return true;
+        }
+
+        /**
+         * Gets the distance at which the ray leaves the current cell
+         * @return the distance along the ray
+         */
+        double cellExit() {
+            return Math.min(tMax[0], Math.min(tMax[1], tMax[2]));
+        }
+    }
+
+    /**
+     * Constructor for Grid - voxelizes the given geometries
+     * @param geometries the geometries to place in the grid
+     */
+    public Grid(List<Intersectable> geometries) {
+        List<Intersectable> bounded = new ArrayList<>();
+        List<Intersectable> others = new ArrayList<>();
+        for (Intersectable geo : geometries)
+            (geo.getBoundingBox() == null ? others : bounded).add(geo);
+        primitives = bounded.toArray(new Intersectable[0]);
+        unbounded = others.toArray(new Intersectable[0]);
+        int n = primitives.length;
+        mailboxes = ThreadLocal.withInitial(() -> new Mailbox(n));
+
+        if (n == 0) {
+            cellStart = new int[1];
+            cellItems = new int[0];
+            return;
+        }
+
+        // The bounds of the grid
+        double[] max = new double[3];
+        BoundingBox all = primitives[0].getBoundingBox();
+        for (int i = 1; i < n; i++) all = all.union(primitives[i].getBoundingBox());
+        coordinates(all.min, min);
+        coordinates(all.max, max);
+        if (others.isEmpty()) box = all;
+
+        // The resolution - about DENSITY cells per geometry, cells as cubic as possible
+        double[] extent = new double[3];
+        double maxExtent = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            extent[axis] = max[axis] - min[axis];
+            maxExtent = Math.max(maxExtent, extent[axis]);
+        }
+        // avoid flat cells for flat scenes
+        for (int axis = 0; axis < 3; axis++) {
+            if (extent[axis] < maxExtent * 1e-3) {
+                extent[axis] = Math.max(maxExtent * 1e-3, 1e-9);
+                min[axis] -= extent[axis] / 2;
+            }
+        }
+        double volume = extent[0] * extent[1] * extent[2];
+        double cellsPerUnit = Math.cbrt(DENSITY * n / volume);
+        for (int axis = 0; axis < 3; axis++) {
+            resolution[axis] = Math.max(1, Math.min(MAX_RESOLUTION, (int) Math.round(extent[axis] * cellsPerUnit)));
+            cellSize[axis] = extent[axis] / resolution[axis];
+        }
+
+        // Count the references of every cell, then fill them (compressed rows)
+        int cells = resolution[0] * resolution[1] * resolution[2];
+        int[][] ranges = new int[n][];
+        int[] counts = new int[cells + 1];
+        for (int i = 0; i < n; i++) {
+            ranges[i] = cellRange(primitives[i].getBoundingBox());
+            int[] r = ranges[i];
+            for (int z = r[2]; z <= r[5]; z++)
+                for (int y = r[1]; y <= r[4]; y++)
+                    for (int x = r[0]; x <= r[3]; x++)
+                        counts[cellIndex(x, y, z)]++;
+        }
+        cellStart = new int[cells + 1];
+        for (int c = 0; c < cells; c++) cellStart[c + 1] = cellStart[c] + counts[c];
+        cellItems = new int[cellStart[cells]];
+        int[] fill = Arrays.copyOf(cellStart, cells);
+        for (int i = 0; i < n; i++) {
+            int[] r = ranges[i];
+            for (int z = r[2]; z <= r[5]; z++)
+                for (int y = r[1]; y <= r[4]; y++)
+                    for (int x = r[0]; x <= r[3]; x++)
+                        cellItems[fill[cellIndex(x, y, z)]++] = i;
+        }
+    }
+
+    /**
+     * Copies the coordinates of a point into an array
+     * @param p      the point
+     * @param target the array
+     */
+    private static void coordinates(Point p, double[] target) {
+        target[0] = p.point.d1();
+        target[1] = p.point.d2();
+        target[2] = p.point.d3();
+    }
+
+    /**
+     * Finds the cell of a coordinate along an axis
+     * @param axis  the axis
+     * @param value the coordinate
+     * @return the cell number along the axis, clamped into the grid
+     */
+    private int cellOf(int axis, double value) {
+        int cell = (int) ((value - min[axis]) / cellSize[axis]);
+        return Math.max(0, Math.min(resolution[axis] - 1, cell));
+    }
+
+    /**
+     * Finds the range of cells overlapped by a box
+     * @param b the box
+     * @return minimal cell x, y, z followed by maximal cell x, y, z
+     */
+    private int[] cellRange(BoundingBox b) {
+        return new int[] {
+                cellOf(0, b.min.point.d1()), cellOf(1, b.min.point.d2()), cellOf(2, b.min.point.d3()),
+                cellOf(0, b.max.point.d1()), cellOf(1, b.max.point.d2()), cellOf(2, b.max.point.d3()) };
+    }
+
+    /**
+     * Calculates the index of a cell
+     * @param x the cell number along X
+     * @param y the cell number along Y
+     * @param z the cell number along Z
+     * @return the cell index
+     */
+    private int cellIndex(int x, int y, int z) {
+        return (z * resolution[1] + y) * resolution[0] + x;
+    }
+
+    /**
+     * Starts the walk of a ray through the cells it passes through, in order, by 3D-DDA.
+     * The state of the walk is kept in the mailbox of the thread.
+     * @param mailbox     the mailbox of the thread
+     * @param ray         the ray
+     * @param maxDistance the distance along the ray beyond which the walk stops
+     * @return the index of the first cell, or -1 if the ray misses the grid
+     */
+    private int start(Mailbox mailbox, Ray ray, double maxDistance) {
+        if (primitives.length == 0) return -1;
+        double ox = ray.headX, oy = ray.headY, oz = ray.headZ;
+        double dx = ray.dirX, dy = ray.dirY, dz = ray.dirZ;
+
+        // Entry into the grid box
+        double tNear = 0, tFar = maxDistance;
+        for (int axis = 0; axis < 3; axis++) {
+            double o = axis == 0 ? ox : axis == 1 ? oy : oz;
+            double d = axis == 0 ? dx : axis == 1 ? dy : dz;
+            double lo = min[axis], hi = min[axis] + cellSize[axis] * resolution[axis];
+            if (d == 0) {
+                if (o < lo || o > hi) return -1;
+                continue;
+            }
+            double t1 = (lo - o) / d, t2 = (hi - o) / d;
+            tNear = Math.max(tNear, Math.min(t1, t2));
+            tFar = Math.min(tFar, Math.max(t1, t2));
+        }
+        if (tNear > tFar) return -1;
+
+        // DDA set up
+        int[] cell = mailbox.cell, step = mailbox.step;
+        double[] tMax = mailbox.tMax, tDelta = mailbox.tDelta;
+        for (int axis = 0; axis < 3; axis++) {
+            double o = axis == 0 ? ox : axis == 1 ? oy : oz;
+            double d = axis == 0 ? dx : axis == 1 ? dy : dz;
+            cell[axis] = cellOf(axis, o + d * tNear);
+            if (d > 0) {
+                step[axis] = 1;
+                tMax[axis] = (min[axis] + (cell[axis] + 1) * cellSize[axis] - o) / d;
+                tDelta[axis] = cellSize[axis] / d;
+            } else if (d < 0) {
+                step[axis] = -1;
+                tMax[axis] = (min[axis] + cell[axis] * cellSize[axis] - o) / d;
+                tDelta[axis] = -cellSize[axis] / d;
+            } else {
+                step[axis] = 0;
+                tMax[axis] = Double.POSITIVE_INFINITY;
+                tDelta[axis] = 0;
+            }
+        }
+        mailbox.tFar = tFar;
+        mailbox.next();
+        return cellIndex(cell[0], cell[1], cell[2]);
+    }
+
+    /**
+     * Steps the walk into the next cell the ray passes through
+     * @param mailbox the mailbox of the thread, with the state of the walk
+     * @return the index of the next cell, or -1 if the walk is over
+     */
+    private int advance(Mailbox mailbox) {
+        int[] cell = mailbox.cell;
+        double[] tMax = mailbox.tMax;
+        int axis = tMax[0] < tMax[1] ? (tMax[0] < tMax[2] ? 0 : 2) : (tMax[1] < tMax[2] ? 1 : 2);
+        if (tMax[axis] >= mailbox.tFar) return -1;
+        cell[axis] += mailbox.step[axis];
+        if (cell[axis] < 0 || cell[axis] >= resolution[axis]) return -1;
+        tMax[axis] += mailbox.tDelta[axis];
+        return cellIndex(cell[0], cell[1], cell[2]);
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        List<Intersection> result = new LinkedList<>();
+        for (Intersectable geo : unbounded) {
+            List<Intersection> temp = geo.calculateIntersectionsHelper(ray);
+            if (temp != null) result.addAll(temp);
+        }
+        Mailbox mailbox = mailboxes.get();
+        for (int c = start(mailbox, ray, Double.POSITIVE_INFINITY); c >= 0; c = advance(mailbox))
+            for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                int i = cellItems[k];
+                if (!mailbox.first(i)) continue;
+                List<Intersection> temp = primitives[i].calculateIntersectionsHelper(ray);
+                if (temp != null) result.addAll(temp);
+            }
+        return result.isEmpty() ? null : result;
+    }
+
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        Intersection closest = null;
+        for (Intersectable geo : unbounded) {
+            Intersection intersection = geo.calculateClosestIntersectionHelper(ray, maxDistance);
+            if (intersection != null) {
+                closest = intersection;
+                maxDistance = intersection.distance;
+            }
+        }
+        Mailbox mailbox = mailboxes.get();
+        for (int c = start(mailbox, ray, maxDistance); c >= 0; c = advance(mailbox)) {
+            for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                int i = cellItems[k];
+                if (!mailbox.first(i)) continue;
+                Intersection intersection = primitives[i].calculateClosestIntersectionHelper(ray, maxDistance);
+                if (intersection != null) {
+                    closest = intersection;
+                    maxDistance = intersection.distance;
+                }
+            }
+            // an intersection inside the cells walked so far can't be beaten by the next cells
+            if (maxDistance <= mailbox.cellExit()) break;
+        }
+        return closest;
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        for (Intersectable geo : unbounded) {
+            ktr = geo.calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+            if (ktr == Double3.ZERO) return ktr; // an opaque blocker was found
+        }
+        Mailbox mailbox = mailboxes.get();
+        for (int c = start(mailbox, ray, maxDistance); c >= 0; c = advance(mailbox))
+            for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                int i = cellItems[k];
+                if (!mailbox.first(i)) continue;
+                ktr = primitives[i].calculateTransparencyHelper(ray, maxDistance, ktr, minK);
+                if (ktr == Double3.ZERO) return ktr; // stop at an opaque blocker
+            }
+        return ktr;
+    }
+}
@@ -0,0 +1,101 @@
+package geometries;
+
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instance is a placement of a shared geometry in the scene by an affine transformation.
+ * The shared geometry (e.g. a {@link TriangleMesh} or a {@link Geometries} with its own
+ * hierarchy - the bottom level) is kept once in memory and is not changed, however many
+ * instances refer to it. A hierarchy built over the instances (e.g. by
+ * {@link Geometries#buildBVH()}) is the top level of a two-level acceleration structure.<br>
+ * The rays are transformed into the object space of the shared geometry, and its
+ * intersections are transformed back to the world: their points, their normals and their
+ * distances along the ray. The intersections keep the shared geometry, with its material
+ * and emission.
+ */
+public class Instance extends Intersectable {
+    /** The shared geometry in its object space */
+    private final Intersectable object;
+    /** The transformation from the object space to the world */
+    private final Transform transform;
+
+    /**
+     * Constructor for an instance
+     * @param object    the shared geometry
+     * @param transform the transformation from the object space of the geometry to the world
+     */
+    public Instance(Intersectable object, Transform transform) {
+        this.object = object;
+        this.transform = transform;
+        BoundingBox objectBox = object.getBoundingBox();
+        box = objectBox == null ? null : transform.apply(objectBox);
+    }
+
+    /**
+     * Gets the shared geometry
+     * @return the shared geometry
+     */
+    public Intersectable getObject() {
+        return object;
+    }
+
+    /**
+     * Gets the transformation of the instance
+     * @return the transformation from the object space to the world
+     */
+    public Transform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Transforms a ray into the object space
+     * @param ray       the ray in the world
+     * @param direction the direction of the ray in the object space, not normalized - its
+     *                  length is the amount of object space units in a unit of the world
+     * @return the ray in the object space
+     */
+    private Ray toObject(Ray ray, Vector direction) {
+        return new Ray(transform.applyInverse(ray.getPoint(0)), direction);
+    }
+
+    /**
+     * Transforms an intersection in the object space back to the world
+     * @param hit   the intersection in the object space
+     * @param scale the amount of object space units in a unit of the world along the ray
+     * @return the intersection in the world
+     */
+    private Intersection toWorld(Intersection hit, double scale) {
+        Intersection intersection = new Intersection(hit.geometry, transform.apply(hit.point));
+        intersection.n = transform.applyNormal(hit.n != null ? hit.n : hit.geometry.getNormal(hit.point));
+        intersection.distance = hit.distance / scale;
+        return intersection;
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        Vector direction = transform.applyInverseVector(ray.getVector());
+        List<Intersection> hits = object.calculateIntersectionsHelper(toObject(ray, direction));
+        if (hits == null) return null;
+        double scale = direction.length();
+        List<Intersection> intersections = new ArrayList<>(hits.size());
+        for (Intersection hit : hits) intersections.add(toWorld(hit, scale));
+        return intersections;
+    }
+
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        Vector direction = transform.applyInverseVector(ray.getVector());
+        double scale = direction.length();
+        Intersection hit = object.calculateClosestIntersectionHelper(toObject(ray, direction), maxDistance * scale);
+        return hit == null ? null : toWorld(hit, scale);
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        Vector direction = transform.applyInverseVector(ray.getVector());
+        return object.calculateTransparencyHelper(toObject(ray, direction), maxDistance * direction.length(), ktr, minK);
+    }
+}
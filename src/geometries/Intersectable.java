@@ -37,6 +37,8 @@ public abstract class Intersectable {
         public Vector l;
         /** The scalar product of the light vector and the normal */
         public double lDotN;
+        /** The distance of the intersection point from the ray head (set by the closest intersection query) */
+        public double distance;
 
 
         /**
@@ -86,6 +88,82 @@ public abstract class Intersectable {
         return intersections; // Return the list of intersections
     }
 
+    /**
+     * Finds the closest intersection with a given ray which is closer to the ray head
+     * than a maximal distance. The returned intersection has its distance set.<br>
+     * The default implementation picks the closest of all the intersections,
+     * geometries override it to avoid building the list of intersections.
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximal distance of the intersection from the ray head
+     * @return the closest intersection, or null if there is no intersection closer than maxDistance
+     */
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        List<Intersection> intersections = calculateIntersectionsHelper(ray);
+        if (intersections == null) return null;
+        Point head = ray.getPoint(0);
+        Intersection closest = null;
+        double minDistanceSquared = maxDistance * maxDistance;
+        for (Intersection intersection : intersections) {
+            double distanceSquared = head.distanceSquared(intersection.point);
+            if (distanceSquared < minDistanceSquared) {
+                minDistanceSquared = distanceSquared;
+                closest = intersection;
+            }
+        }
+        if (closest != null) closest.distance = Math.sqrt(minDistanceSquared);
+        return closest;
+    }
+
+    /**
+     * Finds the closest intersection with a given ray without collecting all the
+     * intersections along the ray.
+     * @param ray the ray to check for intersections
+     * @return the closest intersection, or null if there are no intersections
+     */
+    public final Intersection calculateClosestIntersection(Ray ray) {
+        return calculateClosestIntersectionHelper(ray, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Accumulates the transparency of the geometries blocking a segment of a ray,
+     * starting from the transparency accumulated so far. The transparency coefficient
+     * (KT) of every intersection closer than the maximal distance is multiplied in.<br>
+     * The default implementation goes over all the intersections, geometries override
+     * it to avoid building the list of intersections.
+     * @param ray         the ray to check for blockers
+     * @param maxDistance the length of the segment from the ray head
+     * @param ktr         the transparency accumulated so far
+     * @param minK        the transparency below which the segment is considered opaque
+     * @return the accumulated transparency, or {@link Double3#ZERO} as soon as it is
+     *         lower than minK
+     */
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        List<Intersection> intersections = calculateIntersectionsHelper(ray);
+        if (intersections == null) return ktr;
+        Point head = ray.getPoint(0);
+        double maxDistanceSquared = maxDistance * maxDistance;
+        for (Intersection intersection : intersections) {
+            if (head.distanceSquared(intersection.point) >= maxDistanceSquared) continue;
+            ktr = ktr.product(intersection.material.KT);
+            if (ktr.lowerThan(minK)) return Double3.ZERO;
+        }
+        return ktr;
+    }
+
+    /**
+     * Calculates the transparency of a segment of a ray - the product of the
+     * transparency coefficients of all the geometries blocking it. The query stops
+     * as soon as the segment is found to be opaque, without collecting the
+     * intersections along the ray.
+     * @param ray         the ray to check for blockers
+     * @param maxDistance the length of the segment from the ray head
+     * @param minK        the transparency below which the segment is considered opaque
+     * @return the transparency of the segment, {@link Double3#ZERO} if it is opaque
+     */
+    public final Double3 calculateTransparency(Ray ray, double maxDistance, double minK) {
+        return calculateTransparencyHelper(ray, maxDistance, Double3.ONE, minK);
+    }
+
     /**
      * Calculates the intersection points with a given ray.
      * @param ray the ray to check for intersections
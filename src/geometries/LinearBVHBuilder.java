@@ -0,0 +1,281 @@
+package geometries;
+
+import primitives.BoundingBox;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * LinearBVHBuilder builds a Linear Bounding Volume Hierarchy (LBVH) of nested
+ * {@link Geometries} over bounded primitives, trading tree quality for build speed:
+ * <ol>
+ * <li>the centroid of every primitive is quantized into 21 bits per axis inside the
+ * bounds of the centroids, and the bits are interleaved into a 63-bit Morton code</li>
+ * <li>the codes are sorted by a parallel radix sort, which orders the primitives along a
+ * Z-order curve - primitives which are close in the order are close in space</li>
+ * <li>the internal nodes are emitted from the sorted codes in linear time, independently
+ * of each other (Karras, "Maximizing Parallelism in the Construction of BVHs, Octrees,
+ * and k-d Trees", 2012): every internal node splits a range of the sorted primitives at
+ * the highest bit where their codes differ</li>
+ * <li>the boxes of the nodes are united bottom-up, with the big subtrees in parallel</li>
+ * </ol>
+ * Every leaf is a single primitive. Equal codes are told apart by the positions of the
+ * primitives in the sorted order.
+ */
+final class LinearBVHBuilder {
+    /** The amount of the bits of each axis in a Morton code */
+    private static final int AXIS_BITS = 21;
+    /** The amount of the bits of a radix sort digit */
+    private static final int DIGIT_BITS = 8;
+    /** The amount of the values of a radix sort digit */
+    private static final int RADIX = 1 << DIGIT_BITS;
+    /** The amount of the codes in a chunk of the parallel radix sort */
+    private static final int SORT_CHUNK = 1 << 14;
+    /** Subtrees with fewer primitives are created sequentially */
+    private static final int SEQUENTIAL_BUILD = 1024;
+
+    /** The primitives */
+    private final Intersectable[] primitives;
+    /** The primitive indices, sorted by their Morton codes */
+    private int[] order;
+    /** The sorted Morton codes */
+    private long[] codes;
+    /** The left child of every internal node - an internal node, or a leaf if marked by {@link #leaf(int)} */
+    private int[] left;
+    /** The right child of every internal node - an internal node, or a leaf if marked by {@link #leaf(int)} */
+    private int[] right;
+    /** The amount of the primitives under every internal node */
+    private int[] size;
+
+    /**
+     * Constructor for the builder
+     * @param primitives the bounded primitives
+     */
+    LinearBVHBuilder(List<Intersectable> primitives) {
+        this.primitives = primitives.toArray(new Intersectable[0]);
+    }
+
+    /**
+     * Builds the hierarchy
+     * @return the root of the hierarchy, or null if there are no primitives
+     */
+    Geometries build() {
+        int n = primitives.length;
+        if (n == 0) return null;
+        if (n == 1) return new Geometries(List.of(primitives[0]), primitives[0].getBoundingBox());
+
+        computeCodes();
+        sortCodes();
+        left = new int[n - 1];
+        right = new int[n - 1];
+        size = new int[n - 1];
+        IntStream.range(0, n - 1).parallel().forEach(this::emitNode);
+        return new NodeTask(0).invoke();
+    }
+
+    /**
+     * Computes the Morton code of the centroid of every primitive
+     */
+    private void computeCodes() {
+        int n = primitives.length;
+        double[] centers = new double[n * 3];
+        double[] min = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+        double[] max = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int i = 0; i < n; i++) {
+            BoundingBox box = primitives[i].getBoundingBox();
+            for (int axis = 0; axis < 3; axis++) {
+                double c = box.getCenter(axis);
+                centers[i * 3 + axis] = c;
+                if (c < min[axis]) min[axis] = c;
+                if (c > max[axis]) max[axis] = c;
+            }
+        }
+
+        double cells = (1 << AXIS_BITS) - 1;
+        double[] scale = new double[3];
+        for (int axis = 0; axis < 3; axis++)
+            scale[axis] = max[axis] > min[axis] ? cells / (max[axis] - min[axis]) : 0;
+
+        codes = new long[n];
+        order = new int[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            long code = 0;
+            for (int axis = 0; axis < 3; axis++)
+                code |= spreadBits((long) ((centers[i * 3 + axis] - min[axis]) * scale[axis])) << (2 - axis);
+            codes[i] = code;
+            order[i] = i;
+        });
+    }
+
+    /**
+     * Spreads the lower 21 bits of a number so that there are two zero bits between every
+     * two of them
+     * @param x the number
+     * @return the spread bits
+     */
+    private static long spreadBits(long x) {
+        x &= 0x1fffffL;
+        x = (x | x << 32) & 0x1f00000000ffffL;
+        x = (x | x << 16) & 0x1f0000ff0000ffL;
+        x = (x | x << 8) & 0x100f00f00f00f00fL;
+        x = (x | x << 4) & 0x10c30c30c30c30c3L;
+        x = (x | x << 2) & 0x1249249249249249L;
+        return x;
+    }
+
+    /**
+     * Sorts the codes with the primitive indices by a least significant digit first radix
+     * sort. The codes are split into chunks, and every pass counts the digits of the chunks
+     * and then scatters the chunks in parallel. Passes where all the codes have the same
+     * digit are skipped.
+     */
+    private void sortCodes() {
+        int n = codes.length;
+        int chunks = (n + SORT_CHUNK - 1) / SORT_CHUNK;
+        long[] codesBuffer = new long[n];
+        int[] orderBuffer = new int[n];
+        int[][] offsets = new int[chunks][RADIX];
+
+        for (int shift = 0; shift < 3 * AXIS_BITS; shift += DIGIT_BITS) {
+            final int digitShift = shift;
+            final long[] source = codes;
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                int[] count = offsets[c];
+                Arrays.fill(count, 0);
+                for (int i = c * SORT_CHUNK, end = Math.min(n, i + SORT_CHUNK); i < end; i++)
+                    count[(int) (source[i] >>> digitShift) & (RADIX - 1)]++;
+            });
+
+            // The offset of every digit of every chunk - the digits in order, then the chunks in order
+            int total = 0;
+            boolean sameDigit = false;
+            for (int digit = 0; digit < RADIX && !sameDigit; digit++) {
+                int first = total;
+                for (int c = 0; c < chunks; c++) {
+                    int count = offsets[c][digit];
+                    offsets[c][digit] = total;
+                    total += count;
+                }
+                sameDigit = total - first == n;
+            }
+            if (sameDigit) continue; // the pass wouldn't change the order
+
+            final long[] targetCodes = codesBuffer;
+            final int[] sourceOrder = order, targetOrder = orderBuffer;
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                int[] offset = offsets[c];
+                for (int i = c * SORT_CHUNK, end = Math.min(n, i + SORT_CHUNK); i < end; i++) {
+                    int target = offset[(int) (source[i] >>> digitShift) & (RADIX - 1)]++;
+                    targetCodes[target] = source[i];
+                    targetOrder[target] = sourceOrder[i];
+                }
+            });
+            codesBuffer = codes;
+            orderBuffer = order;
+            codes = targetCodes;
+            order = targetOrder;
+        }
+    }
+
+    /**
+     * Finds the length of the common prefix of the codes of two sorted primitives - equal
+     * codes are told apart by the positions of the primitives
+     * @param i the position of the first primitive
+     * @param j the position of the second primitive
+     * @return the length of the common prefix, -1 if the second position is out of range
+     */
+    private int commonPrefix(int i, int j) {
+        if (j < 0 || j >= codes.length) return -1;
+        long a = codes[i], b = codes[j];
+        return a == b
+                ? Long.SIZE + Integer.numberOfLeadingZeros(i ^ j)
+                : Long.numberOfLeadingZeros(a ^ b);
+    }
+
+    /**
+     * Emits an internal node: finds the range of the sorted primitives it covers and the
+     * position of its split, and sets its children
+     * @param i the internal node, which covers the sorted primitive at this position
+     */
+    private void emitNode(int i) {
+        // The direction of the range - towards the neighbour with the longer common prefix
+        int d = commonPrefix(i, i + 1) > commonPrefix(i, i - 1) ? 1 : -1;
+        int minPrefix = commonPrefix(i, i - d);
+
+        // The other end of the range, by exponential and then binary search
+        int maxLength = 2;
+        while (commonPrefix(i, i + maxLength * d) > minPrefix) maxLength *= 2;
+        int length = 0;
+        for (int t = maxLength / 2; t >= 1; t /= 2)
+            if (commonPrefix(i, i + (length + t) * d) > minPrefix) length += t;
+        int j = i + length * d;
+
+        // The split - the last position which shares a longer prefix with i than j does
+        int nodePrefix = commonPrefix(i, j);
+        int split = 0;
+        for (int divisor = 2, t; ; divisor *= 2) {
+            t = (length + divisor - 1) / divisor;
+            if (commonPrefix(i, i + (split + t) * d) > nodePrefix) split += t;
+            if (t == 1) break;
+        }
+        int gamma = i + split * d + Math.min(d, 0);
+
+        left[i] = Math.min(i, j) == gamma ? leaf(gamma) : gamma;
+        right[i] = Math.max(i, j) == gamma + 1 ? leaf(gamma + 1) : gamma + 1;
+        size[i] = length + 1;
+    }
+
+    /**
+     * Marks a position of a sorted primitive as a leaf child
+     * @param position the position of the primitive
+     * @return the marked child
+     */
+    private static int leaf(int position) {
+        return ~position;
+    }
+
+    /**
+     * Creates the node of an internal node, and the nodes below it
+     */
+    @SuppressWarnings("serial")
+    private final class NodeTask extends RecursiveTask<Geometries> {
+        /** The internal node */
+        private final int node;
+
+        /**
+         * Constructor for the task
+         * @param node the internal node
+         */
+        NodeTask(int node) {
+            this.node = node;
+        }
+
+        @Override
+        protected Geometries compute() {
+            int l = left[node], r = right[node];
+            Intersectable leftNode, rightNode;
+            if (size[node] > SEQUENTIAL_BUILD && l >= 0 && r >= 0) {
+                NodeTask leftTask = new NodeTask(l);
+                leftTask.fork();
+                rightNode = new NodeTask(r).compute();
+                leftNode = leftTask.join();
+            } else {
+                leftNode = child(l);
+                rightNode = child(r);
+            }
+            return new Geometries(List.of(leftNode, rightNode),
+                    leftNode.getBoundingBox().union(rightNode.getBoundingBox()));
+        }
+
+        /**
+         * Creates the node of a child
+         * @param child the child - an internal node, or a marked leaf
+         * @return the node of the child
+         */
+        private Intersectable child(int child) {
+            return child < 0 ? primitives[order[~child]] : new NodeTask(child).compute();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package geometries;
+
+import primitives.Ray;
+
+/**
+ * MeshKernels are the inner loops of the traversal of a wide hierarchy of faces: the
+ * test of a ray against the boxes of all the children of a node at once, and against
+ * all the faces of a leaf at once. A node or a leaf has {@link #width()} lanes, which
+ * are kept as a structure of arrays so that the lanes are tested together.<br>
+ * The kernels are vectorized by the Vector API (jdk.incubator.vector) when the
+ * incubator module is available at run time (the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}) and the processor has vectors of at
+ * least 4 doubles; otherwise the scalar kernels are used. Both give the same results.
+ */
+interface MeshKernels {
+    /** The kernels used by the meshes - detected once, when the meshes are first used */
+    MeshKernels KERNELS = detect();
+
+    /**
+     * Gets the amount of the lanes - the children of a node and the faces of a leaf
+     * @return the width of the kernels
+     */
+    int width();
+
+    /**
+     * Slab test of a ray against the boxes of the children of a node, as by
+     * {@link primitives.BoundingBox#entryDistance(double[], int, Ray, double)}. The boxes
+     * are kept as 6 rows of {@link #width()} numbers: the minimal x of the children, their
+     * minimal y, minimal z, and then their maximal x, y and z. An unused child has an empty
+     * box - positive infinity as its minimum and negative infinity as its maximum.
+     * @param bounds      the array of the boxes
+     * @param offset      the index of the first number of the boxes of the node
+     * @param ray         the ray
+     * @param maxDistance the maximal distance along the ray
+     * @param entries     receives the distance at which the ray enters each box, positive
+     *                    infinity if it misses the box
+     */
+    void boxEntries(double[] bounds, int offset, Ray ray, double maxDistance, double[] entries);
+
+    /**
+     * Möller–Trumbore test of a ray against the faces of a leaf, as by
+     * {@link ScalarMeshKernels#hitDistance(double[], int, int, int, double, double, double, double, double, double)}.
+     * The faces are kept as 3 rows of {@link #width()} offsets of vertices in the
+     * positions: the first corner of the faces, their second corner and their third one.
+     * @param positions the vertex positions - 3 numbers per vertex
+     * @param corners   the array of the corners
+     * @param offset    the index of the first corner of the leaf
+     * @param ray       the ray
+     * @param distances receives the distance of each face, positive infinity if the ray
+     *                  misses it
+     */
+    void faceDistances(double[] positions, int[] corners, int offset, Ray ray, double[] distances);
+
+    /**
+     * Detects whether the vectorized kernels can be used
+     * @return the vectorized kernels, or the scalar ones if they can't be used
+     */
+    private static MeshKernels detect() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                MeshKernels kernels = VectorMeshKernels.create();
+                if (kernels != null) return kernels;
+            } catch (LinkageError e) {
+                // the module is resolved but can't be linked - fall back to the scalar kernels
+            }
+        }
+        return new ScalarMeshKernels();
+    }
+}
@@ -0,0 +1,510 @@
+package geometries;
+
+import primitives.BoundingBox;
+import primitives.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelBVHBuilder builds a Bounding Volume Hierarchy of nested {@link Geometries}
+ * over bounded primitives as a fork/join task tree.<br>
+ * The boxes and the centroids of the primitives are read once into flat arrays, and
+ * every node partitions its range of a single array of primitive indices in place -
+ * no sublists are copied and no boxes are re-united while building. The subtrees of
+ * big nodes are built in parallel, and the bounds and the bins of the nodes at the top
+ * levels are computed by parallel reductions over their ranges.<br>
+ * A node is split either at the median of the centroids along their widest axis, or
+ * by the binned Surface Area Heuristic (see {@link Geometries#buildBVH(int, double)}).
+ */
+final class ParallelBVHBuilder {
+    /** Nodes with fewer primitives are built sequentially, with all their subtrees */
+    private static final int SEQUENTIAL_BUILD = 1024;
+    /** Ranges with fewer primitives are reduced sequentially */
+    private static final int SEQUENTIAL_REDUCTION = 8192;
+    /** The maximal amount of primitives in a leaf of the median split hierarchy */
+    private static final int MEDIAN_LEAF_SIZE = 2;
+    /**
+     * The cost of traversing one bounding box in the surface area heuristic,
+     * primitive intersection costs are relative to it
+     */
+    private static final double TRAVERSAL_COST = 1;
+
+    /** The primitives */
+    private final Intersectable[] primitives;
+    /** The boxes of the primitives - 6 numbers per primitive: minimal x, y, z and maximal x, y, z */
+    private final double[] boxes;
+    /** The centroids of the primitives boxes - 3 numbers per primitive */
+    private final double[] centers;
+    /** The primitive indices, partitioned in place so that every node owns a contiguous range */
+    private final int[] order;
+    /** The amount of bins per axis of the surface area heuristic, 0 for median splits */
+    private final int bins;
+    /** The cost of intersecting one primitive relative to the cost of traversing one box */
+    private final double leafCost;
+
+    /**
+     * Constructor for a median split hierarchy builder
+     * @param primitives the bounded primitives
+     */
+    ParallelBVHBuilder(List<Intersectable> primitives) {
+        this(primitives, 0, 0);
+    }
+
+    /**
+     * Constructor for a hierarchy builder
+     * @param primitives the bounded primitives
+     * @param bins       the amount of bins per axis of the surface area heuristic, 0 for
+     *                   median splits
+     * @param leafCost   the cost of intersecting one primitive relative to the cost of
+     *                   traversing one bounding box
+     */
+    ParallelBVHBuilder(List<Intersectable> primitives, int bins, double leafCost) {
+        this.primitives = primitives.toArray(new Intersectable[0]);
+        this.bins = bins;
+        this.leafCost = leafCost;
+        int n = this.primitives.length;
+        boxes = new double[n * 6];
+        centers = new double[n * 3];
+        order = new int[n];
+        for (int i = 0; i < n; i++) {
+            BoundingBox box = this.primitives[i].getBoundingBox();
+            boxes[i * 6] = box.min.point.d1();
+            boxes[i * 6 + 1] = box.min.point.d2();
+            boxes[i * 6 + 2] = box.min.point.d3();
+            boxes[i * 6 + 3] = box.max.point.d1();
+            boxes[i * 6 + 4] = box.max.point.d2();
+            boxes[i * 6 + 5] = box.max.point.d3();
+            for (int axis = 0; axis < 3; axis++)
+                centers[i * 3 + axis] = (boxes[i * 6 + axis] + boxes[i * 6 + 3 + axis]) / 2;
+            order[i] = i;
+        }
+    }
+
+    /**
+     * Builds the hierarchy in the common fork/join pool
+     * @return the root of the hierarchy, or null if there are no primitives
+     */
+    Geometries build() {
+        return primitives.length == 0 ? null : new NodeTask(0, primitives.length).invoke();
+    }
+
+    /**
+     * Builds the node of a range of the primitive indices, and the subtrees below it
+     */
+    @SuppressWarnings("serial")
+    private final class NodeTask extends RecursiveTask<Geometries> {
+        /** The first index of the range */
+        private final int first;
+        /** The amount of the primitives in the range */
+        private final int count;
+
+        /**
+         * Constructor for the task
+         * @param first the first index of the range
+         * @param count the amount of the primitives in the range
+         */
+        NodeTask(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        @Override
+        protected Geometries compute() {
+            double[] bounds = new BoundsTask(first, count).reduce();
+            int mid = bins == 0 ? medianSplit(first, count, bounds) : sahSplit(first, count, bounds);
+            if (mid < 0) return leaf(first, count, bounds);
+
+            NodeTask left = new NodeTask(first, mid - first);
+            NodeTask right = new NodeTask(mid, first + count - mid);
+            Geometries leftNode, rightNode;
+            if (count > SEQUENTIAL_BUILD) {
+                left.fork();
+                rightNode = right.compute();
+                leftNode = left.join();
+            } else {
+                leftNode = left.compute();
+                rightNode = right.compute();
+            }
+            return new Geometries(List.of(leftNode, rightNode), box(bounds));
+        }
+    }
+
+    /**
+     * Creates a leaf of the primitives of a range
+     * @param first  the first index of the range
+     * @param count  the amount of the primitives in the range
+     * @param bounds the bounds of the range
+     * @return the leaf
+     */
+    private Geometries leaf(int first, int count, double[] bounds) {
+        List<Intersectable> members = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) members.add(primitives[order[i]]);
+        return new Geometries(members, box(bounds));
+    }
+
+    /**
+     * Creates the bounding box of the bounds of a range
+     * @param bounds the bounds, 6 numbers: minimal x, y, z and maximal x, y, z
+     * @return the bounding box
+     */
+    private static BoundingBox box(double[] bounds) {
+        return new BoundingBox(new Point(bounds[0], bounds[1], bounds[2]), new Point(bounds[3], bounds[4], bounds[5]));
+    }
+
+    /**
+     * Splits a range at the median of the centroids along the axis of their widest
+     * extent - the lower half of the centroids is moved to the start of the range
+     * @param first  the first index of the range
+     * @param count  the amount of the primitives in the range
+     * @param bounds the bounds of the range - of the boxes and then of the centroids
+     * @return the first index of the upper half, or -1 if the range is a leaf
+     */
+    private int medianSplit(int first, int count, double[] bounds) {
+        if (count <= MEDIAN_LEAF_SIZE) return -1;
+        int axis = widestAxis(bounds);
+        int mid = first + count / 2;
+        select(first, first + count - 1, mid, axis);
+        return mid;
+    }
+
+    /**
+     * Finds the axis of the widest extent of the centroids
+     * @param bounds the bounds of a range - of the boxes and then of the centroids
+     * @return 0 for X, 1 for Y, 2 for Z
+     */
+    private static int widestAxis(double[] bounds) {
+        double dx = bounds[9] - bounds[6], dy = bounds[10] - bounds[7], dz = bounds[11] - bounds[8];
+        if (dx >= dy && dx >= dz) return 0;
+        if (dy >= dz) return 1;
+        return 2;
+    }
+
+    /**
+     * Partially orders a range of the primitive indices (quickselect) so that the
+     * primitive at an index has its centroid in its sorted place along an axis, with
+     * no greater centroid before it and no smaller one after it
+     * @param low   the first index of the range
+     * @param high  the last index of the range
+     * @param nth   the index to put in its sorted place
+     * @param axis  the axis of the centroids
+     */
+    private void select(int low, int high, int nth, int axis) {
+        while (low < high) {
+            double pivot = center(order[(low + high) >>> 1], axis);
+            int i = low, j = high;
+            while (i <= j) {
+                while (center(order[i], axis) < pivot) i++;
+                while (center(order[j], axis) > pivot) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            if (nth <= j) high = j;
+            else if (nth >= i) low = i;
+            else return;
+        }
+    }
+
+    /**
+     * Gets the centroid coordinate of a primitive along an axis
+     * @param primitive the primitive index
+     * @param axis      the axis
+     * @return the coordinate
+     */
+    private double center(int primitive, int axis) {
+        return centers[primitive * 3 + axis];
+    }
+
+    /**
+     * Swaps two entries of the primitive indices
+     * @param i the first entry
+     * @param j the second entry
+     */
+    private void swap(int i, int j) {
+        int index = order[i];
+        order[i] = order[j];
+        order[j] = index;
+    }
+
+    /**
+     * Splits a range by the binned surface area heuristic - the primitives of the bins
+     * before the best split plane are moved to the start of the range
+     * @param first  the first index of the range
+     * @param count  the amount of the primitives in the range
+     * @param bounds the bounds of the range - of the boxes and then of the centroids
+     * @return the first index of the upper side, or -1 if a leaf is cheaper than any split
+     */
+    private int sahSplit(int first, int count, double[] bounds) {
+        if (count <= 1) return -1;
+        double[] binned = new BinsTask(first, count, bounds).reduce();
+
+        double bestCost = count * leafCost; // cost of keeping all the primitives in a leaf
+        int bestAxis = -1;
+        int bestSplit = 0;
+        double parentArea = halfArea(bounds, 0);
+        for (int axis = 0; axis < 3; axis++) {
+            if (bounds[9 + axis] - bounds[6 + axis] <= 0) continue; // all the centroids are in the same plane
+
+            // Sweep from the right to get the area and count of every right side
+            double[] rightArea = new double[bins];
+            int[] rightCount = new int[bins];
+            double[] side = emptyBounds(1);
+            int sideCount = 0;
+            for (int bin = bins - 1; bin > 0; bin--) {
+                int b = binOffset(axis, bin);
+                sideCount += (int) binned[b + 6];
+                grow(side, 0, binned, b);
+                rightArea[bin] = sideCount == 0 ? 0 : halfArea(side, 0);
+                rightCount[bin] = sideCount;
+            }
+
+            // Sweep from the left and evaluate the split before every bin
+            side = emptyBounds(1);
+            sideCount = 0;
+            for (int bin = 1; bin < bins; bin++) {
+                int b = binOffset(axis, bin - 1);
+                sideCount += (int) binned[b + 6];
+                grow(side, 0, binned, b);
+                if (sideCount == 0 || rightCount[bin] == 0) continue;
+                double cost = TRAVERSAL_COST
+                        + (halfArea(side, 0) * sideCount + rightArea[bin] * rightCount[bin]) / parentArea * leafCost;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestSplit = bin;
+                }
+            }
+        }
+        if (bestAxis < 0) return -1; // A leaf is cheaper than any split
+
+        // Partition the range in place by the side of the split plane
+        int i = first, j = first + count - 1;
+        while (i <= j) {
+            if (binIndex(order[i], bestAxis, bounds) < bestSplit) i++;
+            else swap(i, j--);
+        }
+        return i;
+    }
+
+    /**
+     * Finds the bin of the centroid of a primitive
+     * @param primitive the primitive index
+     * @param axis      the axis of the bins
+     * @param bounds    the bounds of the range - of the boxes and then of the centroids
+     * @return the bin index
+     */
+    private int binIndex(int primitive, int axis, double[] bounds) {
+        double min = bounds[6 + axis];
+        double extent = bounds[9 + axis] - min;
+        return Math.min(bins - 1, (int) (bins * (center(primitive, axis) - min) / extent));
+    }
+
+    /**
+     * Finds the offset of a bin in the bins array - 7 numbers per bin (its bounds and
+     * the amount of its primitives), the bins of every axis together
+     * @param axis the axis
+     * @param bin  the bin
+     * @return the offset
+     */
+    private int binOffset(int axis, int bin) {
+        return (axis * bins + bin) * 7;
+    }
+
+    /**
+     * Allocates empty bounds - 6 numbers per entry: minimal x, y, z followed by maximal
+     * x, y, z
+     * @param entries the amount of entries
+     * @return the empty bounds
+     */
+    private static double[] emptyBounds(int entries) {
+        double[] bounds = new double[entries * 6];
+        for (int i = 0; i < bounds.length; i += 6) {
+            bounds[i] = bounds[i + 1] = bounds[i + 2] = Double.POSITIVE_INFINITY;
+            bounds[i + 3] = bounds[i + 4] = bounds[i + 5] = Double.NEGATIVE_INFINITY;
+        }
+        return bounds;
+    }
+
+    /**
+     * Grows bounds to contain other bounds
+     * @param bounds the bounds to grow
+     * @param b      the offset of the bounds to grow
+     * @param other  the array of the other bounds
+     * @param o      the offset of the other bounds
+     */
+    private static void grow(double[] bounds, int b, double[] other, int o) {
+        for (int k = 0; k < 3; k++) {
+            bounds[b + k] = Math.min(bounds[b + k], other[o + k]);
+            bounds[b + k + 3] = Math.max(bounds[b + k + 3], other[o + k + 3]);
+        }
+    }
+
+    /**
+     * Half surface area of bounds
+     * @param bounds the array of the bounds
+     * @param b      the offset of the bounds
+     * @return the half surface area
+     */
+    private static double halfArea(double[] bounds, int b) {
+        double dx = bounds[b + 3] - bounds[b], dy = bounds[b + 4] - bounds[b + 1], dz = bounds[b + 5] - bounds[b + 2];
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    /**
+     * A reduction over a range of the primitive indices - big ranges are split in halves
+     * which are reduced in parallel and merged
+     */
+    @SuppressWarnings("serial")
+    private abstract class Reduction extends RecursiveTask<double[]> {
+        /** The first index of the range */
+        final int first;
+        /** The amount of the primitives in the range */
+        final int count;
+
+        /**
+         * Constructor for the reduction
+         * @param first the first index of the range
+         * @param count the amount of the primitives in the range
+         */
+        Reduction(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        /**
+         * Reduces the range, in the current thread if it is small
+         * @return the result
+         */
+        double[] reduce() {
+            return count <= SEQUENTIAL_REDUCTION ? reduceRange(first, count) : invoke();
+        }
+
+        @Override
+        protected double[] compute() {
+            if (count <= SEQUENTIAL_REDUCTION) return reduceRange(first, count);
+            int half = count / 2;
+            Reduction left = part(first, half);
+            left.fork();
+            double[] result = part(first + half, count - half).compute();
+            merge(result, left.join());
+            return result;
+        }
+
+        /**
+         * Creates the reduction of a part of the range
+         * @param first the first index of the part
+         * @param count the amount of the primitives in the part
+         * @return the reduction
+         */
+        abstract Reduction part(int first, int count);
+
+        /**
+         * Reduces a range sequentially
+         * @param first the first index of the range
+         * @param count the amount of the primitives in the range
+         * @return the result
+         */
+        abstract double[] reduceRange(int first, int count);
+
+        /**
+         * Merges the result of another part into a result
+         * @param result the result to merge into
+         * @param other  the result of the other part
+         */
+        abstract void merge(double[] result, double[] other);
+    }
+
+    /**
+     * Reduces a range into its bounds: the bounds of the boxes and then the bounds of the
+     * centroids - 12 numbers
+     */
+    @SuppressWarnings("serial")
+    private final class BoundsTask extends Reduction {
+        /**
+         * Constructor for the reduction
+         * @param first the first index of the range
+         * @param count the amount of the primitives in the range
+         */
+        BoundsTask(int first, int count) {
+            super(first, count);
+        }
+
+        @Override
+        Reduction part(int first, int count) {
+            return new BoundsTask(first, count);
+        }
+
+        @Override
+        double[] reduceRange(int first, int count) {
+            double[] bounds = emptyBounds(2);
+            for (int i = first; i < first + count; i++) {
+                int primitive = order[i];
+                grow(bounds, 0, boxes, primitive * 6);
+                for (int axis = 0; axis < 3; axis++) {
+                    double c = centers[primitive * 3 + axis];
+                    bounds[6 + axis] = Math.min(bounds[6 + axis], c);
+                    bounds[9 + axis] = Math.max(bounds[9 + axis], c);
+                }
+            }
+            return bounds;
+        }
+
+        @Override
+        void merge(double[] result, double[] other) {
+            grow(result, 0, other, 0);
+            grow(result, 6, other, 6);
+        }
+    }
+
+    /**
+     * Reduces a range into the surface area heuristic bins of all the axes - the bounds
+     * of the boxes in every bin and the amount of the primitives in it
+     */
+    @SuppressWarnings("serial")
+    private final class BinsTask extends Reduction {
+        /** The bounds of the range which is binned */
+        private final double[] bounds;
+
+        /**
+         * Constructor for the reduction
+         * @param first  the first index of the range
+         * @param count  the amount of the primitives in the range
+         * @param bounds the bounds of the whole range which is binned
+         */
+        BinsTask(int first, int count, double[] bounds) {
+            super(first, count);
+            this.bounds = bounds;
+        }
+
+        @Override
+        Reduction part(int first, int count) {
+            return new BinsTask(first, count, bounds);
+        }
+
+        @Override
+        double[] reduceRange(int first, int count) {
+            double[] binned = new double[3 * bins * 7];
+            for (int b = 0; b < binned.length; b += 7) {
+                binned[b] = binned[b + 1] = binned[b + 2] = Double.POSITIVE_INFINITY;
+                binned[b + 3] = binned[b + 4] = binned[b + 5] = Double.NEGATIVE_INFINITY;
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                if (bounds[9 + axis] - bounds[6 + axis] <= 0) continue; // the axis is not split
+                for (int i = first; i < first + count; i++) {
+                    int b = binOffset(axis, binIndex(order[i], axis, bounds));
+                    grow(binned, b, boxes, order[i] * 6);
+                    binned[b + 6]++;
+                }
+            }
+            return binned;
+        }
+
+        @Override
+        void merge(double[] result, double[] other) {
+            for (int b = 0; b < result.length; b += 7) {
+                grow(result, b, other, b);
+                result[b + 6] += other[b + 6];
+            }
+        }
+    }
+}
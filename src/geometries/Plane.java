@@ -1,4 +1,5 @@
 package geometries;
+import primitives.Double3;
 import primitives.Point;
 import primitives.Vector;
 import primitives.Ray;
@@ -67,4 +68,27 @@ public class Plane extends Geometry {
         Intersection intersection = new Intersection(this, ray.getPoint(t));
         return List.of(intersection); // Return a list with the intersection point
     }
+
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        Vector rayDirection = ray.getVector();
+        Point rayOrigin = ray.getPoint(0);
+        double denominator = normal.dotProduct(rayDirection);
+        if (Util.isZero(denominator) || rayOrigin.equals(point)) return null;
+        double t = (-(normal.dotProduct(rayOrigin.subtract(point))) / denominator);
+        if (t <= 0 || t >= maxDistance) return null;
+        Intersection intersection = new Intersection(this, ray.getPoint(t));
+        intersection.distance = t;
+        return intersection;
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        Vector rayDirection = ray.getVector();
+        Point rayOrigin = ray.getPoint(0);
+        double denominator = normal.dotProduct(rayDirection);
+        if (Util.isZero(denominator) || rayOrigin.equals(point)) return ktr;
+        double t = (-(normal.dotProduct(rayOrigin.subtract(point))) / denominator);
+        return t <= 0 || t >= maxDistance ? ktr : blockBy(ktr, minK);
+    }
 }
\ No newline at end of file
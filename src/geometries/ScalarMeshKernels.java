@@ -0,0 +1,92 @@
+package geometries;
+
+import primitives.Ray;
+
+/**
+ * ScalarMeshKernels are the kernels of the meshes in plain Java, used when the Vector
+ * API is not available. The lanes are tested one after the other, by the same
+ * operations as the vectorized kernels.
+ */
+final class ScalarMeshKernels implements MeshKernels {
+    /** The width of the scalar kernels */
+    private static final int WIDTH = 4;
+
+    @Override
+    public int width() {
+        return WIDTH;
+    }
+
+    @Override
+    public void boxEntries(double[] bounds, int offset, Ray ray, double maxDistance, double[] entries) {
+        int nearX = offset + ray.signX * 3 * WIDTH, farX = offset + (3 - ray.signX * 3) * WIDTH;
+        int nearY = offset + (1 + ray.signY * 3) * WIDTH, farY = offset + (4 - ray.signY * 3) * WIDTH;
+        int nearZ = offset + (2 + ray.signZ * 3) * WIDTH, farZ = offset + (5 - ray.signZ * 3) * WIDTH;
+        for (int i = 0; i < WIDTH; i++) {
+            double entry = 0, exit = maxDistance;
+            double t = (bounds[nearX + i] - ray.headX) * ray.invDirX;
+            if (t > entry) entry = t;
+            t = (bounds[farX + i] - ray.headX) * ray.invDirX;
+            if (t < exit) exit = t;
+            t = (bounds[nearY + i] - ray.headY) * ray.invDirY;
+            if (t > entry) entry = t;
+            t = (bounds[farY + i] - ray.headY) * ray.invDirY;
+            if (t < exit) exit = t;
+            t = (bounds[nearZ + i] - ray.headZ) * ray.invDirZ;
+            if (t > entry) entry = t;
+            t = (bounds[farZ + i] - ray.headZ) * ray.invDirZ;
+            if (t < exit) exit = t;
+            entries[i] = entry <= exit ? entry : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    @Override
+    public void faceDistances(double[] positions, int[] corners, int offset, Ray ray, double[] distances) {
+        for (int i = 0; i < WIDTH; i++)
+            distances[i] = hitDistance(positions,
+                    corners[offset + i], corners[offset + WIDTH + i], corners[offset + 2 * WIDTH + i],
+                    ray.headX, ray.headY, ray.headZ, ray.dirX, ray.dirY, ray.dirZ);
+    }
+
+    /**
+     * Calculate the distance from the ray's head to the intersection point with a
+     * face (Möller–Trumbore), on raw doubles without allocating any object. The
+     * vertices are read from the shared positions, and the misses are only masked at
+     * the end, so there are no data dependent branches. Points on the edges of the face
+     * are intersections.
+     * @param positions the vertex positions - 3 numbers per vertex
+     * @param a         the offset of the first vertex of the face in the positions
+     * @param b         the offset of the second vertex
+     * @param c         the offset of the third vertex
+     * @param ox        the ray origin x
+     * @param oy        the ray origin y
+     * @param oz        the ray origin z
+     * @param dx        the ray direction x
+     * @param dy        the ray direction y
+     * @param dz        the ray direction z
+     * @return the distance, or positive infinity if the ray misses the face
+     */
+    static double hitDistance(double[] positions, int a, int b, int c,
+                              double ox, double oy, double oz, double dx, double dy, double dz) {
+        double v0x = positions[a], v0y = positions[a + 1], v0z = positions[a + 2];
+        double e1x = positions[b] - v0x, e1y = positions[b + 1] - v0y, e1z = positions[b + 2] - v0z;
+        double e2x = positions[c] - v0x, e2y = positions[c + 1] - v0y, e2z = positions[c + 2] - v0z;
+        // p = d x e2
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        double inv = 1 / det;
+        // s = o - v0
+        double sx = ox - v0x, sy = oy - v0y, sz = oz - v0z;
+        double u = (sx * px + sy * py + sz * pz) * inv;
+        // q = s x e1
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double v = (dx * qx + dy * qy + dz * qz) * inv;
+        double t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+        // a parallel face gives infinite or NaN coordinates, which fail the comparisons
+        boolean hit = det != 0 & u >= 0 & u <= 1 & v >= 0 & u + v <= 1 & t > 0;
+        return hit ? t : Double.POSITIVE_INFINITY;
+    }
+}
@@ -76,4 +76,53 @@ public class Sphere extends RadialGeometry {
             new Intersection(this, p0.add(v.scale((t2))))
         );
     }
+
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        Point p0 = ray.getPoint(0);
+        Vector v = ray.getVector();
+        double t;
+        if (p0.equals(center)) t = radius;
+        else {
+            Vector L = p0.subtract(center);
+            double b = 2 * L.dotProduct(v);
+            double c = L.lengthSquared() - radiusSquared;
+            double discriminant = b * b - 4 * c;
+            if (discriminant < 0) return null;
+            if (discriminant == 0) {
+                t = -b / 2;
+                if (t < 0) return null; // The ray is outside the sphere
+            } else {
+                double sqrt = Math.sqrt(discriminant);
+                t = (-b - sqrt) / 2; // the nearer intersection
+                if (t <= 0) t = (-b + sqrt) / 2; // behind the ray's origin - take the farther one
+                if (t <= 0) return null; // Both intersections are behind or on the ray's origin
+            }
+        }
+        if (t >= maxDistance) return null;
+        Intersection intersection = new Intersection(this, ray.getPoint(t));
+        intersection.distance = t;
+        return intersection;
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        Point p0 = ray.getPoint(0);
+        if (p0.equals(center)) return radius < maxDistance ? blockBy(ktr, minK) : ktr;
+        Vector L = p0.subtract(center);
+        double b = 2 * L.dotProduct(ray.getVector());
+        double c = L.lengthSquared() - radiusSquared;
+        double discriminant = b * b - 4 * c;
+        if (discriminant < 0) return ktr;
+        if (discriminant == 0) {
+            double t = -b / 2;
+            return t >= 0 && t < maxDistance ? blockBy(ktr, minK) : ktr;
+        }
+        double sqrt = Math.sqrt(discriminant);
+        double t1 = (-b + sqrt) / 2;
+        double t2 = (-b - sqrt) / 2;
+        if (t1 > 0 && t1 < maxDistance) ktr = blockBy(ktr, minK);
+        if (ktr != Double3.ZERO && t2 > 0 && t2 < maxDistance) ktr = blockBy(ktr, minK);
+        return ktr;
+    }
 }
\ No newline at end of file
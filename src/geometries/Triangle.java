@@ -1,15 +1,29 @@
 package geometries;
 import primitives.BoundingBox;
+import primitives.Double3;
 import primitives.Point;
 import primitives.Ray;
 import java.util.List;
 import primitives.Vector;
 
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
+
 /**
  * Triangle class represents a triangle in 3D space.
- * It extends the Polygon class and is defined by three points.
+ * It extends the Polygon class and is defined by three points.<br/>
+ * Intersections are calculated by the Möller–Trumbore algorithm on raw doubles
+ * and edge vectors precomputed in the constructor, so that a ray which misses
+ * the triangle does not allocate any object.
  */
 public class Triangle extends Polygon {
+    /** Coordinates of the first vertex */
+    private final double v0x, v0y, v0z;
+    /** Edge from the first vertex to the second one */
+    private final double e1x, e1y, e1z;
+    /** Edge from the first vertex to the third one */
+    private final double e2x, e2y, e2z;
+
     /**
      * Constructor for Triangle
      * @param p1 first point of the triangle
@@ -30,6 +44,16 @@ public class Triangle extends Polygon {
         Point max = new Point(maxX, maxY, maxZ);
 
         this.box = new BoundingBox(min, max);
+
+        v0x = p1.point.d1();
+        v0y = p1.point.d2();
+        v0z = p1.point.d3();
+        e1x = p2.point.d1() - v0x;
+        e1y = p2.point.d2() - v0y;
+        e1z = p2.point.d3() - v0z;
+        e2x = p3.point.d1() - v0x;
+        e2y = p3.point.d2() - v0y;
+        e2z = p3.point.d3() - v0z;
     }
 
     @Override
@@ -38,12 +62,59 @@ public class Triangle extends Polygon {
         return super.getNormal(point);
     }
 
+    /**
+     * Calculate the distance from the ray's head to the intersection point with
+     * the triangle (Möller–Trumbore). Points on the edges and the vertices of
+     * the triangle are not considered as intersections.
+     * @param  ray the ray
+     * @return     the distance, or positive infinity if the ray misses the triangle
+     */
+    private double hitDistance(Ray ray) {
+        double dx = ray.dirX, dy = ray.dirY, dz = ray.dirZ;
+
+        // p = d x e2
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        if (isZero(det)) return Double.POSITIVE_INFINITY; // the ray is parallel to the triangle
+        double inv = 1 / det;
+
+        // s = o - v0
+        double sx = ray.headX - v0x;
+        double sy = ray.headY - v0y;
+        double sz = ray.headZ - v0z;
+        double u = alignZero((sx * px + sy * py + sz * pz) * inv);
+        if (u <= 0 || u >= 1) return Double.POSITIVE_INFINITY;
+
+        // q = s x e1
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double v = alignZero((dx * qx + dy * qy + dz * qz) * inv);
+        if (v <= 0 || alignZero(1 - u - v) <= 0) return Double.POSITIVE_INFINITY;
+
+        double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * inv);
+        return t > 0 ? t : Double.POSITIVE_INFINITY;
+    }
+
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
-        // Call the findIntersections method from the Polygon class
-        if (super.calculateIntersectionsHelper(ray) == null) return null;
-        return List.of(new Intersection(this, super.calculateIntersectionsHelper(ray).getFirst().point));
+        double t = hitDistance(ray);
+        return t == Double.POSITIVE_INFINITY ? null : List.of(new Intersection(this, ray.getPoint(t)));
     }
 
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        double t = hitDistance(ray);
+        if (t >= maxDistance) return null;
+        Intersection intersection = new Intersection(this, ray.getPoint(t));
+        intersection.distance = t;
+        return intersection;
+    }
 
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        return hitDistance(ray) < maxDistance ? blockBy(ktr, minK) : ktr;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,499 @@
+package geometries;
+
+import primitives.BoundingBox;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * TriangleMesh class represents a mesh of triangles sharing a single material.<br>
+ * The vertex positions are kept in a flat array (3 numbers per vertex) and the
+ * faces reference them through an index buffer (3 indices per face), so no
+ * object is kept per vertex or per face. The face normals are precomputed and
+ * the faces are organized in an internal linearized wide bounding volume hierarchy,
+ * so the whole mesh behaves as a single geometry.<br>
+ * Unlike a single {@link Triangle}, points on the edges of a face are
+ * intersections, so that rays don't leak through the seams between faces, and
+ * the hits of the faces around a shared edge are counted once.<br>
+ * A node of the hierarchy has as many children as the lanes of the
+ * {@link MeshKernels} (4, or 8 with the AVX-512 vector kernels), and the ray is tested
+ * against the boxes of all of them at once. A leaf has as many faces, consecutive in
+ * the index buffer, which are also tested at once, reading their vertices from the
+ * shared positions.
+ */
+public class TriangleMesh extends Geometry {
+    /** The kernels of the box and the face tests */
+    private static final MeshKernels KERNELS = MeshKernels.KERNELS;
+    /** The width of the hierarchy - the maximal amount of children of a node and of faces of a leaf */
+    private static final int WIDTH = KERNELS.width();
+    /** The initial size of the traversal stack, it grows for deeper trees */
+    private static final int STACK_SIZE = 64;
+    /** The relative difference below which the distances of two hits are the same hit */
+    private static final double SAME_HIT = 1e-9;
+
+    /** The vertex positions - 3 numbers per vertex: x, y, z */
+    private final double[] positions;
+    /** The faces - 3 vertex indices per face, ordered so that every leaf references a contiguous range */
+    private final int[] indices;
+    /** The unit normals of the faces - 3 numbers per face, in the order of the faces */
+    private final double[] normals;
+    /**
+     * The boxes of the children of the nodes - 6 * WIDTH numbers per node: the minimal x
+     * of all its children, their minimal y and z, and then their maximal x, y and z. An
+     * unused child has an empty box, which all the rays miss
+     */
+    private double[] bounds;
+    /**
+     * The children of the nodes - WIDTH per node: the index of an internal node, or the
+     * bitwise complement of the index of a leaf
+     */
+    private int[] children;
+    /** The leaves - 2 numbers per leaf: the index of its first face and the amount of its faces */
+    private int[] leaves;
+    /**
+     * The corners of the faces of the leaves - 3 * WIDTH numbers per leaf: the offsets in
+     * the positions of the first vertex of its faces, then of their second and third
+     * vertices. The lanes beyond the faces of a leaf repeat its last face
+     */
+    private int[] corners;
+    /** The box of the whole mesh - the minimal x, y, z and then the maximal x, y, z */
+    private final double[] rootBounds = new double[6];
+    /** The root of the hierarchy, a node index or a leaf index complement as the children */
+    private final int root;
+    /** The amount of nodes in the hierarchy */
+    private int nodeCount = 0;
+    /** The amount of leaves in the hierarchy */
+    private int leafCount = 0;
+
+    /**
+     * Constructor for TriangleMesh based on a vertex table
+     * @param vertices the vertices of the mesh
+     * @param indices  the faces - 3 indices into the vertices per face
+     * @throws IllegalArgumentException if the faces are not valid
+     */
+    public TriangleMesh(Point[] vertices, int... indices) {
+        this(flatten(vertices), indices);
+    }
+
+    /**
+     * Constructor for TriangleMesh based on flat buffers. The buffers are copied.
+     * @param positions the vertex positions - 3 numbers per vertex
+     * @param indices   the faces - 3 indices into the vertices per face
+     * @throws IllegalArgumentException in any case of illegal buffers:
+     *                                  <ul>
+     *                                  <li>The lengths of the buffers are not multiples of 3</li>
+     *                                  <li>There are no faces</li>
+     *                                  <li>An index is not a vertex of the mesh</li>
+     *                                  <li>A face is degenerate (its vertices lay in the same line)</li>
+     *                                  </ul>
+     */
+    public TriangleMesh(double[] positions, int[] indices) {
+        if (positions.length % 3 != 0) throw new IllegalArgumentException("Positions must have 3 coordinates per vertex");
+        if (indices.length % 3 != 0) throw new IllegalArgumentException("Indices must have 3 vertices per face");
+        if (indices.length == 0) throw new IllegalArgumentException("A mesh can't have no faces");
+        int vertexCount = positions.length / 3;
+        for (int index : indices)
+            if (index < 0 || index >= vertexCount) throw new IllegalArgumentException("Index out of the vertices range");
+
+        this.positions = positions.clone();
+        this.indices = indices.clone();
+        int n = indices.length / 3;
+
+        // precompute the face normals
+        normals = new double[n * 3];
+        for (int f = 0; f < n; f++) {
+            int a = this.indices[f * 3] * 3, b = this.indices[f * 3 + 1] * 3, c = this.indices[f * 3 + 2] * 3;
+            double e1x = positions[b] - positions[a], e1y = positions[b + 1] - positions[a + 1], e1z = positions[b + 2] - positions[a + 2];
+            double e2x = positions[c] - positions[a], e2y = positions[c + 1] - positions[a + 1], e2z = positions[c + 2] - positions[a + 2];
+            double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length == 0) throw new IllegalArgumentException("A face can't be degenerate");
+            normals[f * 3] = nx / length;
+            normals[f * 3 + 1] = ny / length;
+            normals[f * 3 + 2] = nz / length;
+        }
+
+        // build the hierarchy over the face centers
+        bounds = new double[(n / WIDTH + 1) * 6 * WIDTH];
+        children = new int[(n / WIDTH + 1) * WIDTH];
+        leaves = new int[(n / WIDTH + 1) * 2];
+        corners = new int[(n / WIDTH + 1) * 3 * WIDTH];
+        double[] centers = new double[n * 3];
+        for (int f = 0; f < n; f++)
+            for (int axis = 0; axis < 3; axis++)
+                centers[f * 3 + axis] = (this.positions[this.indices[f * 3] * 3 + axis]
+                        + this.positions[this.indices[f * 3 + 1] * 3 + axis]
+                        + this.positions[this.indices[f * 3 + 2] * 3 + axis]) / 3;
+        root = build(0, n, centers, rootBounds);
+        bounds = Arrays.copyOf(bounds, nodeCount * 6 * WIDTH);
+        children = Arrays.copyOf(children, nodeCount * WIDTH);
+        leaves = Arrays.copyOf(leaves, leafCount * 2);
+        corners = Arrays.copyOf(corners, leafCount * 3 * WIDTH);
+        box = new BoundingBox(new Point(rootBounds[0], rootBounds[1], rootBounds[2]),
+                new Point(rootBounds[3], rootBounds[4], rootBounds[5]));
+    }
+
+    /**
+     * Flattens a vertex table into a positions buffer
+     * @param vertices the vertices
+     * @return the positions - 3 numbers per vertex
+     */
+    private static double[] flatten(Point[] vertices) {
+        double[] positions = new double[vertices.length * 3];
+        for (int i = 0; i < vertices.length; i++) {
+            positions[i * 3] = vertices[i].point.d1();
+            positions[i * 3 + 1] = vertices[i].point.d2();
+            positions[i * 3 + 2] = vertices[i].point.d3();
+        }
+        return positions;
+    }
+
+    /**
+     * Get the amount of the faces in the mesh
+     * @return the amount of the faces
+     */
+    public int getFaceCount() { return indices.length / 3; }
+
+    /**
+     * Recursively builds the hierarchy over a range of faces. A range of at most WIDTH
+     * faces is a leaf. A larger range is a node, whose range is split, and then its
+     * largest part again, until it has WIDTH parts or all its parts fit in leaves. The
+     * parts are its children.
+     * @param first   the index of the first face in the range
+     * @param count   the amount of faces in the range
+     * @param centers the centers of the faces, 3 numbers per face
+     * @param box     receives the box of the range - the minimal x, y, z and then the maximal x, y, z
+     * @return the index of the created node, or the bitwise complement of the index of the created leaf
+     */
+    private int build(int first, int count, double[] centers, double[] box) {
+        box[0] = box[1] = box[2] = Double.POSITIVE_INFINITY;
+        box[3] = box[4] = box[5] = Double.NEGATIVE_INFINITY;
+        for (int f = first; f < first + count; f++)
+            for (int axis = 0; axis < 3; axis++)
+                for (int k = 0; k < 3; k++) {
+                    double coordinate = positions[indices[f * 3 + k] * 3 + axis];
+                    box[axis] = Math.min(box[axis], coordinate);
+                    box[3 + axis] = Math.max(box[3 + axis], coordinate);
+                }
+        if (count <= WIDTH) return ~leaf(first, count);
+
+        int[] firsts = new int[WIDTH], counts = new int[WIDTH];
+        firsts[0] = first;
+        counts[0] = count;
+        int parts = 1;
+        while (parts < WIDTH) {
+            int largest = 0;
+            for (int p = 1; p < parts; p++)
+                if (counts[p] > counts[largest]) largest = p;
+            if (counts[largest] <= WIDTH) break;
+            int mid = split(firsts[largest], counts[largest], centers);
+            firsts[parts] = mid;
+            counts[parts++] = firsts[largest] + counts[largest] - mid;
+            counts[largest] = mid - firsts[largest];
+        }
+
+        int node = nodeCount++;
+        if (nodeCount * WIDTH > children.length) {
+            children = Arrays.copyOf(children, children.length * 2);
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        double[] childBox = new double[6];
+        for (int c = 0; c < WIDTH; c++) {
+            if (c < parts) children[node * WIDTH + c] = build(firsts[c], counts[c], centers, childBox);
+            else {
+                // an empty box for an unused child
+                childBox[0] = childBox[1] = childBox[2] = Double.POSITIVE_INFINITY;
+                childBox[3] = childBox[4] = childBox[5] = Double.NEGATIVE_INFINITY;
+            }
+            for (int k = 0; k < 6; k++) bounds[(node * 6 + k) * WIDTH + c] = childBox[k];
+        }
+        return node;
+    }
+
+    /**
+     * Splits a range of faces in the middle of the widest extent of their centers,
+     * partitioning the faces in place
+     * @param first   the index of the first face in the range
+     * @param count   the amount of faces in the range, at least 2
+     * @param centers the centers of the faces, 3 numbers per face
+     * @return the index of the first face of the second part
+     */
+    private int split(int first, int count, double[] centers) {
+        double[] cMin = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+        double[] cMax = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int f = first; f < first + count; f++)
+            for (int axis = 0; axis < 3; axis++) {
+                cMin[axis] = Math.min(cMin[axis], centers[f * 3 + axis]);
+                cMax[axis] = Math.max(cMax[axis], centers[f * 3 + axis]);
+            }
+        int axis = 0;
+        if (cMax[1] - cMin[1] > cMax[axis] - cMin[axis]) axis = 1;
+        if (cMax[2] - cMin[2] > cMax[axis] - cMin[axis]) axis = 2;
+        double split = (cMin[axis] + cMax[axis]) / 2;
+
+        // Partition the range in place around the split plane
+        int mid = first;
+        for (int f = first; f < first + count; f++)
+            if (centers[f * 3 + axis] < split) swap(f, mid++, centers);
+        // All the centers are on one side - split by count
+        if (mid == first || mid == first + count) mid = first + count / 2;
+        return mid;
+    }
+
+    /**
+     * Creates a leaf over a range of faces, with the corners of its faces in the lanes
+     * @param first the index of the first face in the range
+     * @param count the amount of faces in the range, at most WIDTH
+     * @return the index of the created leaf
+     */
+    private int leaf(int first, int count) {
+        int leaf = leafCount++;
+        if (leafCount * 2 > leaves.length) {
+            leaves = Arrays.copyOf(leaves, leaves.length * 2);
+            corners = Arrays.copyOf(corners, corners.length * 2);
+        }
+        leaves[leaf * 2] = first;
+        leaves[leaf * 2 + 1] = count;
+        for (int i = 0; i < WIDTH; i++) {
+            int face = first + Math.min(i, count - 1);
+            for (int k = 0; k < 3; k++) corners[(leaf * 3 + k) * WIDTH + i] = indices[face * 3 + k] * 3;
+        }
+        return leaf;
+    }
+
+    /**
+     * Swaps two faces together with their normals and centers
+     * @param i       the first face index
+     * @param j       the second face index
+     * @param centers the centers of the faces
+     */
+    private void swap(int i, int j, double[] centers) {
+        for (int k = 0; k < 3; k++) {
+            int index = indices[i * 3 + k];
+            indices[i * 3 + k] = indices[j * 3 + k];
+            indices[j * 3 + k] = index;
+            double d = normals[i * 3 + k];
+            normals[i * 3 + k] = normals[j * 3 + k];
+            normals[j * 3 + k] = d;
+            d = centers[i * 3 + k];
+            centers[i * 3 + k] = centers[j * 3 + k];
+            centers[j * 3 + k] = d;
+        }
+    }
+
+    /**
+     * Pushes a child onto the traversal stack, below the children of the same node
+     * which the ray enters farther, so the nearest child is popped first
+     * @param stack   the children of the stack
+     * @param entries the entry distances of the children of the stack
+     * @param base    the number of the first child of the same node in the stack
+     * @param top     the amount of children in the stack
+     * @param child   the child
+     * @param entry   the distance at which the ray enters the box of the child
+     * @return the new amount of children in the stack
+     */
+    private static int push(int[] stack, double[] entries, int base, int top, int child, double entry) {
+        int i = top;
+        for (; i > base && entries[i - 1] <= entry; i--) {
+            stack[i] = stack[i - 1];
+            entries[i] = entries[i - 1];
+        }
+        stack[i] = child;
+        entries[i] = entry;
+        return top + 1;
+    }
+
+    /**
+     * The leaf kernel - calculates the distances from the ray's head to the
+     * intersection points with the faces of a leaf
+     * @param leaf      the leaf index
+     * @param ray       the ray
+     * @param distances receives the distance of each face, positive infinity if the ray misses it
+     */
+    private void leafDistances(int leaf, Ray ray, double[] distances) {
+        KERNELS.faceDistances(positions, corners, leaf * 3 * WIDTH, ray, distances);
+    }
+
+    /**
+     * The node kernel - calculates the distances at which the ray enters the boxes of
+     * the children of a node
+     * @param node        the node index
+     * @param ray         the ray
+     * @param maxDistance the maximal distance along the ray
+     * @param entries     receives the entry distance of each child, positive infinity if
+     *                    the ray misses its box or enters it beyond the maximal distance
+     */
+    private void childEntries(int node, Ray ray, double maxDistance, double[] entries) {
+        KERNELS.boxEntries(bounds, node * 6 * WIDTH, ray, maxDistance, entries);
+    }
+
+    /**
+     * Checks whether a hit was already found at the same distance. A ray through a
+     * shared edge or vertex hits all the faces around it at the same distance, and it
+     * must be counted once.
+     * @param found the distances of the hits found so far
+     * @param count the amount of the hits found so far
+     * @param t     the distance of the hit
+     * @return true if a hit at the same distance was already found
+     */
+    private static boolean isFound(double[] found, int count, double t) {
+        for (int i = 0; i < count; i++)
+            if (Math.abs(found[i] - t) <= SAME_HIT * t) return true;
+        return false;
+    }
+
+    /**
+     * Creates the intersection with a face, carrying the face normal
+     * @param ray  the intersecting ray
+     * @param face the face index
+     * @param t    the distance from the ray head
+     * @return the intersection
+     */
+    private Intersection intersection(Ray ray, int face, double t) {
+        Intersection intersection = new Intersection(this, ray.getPoint(t));
+        intersection.n = new Vector(normals[face * 3], normals[face * 3 + 1], normals[face * 3 + 2]);
+        intersection.distance = t;
+        return intersection;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * The intersection queries provide the normal of the hit face, so this method
+     * is needed only for a point whose face is unknown - it searches the face
+     * which contains the point.
+     * @throws IllegalArgumentException if the point is not on the mesh
+     */
+    @Override
+    public Vector getNormal(Point point) {
+        double x = point.point.d1(), y = point.point.d2(), z = point.point.d3();
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int f = 0; f < indices.length / 3; f++) {
+            double nx = normals[f * 3], ny = normals[f * 3 + 1], nz = normals[f * 3 + 2];
+            int a = indices[f * 3] * 3;
+            double distance = nx * (x - positions[a]) + ny * (y - positions[a + 1]) + nz * (z - positions[a + 2]);
+            if (Math.abs(distance) >= bestDistance) continue;
+            // project the point onto the plane of the face and cast it back onto the face
+            double qx = x - nx * distance, qy = y - ny * distance, qz = z - nz * distance;
+            if (ScalarMeshKernels.hitDistance(positions, a, indices[f * 3 + 1] * 3, indices[f * 3 + 2] * 3,
+                    qx + nx, qy + ny, qz + nz, -nx, -ny, -nz) != Double.POSITIVE_INFINITY) {
+                best = f;
+                bestDistance = Math.abs(distance);
+            }
+        }
+        if (best < 0) throw new IllegalArgumentException("The point is not on the mesh");
+        return new Vector(normals[best * 3], normals[best * 3 + 1], normals[best * 3 + 2]);
+    }
+
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        if (BoundingBox.entryDistance(rootBounds, 0, ray, Double.POSITIVE_INFINITY) == Double.POSITIVE_INFINITY)
+            return null;
+        List<Intersection> result = null;
+        double[] lanes = new double[WIDTH];
+        double[] found = new double[STACK_SIZE];
+        int hits = 0;
+        int[] stack = new int[STACK_SIZE];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int child = stack[--top];
+            if (child < 0) {
+                int leaf = ~child, first = leaves[leaf * 2], count = leaves[leaf * 2 + 1];
+                leafDistances(leaf, ray, lanes);
+                for (int i = 0; i < count; i++) {
+                    if (lanes[i] == Double.POSITIVE_INFINITY || isFound(found, hits, lanes[i])) continue;
+                    if (hits == found.length) found = Arrays.copyOf(found, hits * 2);
+                    found[hits++] = lanes[i];
+                    if (result == null) result = new LinkedList<>();
+                    result.add(intersection(ray, first + i, lanes[i]));
+                }
+            } else {
+                childEntries(child, ray, Double.POSITIVE_INFINITY, lanes);
+                if (top + WIDTH > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                for (int c = 0; c < WIDTH; c++)
+                    if (lanes[c] != Double.POSITIVE_INFINITY) stack[top++] = children[child * WIDTH + c];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * The children of a node are tested together and the nearer ones are visited
+     * first, so the closest intersection is found early and prunes the farther boxes.
+     */
+    @Override
+    protected Intersection calculateClosestIntersectionHelper(Ray ray, double maxDistance) {
+        double entry = BoundingBox.entryDistance(rootBounds, 0, ray, maxDistance);
+        if (entry == Double.POSITIVE_INFINITY) return null;
+        int closest = -1;
+        double[] lanes = new double[WIDTH];
+        int[] stack = new int[STACK_SIZE];
+        double[] entries = new double[STACK_SIZE];
+        int top = push(stack, entries, 0, 0, root, entry);
+        while (top > 0) {
+            int child = stack[--top];
+            // skip the boxes which the ray enters beyond the closest intersection found since they were pushed
+            if (entries[top] >= maxDistance) continue;
+            if (child < 0) {
+                int leaf = ~child, first = leaves[leaf * 2], count = leaves[leaf * 2 + 1];
+                leafDistances(leaf, ray, lanes);
+                for (int i = 0; i < count; i++)
+                    if (lanes[i] < maxDistance) {
+                        closest = first + i;
+                        maxDistance = lanes[i];
+                    }
+            } else {
+                childEntries(child, ray, maxDistance, lanes);
+                if (top + WIDTH > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                    entries = Arrays.copyOf(entries, entries.length * 2);
+                }
+                int base = top;
+                for (int c = 0; c < WIDTH; c++)
+                    if (lanes[c] != Double.POSITIVE_INFINITY)
+                        top = push(stack, entries, base, top, children[child * WIDTH + c], lanes[c]);
+            }
+        }
+        // the intersection object is created only for the closest face
+        return closest < 0 ? null : intersection(ray, closest, maxDistance);
+    }
+
+    @Override
+    protected Double3 calculateTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK) {
+        if (BoundingBox.entryDistance(rootBounds, 0, ray, maxDistance) == Double.POSITIVE_INFINITY) return ktr;
+        double[] lanes = new double[WIDTH];
+        double[] found = new double[STACK_SIZE];
+        int hits = 0;
+        int[] stack = new int[STACK_SIZE];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int child = stack[--top];
+            if (child < 0) {
+                int leaf = ~child, first = leaves[leaf * 2], count = leaves[leaf * 2 + 1];
+                leafDistances(leaf, ray, lanes);
+                for (int i = 0; i < count; i++)
+                    if (lanes[i] < maxDistance && !isFound(found, hits, lanes[i])) {
+                        if (hits == found.length) found = Arrays.copyOf(found, hits * 2);
+                        found[hits++] = lanes[i];
+                        ktr = blockBy(ktr, minK);
+                        if (ktr == Double3.ZERO) return ktr; // the segment is opaque
+                    }
+            } else {
+                // skip the boxes which the ray enters beyond the end of the segment
+                childEntries(child, ray, maxDistance, lanes);
+                if (top + WIDTH > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                for (int c = 0; c < WIDTH; c++)
+                    if (lanes[c] != Double.POSITIVE_INFINITY) stack[top++] = children[child * WIDTH + c];
+            }
+        }
+        return ktr;
+    }
+}
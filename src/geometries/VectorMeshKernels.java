@@ -0,0 +1,117 @@
+package geometries;
+
+import static jdk.incubator.vector.VectorOperators.*;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+import primitives.Ray;
+
+/**
+ * VectorMeshKernels are the kernels of the meshes vectorized by the Vector API - a lane
+ * of a vector per child box or per face, 4 lanes on AVX2 and 8 lanes on AVX-512. The
+ * faces are gathered from the shared vertex positions. Only this class refers to the
+ * incubator module, so it is loaded only if the module is available.
+ */
+final class VectorMeshKernels implements MeshKernels {
+    /** The species of the vectors - a lane per child box or per face */
+    private final VectorSpecies<Double> species;
+    /** Positive infinity in all the lanes */
+    private final DoubleVector infinity;
+    /** Zero in all the lanes */
+    private final DoubleVector zero;
+    /** One in all the lanes */
+    private final DoubleVector one;
+
+    /**
+     * Constructor for the kernels of a species
+     * @param species the species of the vectors
+     */
+    private VectorMeshKernels(VectorSpecies<Double> species) {
+        this.species = species;
+        infinity = DoubleVector.broadcast(species, Double.POSITIVE_INFINITY);
+        zero = DoubleVector.zero(species);
+        one = DoubleVector.broadcast(species, 1);
+    }
+
+    /**
+     * Creates the kernels of the preferred species of the processor
+     * @return the kernels, or null if the processor has vectors of less than 4 doubles,
+     *         which wouldn't be faster than the scalar kernels
+     */
+    static MeshKernels create() {
+        VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+        if (species.length() < 4) return null;
+        return new VectorMeshKernels(species.length() > 8 ? DoubleVector.SPECIES_512 : species);
+    }
+
+    @Override
+    public int width() {
+        return species.length();
+    }
+
+    @Override
+    public void boxEntries(double[] bounds, int offset, Ray ray, double maxDistance, double[] entries) {
+        int width = species.length();
+        DoubleVector entry = zero;
+        DoubleVector exit = DoubleVector.broadcast(species, maxDistance);
+        // the comparisons keep the current distance for NaN, as the scalar slab test does
+        DoubleVector t = DoubleVector.fromArray(species, bounds, offset + ray.signX * 3 * width)
+                .sub(ray.headX).mul(ray.invDirX);
+        entry = entry.blend(t, t.compare(GT, entry));
+        t = DoubleVector.fromArray(species, bounds, offset + (3 - ray.signX * 3) * width)
+                .sub(ray.headX).mul(ray.invDirX);
+        exit = exit.blend(t, t.compare(LT, exit));
+        t = DoubleVector.fromArray(species, bounds, offset + (1 + ray.signY * 3) * width)
+                .sub(ray.headY).mul(ray.invDirY);
+        entry = entry.blend(t, t.compare(GT, entry));
+        t = DoubleVector.fromArray(species, bounds, offset + (4 - ray.signY * 3) * width)
+                .sub(ray.headY).mul(ray.invDirY);
+        exit = exit.blend(t, t.compare(LT, exit));
+        t = DoubleVector.fromArray(species, bounds, offset + (2 + ray.signZ * 3) * width)
+                .sub(ray.headZ).mul(ray.invDirZ);
+        entry = entry.blend(t, t.compare(GT, entry));
+        t = DoubleVector.fromArray(species, bounds, offset + (5 - ray.signZ * 3) * width)
+                .sub(ray.headZ).mul(ray.invDirZ);
+        exit = exit.blend(t, t.compare(LT, exit));
+        entry.blend(infinity, entry.compare(GT, exit)).intoArray(entries, 0);
+    }
+
+    @Override
+    public void faceDistances(double[] positions, int[] corners, int offset, Ray ray, double[] distances) {
+        int width = species.length();
+        DoubleVector v0x = DoubleVector.fromArray(species, positions, 0, corners, offset);
+        DoubleVector v0y = DoubleVector.fromArray(species, positions, 1, corners, offset);
+        DoubleVector v0z = DoubleVector.fromArray(species, positions, 2, corners, offset);
+        DoubleVector e1x = DoubleVector.fromArray(species, positions, 0, corners, offset + width).sub(v0x);
+        DoubleVector e1y = DoubleVector.fromArray(species, positions, 1, corners, offset + width).sub(v0y);
+        DoubleVector e1z = DoubleVector.fromArray(species, positions, 2, corners, offset + width).sub(v0z);
+        DoubleVector e2x = DoubleVector.fromArray(species, positions, 0, corners, offset + 2 * width).sub(v0x);
+        DoubleVector e2y = DoubleVector.fromArray(species, positions, 1, corners, offset + 2 * width).sub(v0y);
+        DoubleVector e2z = DoubleVector.fromArray(species, positions, 2, corners, offset + 2 * width).sub(v0z);
+        double dx = ray.dirX, dy = ray.dirY, dz = ray.dirZ;
+        // p = d x e2
+        DoubleVector px = e2z.mul(dy).sub(e2y.mul(dz));
+        DoubleVector py = e2x.mul(dz).sub(e2z.mul(dx));
+        DoubleVector pz = e2y.mul(dx).sub(e2x.mul(dy));
+        DoubleVector det = e1x.mul(px).add(e1y.mul(py)).add(e1z.mul(pz));
+        DoubleVector inv = one.div(det);
+        // s = o - v0
+        DoubleVector sx = DoubleVector.broadcast(species, ray.headX).sub(v0x);
+        DoubleVector sy = DoubleVector.broadcast(species, ray.headY).sub(v0y);
+        DoubleVector sz = DoubleVector.broadcast(species, ray.headZ).sub(v0z);
+        DoubleVector u = sx.mul(px).add(sy.mul(py)).add(sz.mul(pz)).mul(inv);
+        // q = s x e1
+        DoubleVector qx = sy.mul(e1z).sub(sz.mul(e1y));
+        DoubleVector qy = sz.mul(e1x).sub(sx.mul(e1z));
+        DoubleVector qz = sx.mul(e1y).sub(sy.mul(e1x));
+        DoubleVector v = qx.mul(dx).add(qy.mul(dy)).add(qz.mul(dz)).mul(inv);
+        DoubleVector t = e2x.mul(qx).add(e2y.mul(qy)).add(e2z.mul(qz)).mul(inv);
+        // a parallel face gives infinite or NaN coordinates, which fail the comparisons
+        VectorMask<Double> hit = det.compare(NE, 0)
+                .and(u.compare(GE, 0)).and(u.compare(LE, 1))
+                .and(v.compare(GE, 0)).and(u.add(v).compare(LE, 1))
+                .and(t.compare(GT, 0));
+        t.blend(infinity, hit.not()).intoArray(distances, 0);
+    }
+}
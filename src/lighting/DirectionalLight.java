@@ -39,6 +39,11 @@ public class DirectionalLight extends Light implements LightSource {
         return Double.POSITIVE_INFINITY; // Directional light is considered to be infinitely far away
     }
 
+    @Override
+    public double getDistance(double x, double y, double z) {
+        return Double.POSITIVE_INFINITY;
+    }
+
     @Override
     public void setSoftShadow(double radius, int numOfRays) {
         radius = 0.0; // Directional light does not support soft shadows in the same way as point lights
@@ -49,6 +54,22 @@ public class DirectionalLight extends Light implements LightSource {
         return numOfRays;
     }
     @Override
+    public void setSoftShadow(double radius, int probeCount, int maxSamples) {
+        // Directional light does not support soft shadows
+    }
+    @Override
+    public int getProbeCount() {
+        return probeCount;
+    }
+    @Override
+    public boolean forEachProbe(Point point, SampleVisitor visitor) {
+        return forEachSample(point, visitor);
+    }
+    @Override
+    public boolean forEachSample(Point point, SampleVisitor visitor) {
+        return visitor.visit(-direction.point.d1(), -direction.point.d2(), -direction.point.d3());
+    }
+    @Override
     public List<Vector> generateSampleVectors(Point point) {
         return List.of(direction.scale(-1)); // Directional light only has one direction, so it returns a list with that direction
     }
@@ -14,6 +14,8 @@ public abstract class Light {
     protected double radius = 0.0; //no soft shadows by default
     /** for soft shadows - the number of rays to sample */
     protected int numOfRays = 1; //no soft shadows by default
+    /** for adaptive soft shadows - the number of probe rays cast before the full sampling */
+    protected int probeCount = 0; //no probing by default
 
     /**
      * Constructor for the light
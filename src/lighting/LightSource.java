@@ -7,6 +7,20 @@ import java.util.List;
  * It extends PointLight to include direction and angle of the spotlight.
  */
 public interface LightSource {
+    /**
+     * Visitor of the directions from a point to the samples of a light
+     */
+    @FunctionalInterface
+    interface SampleVisitor {
+        /**
+         * Visits the direction from the point to a sample (not normalized)
+         * @param x the x component of the direction
+         * @param y the y component of the direction
+         * @param z the z component of the direction
+         * @return true to continue to the next sample, false to stop
+         */
+        boolean visit(double x, double y, double z);
+    }
     /**
      * Get the intensity of the light at a specific point.
      * @param p the point in space where the intensity is calculated
@@ -25,6 +39,14 @@ public interface LightSource {
      * @return the distance from the light source to the point
      */
     double getDistance(Point point);
+    /**
+     * Get the distance from the light source to a point given by its coordinates.
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param z the z coordinate of the point
+     * @return the distance from the light source to the point
+     */
+    double getDistance(double x, double y, double z);
     /**
      * Set the soft shadow parameters.
      * @param radius the radius of the circle for soft shadows
@@ -36,6 +58,38 @@ public interface LightSource {
      * @return the number of rays to sample for soft shadows
      */
     public int getNumOfRays();
+    /**
+     * Set adaptive soft shadow parameters. A ring of probe rays is cast first,
+     * and only if the probes don't agree (the point is in the penumbra) the full
+     * sampling is done.
+     * @param radius     the radius of the circle for soft shadows
+     * @param probeCount the number of probe rays, at least 2
+     * @param maxSamples the number of rays to sample in the penumbra
+     */
+    public void setSoftShadow(double radius, int probeCount, int maxSamples);
+    /**
+     * Get the number of probe rays for adaptive soft shadows.
+     * @return the number of probe rays, 0 if the soft shadows are not adaptive
+     */
+    public int getProbeCount();
+    /**
+     * Visits the directions of the probe rays for adaptive soft shadows - towards
+     * a ring on the rim of the light as seen from the point - without creating
+     * any object
+     * @param point   the point in space where the directions are calculated
+     * @param visitor the visitor of the directions
+     * @return true if all the directions were visited, false if the visitor stopped
+     */
+    public boolean forEachProbe(Point point, SampleVisitor visitor);
+    /**
+     * Visits the directions of the rays for soft shadows (the directions of
+     * {@link #generateSampleVectors(Point)} without the light position) without
+     * creating any object
+     * @param point   the point in space where the directions are calculated
+     * @param visitor the visitor of the directions
+     * @return true if all the directions were visited, false if the visitor stopped
+     */
+    public boolean forEachSample(Point point, SampleVisitor visitor);
     /**
      * Calculates all the Vectors for soft shadows
      * @param point the point in space where the vectors are calculated
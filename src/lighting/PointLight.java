@@ -19,6 +19,12 @@ public class PointLight extends Light implements LightSource {
     private double Kl = 0.0;
     /** The quadratic attenuation factor */
     private double Kq = 0.0;
+    /** The unit sample pattern for soft shadows - 3 coordinates per sample */
+    private double[] pattern = fibonacciSphere(1);
+    /** The cosines of the probe angles on the ring for adaptive soft shadows */
+    private double[] probeCos = new double[0];
+    /** The sines of the probe angles on the ring for adaptive soft shadows */
+    private double[] probeSin = new double[0];
 
     /**
      * set the attenuation factors
@@ -80,38 +86,115 @@ public class PointLight extends Light implements LightSource {
         return position.distance(point);
     }
 
+    @Override
+    public double getDistance(double x, double y, double z) {
+        double dx = x - position.point.d1(), dy = y - position.point.d2(), dz = z - position.point.d3();
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Set the soft shadow parameters. The unit sample pattern (a golden ratio
+     * spiral on the sphere) is calculated once here and reused for every point.
+     * @param radius    the radius of the sphere of the light for soft shadows
+     * @param numOfRays the number of rays to sample for soft shadows
+     */
     public void setSoftShadow(double radius, int numOfRays) {
+        if (numOfRays < 1) throw new IllegalArgumentException("There must be at least 1 ray");
         this.radius = radius;
         this.numOfRays = numOfRays;
+        this.probeCount = 0;
+        pattern = fibonacciSphere(numOfRays);
     }
     @Override
-    public int getNumOfRays() {
-        return numOfRays;
+    public void setSoftShadow(double radius, int probeCount, int maxSamples) {
+        if (probeCount < 2) throw new IllegalArgumentException("There must be at least 2 probe rays");
+        if (maxSamples < probeCount) throw new IllegalArgumentException("There must be at least as many samples as probes");
+        setSoftShadow(radius, maxSamples);
+        this.probeCount = probeCount;
+        probeCos = new double[probeCount];
+        probeSin = new double[probeCount];
+        for (int i = 0; i < probeCount; i++) {
+            double theta = 2 * Math.PI * i / probeCount;
+            probeCos[i] = Math.cos(theta);
+            probeSin[i] = Math.sin(theta);
+        }
     }
-    @Override
-    public List<Vector> generateSampleVectors(Point point){
-        List<Point> samples = new LinkedList<>();
-        double phi = (1 + Math.sqrt(5)) / 2; // golden ratio
 
-        for (int i = 0; i < this.numOfRays; i++) {
+    /**
+     * Calculate the unit sample pattern - points on a golden ratio spiral on the
+     * unit sphere
+     * @param  samples the number of the samples
+     * @return         the pattern - 3 coordinates per sample
+     */
+    private static double[] fibonacciSphere(int samples) {
+        double[] pattern = new double[samples * 3];
+        double phi = (1 + Math.sqrt(5)) / 2; // golden ratio
+        for (int i = 0; i < samples; i++) {
             double theta = 2 * Math.PI * i / phi;
-            double z = 1 - (2.0 * i + 1) / this.numOfRays;
+            double z = 1 - (2.0 * i + 1) / samples;
             double r = Math.sqrt(1 - z * z);
-            double x = r * Math.cos(theta);
-            double y = r * Math.sin(theta);
-
-            double px = position.point.d1() + radius * x;
-            double py = position.point.d2() + radius * y;
-            double pz = position.point.d3() + radius * z;
-
-            samples.add(new Point(px, py, pz));
+            pattern[i * 3] = r * Math.cos(theta);
+            pattern[i * 3 + 1] = r * Math.sin(theta);
+            pattern[i * 3 + 2] = z;
         }
-        samples.add(position); // Add the light position as a sample point
-        List<Vector> directions = new LinkedList<>();
+        return pattern;
+    }
 
-        for (Point sample : samples) {
-            directions.add(sample.subtract(point));
+    @Override
+    public int getNumOfRays() {
+        return numOfRays;
+    }
+    @Override
+    public int getProbeCount() {
+        return probeCount;
+    }
+    @Override
+    public boolean forEachSample(Point point, SampleVisitor visitor) {
+        double dx = position.point.d1() - point.point.d1();
+        double dy = position.point.d2() - point.point.d2();
+        double dz = position.point.d3() - point.point.d3();
+        for (int i = 0; i < numOfRays; i++)
+            if (!visitor.visit(dx + radius * pattern[i * 3],
+                               dy + radius * pattern[i * 3 + 1],
+                               dz + radius * pattern[i * 3 + 2])) return false;
+        return true;
+    }
+    @Override
+    public boolean forEachProbe(Point point, SampleVisitor visitor) {
+        double dx = position.point.d1() - point.point.d1();
+        double dy = position.point.d2() - point.point.d2();
+        double dz = position.point.d3() - point.point.d3();
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        double tx = dx / length, ty = dy / length, tz = dz / length;
+        // two unit vectors orthogonal to the direction to the light span the ring:
+        // u = t x (X axis or Y axis), w = t x u
+        double ux, uy, uz;
+        if (Math.abs(tx) < 0.9) {
+            ux = 0;
+            uy = tz;
+            uz = -ty;
+        } else {
+            ux = -tz;
+            uy = 0;
+            uz = tx;
+        }
+        double uLength = Math.sqrt(ux * ux + uy * uy + uz * uz);
+        ux /= uLength;
+        uy /= uLength;
+        uz /= uLength;
+        double wx = ty * uz - tz * uy, wy = tz * ux - tx * uz, wz = tx * uy - ty * ux;
+        for (int i = 0; i < probeCount; i++) {
+            double cos = radius * probeCos[i], sin = radius * probeSin[i];
+            if (!visitor.visit(dx + cos * ux + sin * wx, dy + cos * uy + sin * wy, dz + cos * uz + sin * wz))
+                return false;
         }
+        return true;
+    }
+    @Override
+    public List<Vector> generateSampleVectors(Point point){
+        List<Vector> directions = new LinkedList<>();
+        forEachSample(point, (x, y, z) -> directions.add(new Vector(x, y, z)));
+        directions.add(position.subtract(point)); // Add the light position as a sample point
         return directions;
     }
 }
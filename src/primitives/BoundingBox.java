@@ -13,6 +13,8 @@ public class BoundingBox {
      * The maximum corner of the bounding box.
      */
     public final Point max;
+    /** The coordinates of the box - the minimal x, y, z and then the maximal x, y, z */
+    private final double[] bounds;
 
     /**
      * Constructs a BoundingBox with the specified minimum and maximum points.
@@ -27,6 +29,8 @@ public class BoundingBox {
         }
         this.min = min;
         this.max = max;
+        bounds = new double[] { min.point.d1(), min.point.d2(), min.point.d3(),
+                max.point.d1(), max.point.d2(), max.point.d3() };
     }
     public BoundingBox union(BoundingBox other) {
         Point newMin = new Point(
@@ -56,42 +60,68 @@ public class BoundingBox {
             default: throw new IllegalArgumentException("Invalid axis: " + axis);// Must be 0, 1, or 2
         }
     }
+    /**
+     * Returns half of the surface area of the box - the quantity the surface area
+     * heuristic compares between boxes (the factor of 2 cancels out).
+     * @return the half surface area of the box
+     */
+    public double halfArea() {
+        double dx = max.point.d1() - min.point.d1();
+        double dy = max.point.d2() - min.point.d2();
+        double dz = max.point.d3() - min.point.d3();
+        return dx * dy + dy * dz + dz * dx;
+    }
     /**
      * Checks whether the given ray intersects this axis-aligned bounding box (AABB).
      * @param ray the ray to test
      * @return true if the ray intersects the box, false otherwise
      */
     public boolean intersects(Ray ray) {
-        double tMin = Double.NEGATIVE_INFINITY;
-        double tMax = Double.POSITIVE_INFINITY;
-        double[] origin = { ray.getPoint(0).point.d1(), ray.getPoint(0).point.d2(), ray.getPoint(0).point.d3() };
-        double[] direction = { ray.getVector().point.d1(), ray.getVector().point.d2(), ray.getVector().point.d3()};
-        double[] boxMin = { min.point.d1(), min.point.d2(), min.point.d3() };
-        double[] boxMax = { max.point.d1(), max.point.d2(), max.point.d3() };
-
-        for (int i = 0; i < 3; i++) {
-            double dir = direction[i];
-            if (Util.isZero(dir)) {
-                // Ray is parallel to slab — check if origin is inside slab
-                if (origin[i] < boxMin[i] || origin[i] > boxMax[i]) return false;// Outside the box
-            } else {
-                double t1 = (boxMin[i] - origin[i]) / dir;// Calculate entry point
-                double t2 = (boxMax[i] - origin[i]) / dir;// Calculate exit point
-
-                if (t1 > t2) {
-                    double temp = t1;
-                    t1 = t2;
-                    t2 = temp;
-                }
-
-                tMin = Math.max(tMin, t1);
-                tMax = Math.min(tMax, t2);
-
-                if (tMin > tMax) return false; // Missed the box
-            }
-        }
-
-        return true; // Ray intersects box
+        return intersects(ray, Double.POSITIVE_INFINITY);
+    }
+    /**
+     * Checks whether the given ray enters this axis-aligned bounding box (AABB)
+     * closer than a maximal distance from the ray head.
+     * @param ray         the ray to test
+     * @param maxDistance the maximal distance along the ray
+     * @return true if the ray intersects the box before the maximal distance, false otherwise
+     */
+    public boolean intersects(Ray ray, double maxDistance) {
+        return entryDistance(bounds, 0, ray, maxDistance) != Double.POSITIVE_INFINITY;
+    }
+    /**
+     * Slab test of a ray against a box kept in an array as 6 numbers: the minimal x, y, z
+     * and then the maximal x, y, z. The near and the far side of each slab are picked by
+     * the direction signs of the ray, and the distances are found by multiplying by the
+     * reciprocal of the direction, so there is neither division nor swapping.<br>
+     * The distances along the ray inside the box are clipped to the segment from the ray
+     * head to the maximal distance, so the exit distance only decides whether the box is
+     * missed. A slab parallel to the ray gives infinite distances which don't clip the
+     * segment, unless the ray head is out of the slab, or NaN if the head is on its side,
+     * which is ignored so that the side belongs to the box.
+     * @param bounds      the array of the boxes
+     * @param offset      the index of the first number of the box in the array
+     * @param ray         the ray
+     * @param maxDistance the maximal distance along the ray
+     * @return the distance at which the ray enters the box (0 if its head is inside it),
+     *         or positive infinity if the ray misses the box, the box is behind the ray
+     *         head or the ray enters it beyond the maximal distance
+     */
+    public static double entryDistance(double[] bounds, int offset, Ray ray, double maxDistance) {
+        double entry = 0, exit = maxDistance;
+        double t = (bounds[offset + ray.signX * 3] - ray.headX) * ray.invDirX;
+        if (t > entry) entry = t;
+        t = (bounds[offset + 3 - ray.signX * 3] - ray.headX) * ray.invDirX;
+        if (t < exit) exit = t;
+        t = (bounds[offset + 1 + ray.signY * 3] - ray.headY) * ray.invDirY;
+        if (t > entry) entry = t;
+        t = (bounds[offset + 4 - ray.signY * 3] - ray.headY) * ray.invDirY;
+        if (t < exit) exit = t;
+        t = (bounds[offset + 2 + ray.signZ * 3] - ray.headZ) * ray.invDirZ;
+        if (t > entry) entry = t;
+        t = (bounds[offset + 5 - ray.signZ * 3] - ray.headZ) * ray.invDirZ;
+        if (t < exit) exit = t;
+        return entry <= exit ? entry : Double.POSITIVE_INFINITY;
     }
 
 }
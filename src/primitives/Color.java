@@ -63,6 +63,19 @@ public class Color {
       return new java.awt.Color(ir > 255 ? 255 : ir, ig > 255 ? 255 : ig, ib > 255 ? 255 : ib);
    }
 
+   /**
+    * Packed RGB getter - returns the color packed into an int as 0xRRGGBB, the
+    * pixel format of an RGB integer image, without creating any object. Any
+    * component bigger than 255 is set to 255
+    * @return the packed RGB components
+    */
+   public int getRGB() {
+      int ir = (int) rgb.d1();
+      int ig = (int) rgb.d2();
+      int ib = (int) rgb.d3();
+      return (ir > 255 ? 255 : ir) << 16 | (ig > 255 ? 255 : ig) << 8 | (ib > 255 ? 255 : ib);
+   }
+
    /**
     * Operation of adding this and one or more other colors (by component)
     * @param  colors one or more other colors to add
@@ -80,6 +93,17 @@ public class Color {
       return new Color(rr, rg, rb);
    }
 
+   /**
+    * Calculate the difference between this and another color - the biggest
+    * difference of their components
+    * @param  other the other color
+    * @return       the biggest absolute difference of the components
+    */
+   public double difference(Color other) {
+      return Math.max(Math.abs(rgb.d1() - other.rgb.d1()),
+                      Math.max(Math.abs(rgb.d2() - other.rgb.d2()), Math.abs(rgb.d3() - other.rgb.d3())));
+   }
+
    /**
     * Scale the color by a scalar triad per rgb
     * @param  k scale factor per rgb
@@ -33,6 +33,11 @@ public class Material {
      * KR - Reflection coefficient
      */
     public Double3 KR = Double3.ZERO;
+    /**
+     * The maximal depth of secondary rays (from the camera) the material still reflects
+     * and refracts - unlimited by default
+     */
+    public int maxDepth = Integer.MAX_VALUE;
 
     /**
      * setter for Ka
@@ -133,7 +138,18 @@ public class Material {
         this.KR = new Double3(KR);
         return this;
     }
-    
+    /**
+     * setter for the maximal depth of the reflections and refractions of the material -
+     * a hit by a ray of this depth from the camera doesn't spawn secondary rays
+     * @param maxDepth the maximal depth, 0 for no reflections and refractions at all
+     * @return this Material object for method chaining
+     */
+    public Material setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) throw new IllegalArgumentException("Maximal depth must not be negative");
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
     /**
      * default constructor
      */
@@ -15,13 +15,43 @@ public class Ray {
     private static final double DELTA = 0.1;
     /**
      * The ray is represented by a point and a vector.
+     * A ray constructed from numbers creates it when it is first asked for.
      */
-    protected final Point point; // The starting point of the ray
+    private Point point; // The starting point of the ray
     /**
      * The direction vector of the ray.
      * The vector is normalized to ensure it has a length of 1.
+     * A ray constructed from numbers creates it when it is first asked for.
      */
-    protected final Vector vector; // The direction vector of the ray
+    private Vector vector; // The direction vector of the ray
+    /** The x coordinate of the ray head */
+    public final double headX;
+    /** The y coordinate of the ray head */
+    public final double headY;
+    /** The z coordinate of the ray head */
+    public final double headZ;
+    /** The x coordinate of the (normalized) ray direction */
+    public final double dirX;
+    /** The y coordinate of the (normalized) ray direction */
+    public final double dirY;
+    /** The z coordinate of the (normalized) ray direction */
+    public final double dirZ;
+    /** The reciprocal of the x coordinate of the ray direction, infinite if it is 0 */
+    public final double invDirX;
+    /** The reciprocal of the y coordinate of the ray direction, infinite if it is 0 */
+    public final double invDirY;
+    /** The reciprocal of the z coordinate of the ray direction, infinite if it is 0 */
+    public final double invDirZ;
+    /**
+     * The sign of the x coordinate of the ray direction - 0 if it is positive and 1 if it is
+     * negative, so a box kept as its minimal and then its maximal corner is entered through
+     * its coordinate at index signX and left through the one at index 1 - signX
+     */
+    public final int signX;
+    /** The sign of the y coordinate of the ray direction, see {@link #signX} */
+    public final int signY;
+    /** The sign of the z coordinate of the ray direction, see {@link #signX} */
+    public final int signZ;
 
     /**
      * Constructs a ray with the given point and vector.
@@ -31,6 +61,19 @@ public class Ray {
     public Ray (Point p1, Vector v1) {
         point = p1;
         vector = v1.normalize();
+        // the coordinates are kept as numbers too, for the box tests of the traversals
+        headX = point.point.d1();
+        headY = point.point.d2();
+        headZ = point.point.d3();
+        dirX = vector.point.d1();
+        dirY = vector.point.d2();
+        dirZ = vector.point.d3();
+        invDirX = 1 / dirX;
+        invDirY = 1 / dirY;
+        invDirZ = 1 / dirZ;
+        signX = invDirX < 0 ? 1 : 0;
+        signY = invDirY < 0 ? 1 : 0;
+        signZ = invDirZ < 0 ? 1 : 0;
     } // constructor
 
     /**
@@ -42,20 +85,76 @@ public class Ray {
      */
     public Ray(Point p1, Vector v1, Vector n) {
         // constructor with a normal vector to avoid self-intersection issues
-        double VDotN = v1.dotProduct(n); // calculate the dot product of the vector and the normal vector
-        point = p1.add(n.scale(VDotN > 0 ? DELTA : -DELTA)); // offset the point slightly along the normal vector
-        vector = v1.normalize(); // normalize the vector to ensure it has a length of 1
+        // offset the point slightly along the normal vector, to the side of the vector
+        this(p1.add(n.scale(v1.dotProduct(n) > 0 ? DELTA : -DELTA)), v1);
     } // constructor with a normal vector
 
+    /**
+     * Constructs a ray from the numbers of its direction, offset slightly along the
+     * normal vector as by {@link #Ray(Point, Vector, Vector)}, without creating any
+     * object but the ray - the head point and the direction vector are created only if
+     * they are asked for.
+     * @param p1 is the starting point of the ray
+     * @param x  is the x coordinate of the direction of the ray (not normalized)
+     * @param y  is the y coordinate of the direction of the ray
+     * @param z  is the z coordinate of the direction of the ray
+     * @param n  is the normal vector to offset the point slightly
+     * @throws IllegalArgumentException if the direction is zero
+     */
+    public Ray(Point p1, double x, double y, double z, Vector n) {
+        double nx = n.point.d1(), ny = n.point.d2(), nz = n.point.d3();
+        double delta = x * nx + y * ny + z * nz > 0 ? DELTA : -DELTA;
+        headX = p1.point.d1() + nx * delta;
+        headY = p1.point.d2() + ny * delta;
+        headZ = p1.point.d3() + nz * delta;
+        double length = Math.sqrt(x * x + y * y + z * z);
+        if (length == 0) throw new IllegalArgumentException("Vector cannot be zero");
+        dirX = x / length;
+        dirY = y / length;
+        dirZ = z / length;
+        invDirX = 1 / dirX;
+        invDirY = 1 / dirY;
+        invDirZ = 1 / dirZ;
+        signX = invDirX < 0 ? 1 : 0;
+        signY = invDirY < 0 ? 1 : 0;
+        signZ = invDirZ < 0 ? 1 : 0;
+    } // constructor from numbers with a normal vector
+
+    /**
+     * Constructs a ray from the numbers of its head and its normalized direction, as kept
+     * by the buffers of the ray batches, without creating any object but the ray - the
+     * head point and the direction vector are created only if they are asked for.
+     * @param x  is the x coordinate of the head of the ray
+     * @param y  is the y coordinate of the head of the ray
+     * @param z  is the z coordinate of the head of the ray
+     * @param dx is the x coordinate of the direction of the ray, which must be normalized
+     * @param dy is the y coordinate of the direction of the ray
+     * @param dz is the z coordinate of the direction of the ray
+     */
+    public Ray(double x, double y, double z, double dx, double dy, double dz) {
+        headX = x;
+        headY = y;
+        headZ = z;
+        dirX = dx;
+        dirY = dy;
+        dirZ = dz;
+        invDirX = 1 / dirX;
+        invDirY = 1 / dirY;
+        invDirZ = 1 / dirZ;
+        signX = invDirX < 0 ? 1 : 0;
+        signY = invDirY < 0 ? 1 : 0;
+        signZ = invDirZ < 0 ? 1 : 0;
+    } // constructor from the numbers of a normalized direction
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
-        return obj instanceof Ray other && point.equals(other.point) && vector.equals(other.vector);
+        return obj instanceof Ray other && getPoint(0).equals(other.getPoint(0)) && getVector().equals(other.getVector());
     } // checking if the object is the same
 
     @Override
     public String toString() {
-        return "Ray" + point + vector;
+        return "Ray" + getPoint(0) + getVector();
     } // overriding the toString method
 
     /**
@@ -64,9 +163,11 @@ public class Ray {
      * @return the point on the ray at the distance t from the head
      */
     public Point getPoint(double t) {
-        if (Util.isZero(t))
+        if (Util.isZero(t)) {
+            if (point == null) point = new Point(headX, headY, headZ);
             return point;
-        return point.add(vector.scale(t));
+        }
+        return getPoint(0).add(getVector().scale(t));
     } // getter for the point at a certain distance from the head
 
     /**
@@ -74,6 +175,7 @@ public class Ray {
      * @return the vector of the ray
      */
     public Vector getVector() {
+        if (vector == null) vector = new Vector(dirX, dirY, dirZ);
         return vector;
     } // getter for the vector
 
@@ -95,9 +197,10 @@ public class Ray {
     public Intersection findClosestIntersection(List<Intersection> points) {
         if (points == null || points.isEmpty()) return null; // check if the list is empty
         int TheFinal = 0; // set the first point as the closest point
-        double minDistance = point.distance(points.get(0).point); // set the minimum distance to the distance from the first point
+        Point head = getPoint(0);
+        double minDistance = head.distance(points.get(0).point); // set the minimum distance to the distance from the first point
         for (int i = 1; i < points.size(); i++) { // iterate over the points
-            double distance = point.distance(points.get(i).point); // get the distance from the point to the ray
+            double distance = head.distance(points.get(i).point); // get the distance from the point to the ray
             if (distance < minDistance) { // check if the distance is smaller than the minimum distance
                 minDistance = distance; // set the minimum distance to the new distance
                 TheFinal = i; // set the closest point to the new point
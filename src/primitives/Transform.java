@@ -0,0 +1,224 @@
+package primitives;
+
+/**
+ * Transform is an immutable affine transformation of the 3D space - a linear map
+ * followed by a translation, kept as a 3x4 matrix together with its inverse.<br>
+ * Transformations are made of translations, scalings and rotations, and combined by
+ * {@link #then(Transform)}. Points are transformed with the translation, vectors
+ * without it, and normals by the inverse transpose of the linear map, so that they stay
+ * perpendicular to the transformed surfaces.
+ */
+public final class Transform {
+    /** The identity transformation */
+    public static final Transform IDENTITY = new Transform(
+            new double[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0 },
+            new double[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0 });
+
+    /** The matrix, row by row - every row is 3 linear coefficients and a translation */
+    private final double[] m;
+    /** The matrix of the inverse transformation, in the same layout */
+    private final double[] inv;
+
+    /**
+     * Constructor for a transformation with its inverse
+     * @param m   the matrix, row by row
+     * @param inv the matrix of the inverse transformation
+     */
+    private Transform(double[] m, double[] inv) {
+        this.m = m;
+        this.inv = inv;
+    }
+
+    /**
+     * Creates a translation
+     * @param offset the offset of the translation
+     * @return the translation
+     */
+    public static Transform translation(Vector offset) {
+        double x = offset.point.d1(), y = offset.point.d2(), z = offset.point.d3();
+        return new Transform(
+                new double[] { 1, 0, 0, x, 0, 1, 0, y, 0, 0, 1, z },
+                new double[] { 1, 0, 0, -x, 0, 1, 0, -y, 0, 0, 1, -z });
+    }
+
+    /**
+     * Creates a scaling along the axes
+     * @param sx the scale along the X axis
+     * @param sy the scale along the Y axis
+     * @param sz the scale along the Z axis
+     * @return the scaling
+     * @throws IllegalArgumentException if a scale is zero
+     */
+    public static Transform scaling(double sx, double sy, double sz) {
+        if (Util.isZero(sx) || Util.isZero(sy) || Util.isZero(sz))
+            throw new IllegalArgumentException("Scaling by zero can't be inverted");
+        return new Transform(
+                new double[] { sx, 0, 0, 0, 0, sy, 0, 0, 0, 0, sz, 0 },
+                new double[] { 1 / sx, 0, 0, 0, 0, 1 / sy, 0, 0, 0, 0, 1 / sz, 0 });
+    }
+
+    /**
+     * Creates a uniform scaling
+     * @param scale the scale along all the axes
+     * @return the scaling
+     * @throws IllegalArgumentException if the scale is zero
+     */
+    public static Transform scaling(double scale) {
+        return scaling(scale, scale, scale);
+    }
+
+    /**
+     * Creates a rotation around an axis through the origin
+     * @param axis  the direction of the axis of rotation
+     * @param angle the angle of the rotation in degrees, counterclockwise when looking
+     *              against the direction of the axis
+     * @return the rotation
+     */
+    public static Transform rotation(Vector axis, double angle) {
+        Vector u = axis.normalize();
+        double x = u.point.d1(), y = u.point.d2(), z = u.point.d3();
+        double radians = Math.toRadians(angle);
+        double c = Math.cos(radians), s = Math.sin(radians), t = 1 - c;
+        // Rodrigues' rotation formula; the inverse of a rotation is its transpose
+        double[] r = {
+                t * x * x + c, t * x * y - s * z, t * x * z + s * y, 0,
+                t * x * y + s * z, t * y * y + c, t * y * z - s * x, 0,
+                t * x * z - s * y, t * y * z + s * x, t * z * z + c, 0 };
+        double[] rt = {
+                r[0], r[4], r[8], 0,
+                r[1], r[5], r[9], 0,
+                r[2], r[6], r[10], 0 };
+        return new Transform(r, rt);
+    }
+
+    /**
+     * Combines this transformation with another one which is applied after it
+     * @param next the transformation applied after this one
+     * @return the combined transformation
+     */
+    public Transform then(Transform next) {
+        return new Transform(multiply(next.m, m), multiply(inv, next.inv));
+    }
+
+    /**
+     * Gets the inverse transformation
+     * @return the inverse transformation
+     */
+    public Transform inverse() {
+        return new Transform(inv, m);
+    }
+
+    /**
+     * Multiplies two affine matrices
+     * @param a the left matrix
+     * @param b the right matrix, applied first
+     * @return the product
+     */
+    private static double[] multiply(double[] a, double[] b) {
+        double[] result = new double[12];
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 4; col++)
+                result[row * 4 + col] = a[row * 4] * b[col] + a[row * 4 + 1] * b[4 + col] + a[row * 4 + 2] * b[8 + col];
+            result[row * 4 + 3] += a[row * 4 + 3];
+        }
+        return result;
+    }
+
+    /**
+     * Transforms a point
+     * @param p the point
+     * @return the transformed point
+     */
+    public Point apply(Point p) {
+        return applyPoint(m, p);
+    }
+
+    /**
+     * Transforms a point by the inverse transformation
+     * @param p the point
+     * @return the point transformed back
+     */
+    public Point applyInverse(Point p) {
+        return applyPoint(inv, p);
+    }
+
+    /**
+     * Transforms a vector - without the translation
+     * @param v the vector
+     * @return the transformed vector, not normalized
+     */
+    public Vector applyVector(Vector v) {
+        return applyVector(m, v);
+    }
+
+    /**
+     * Transforms a vector by the inverse transformation - without the translation
+     * @param v the vector
+     * @return the vector transformed back, not normalized
+     */
+    public Vector applyInverseVector(Vector v) {
+        return applyVector(inv, v);
+    }
+
+    /**
+     * Transforms a normal of a surface - by the inverse transpose of the linear map
+     * @param n the normal
+     * @return the normal of the transformed surface, normalized
+     */
+    public Vector applyNormal(Vector n) {
+        double x = n.point.d1(), y = n.point.d2(), z = n.point.d3();
+        return new Vector(
+                inv[0] * x + inv[4] * y + inv[8] * z,
+                inv[1] * x + inv[5] * y + inv[9] * z,
+                inv[2] * x + inv[6] * y + inv[10] * z).normalize();
+    }
+
+    /**
+     * Transforms a bounding box
+     * @param box the bounding box
+     * @return the bounding box of the transformed box
+     */
+    public BoundingBox apply(BoundingBox box) {
+        // every bound of the result is the sum of the extreme terms of its row
+        double[] min = new double[3], max = new double[3];
+        double[] from = { box.min.point.d1(), box.min.point.d2(), box.min.point.d3() };
+        double[] to = { box.max.point.d1(), box.max.point.d2(), box.max.point.d3() };
+        for (int row = 0; row < 3; row++) {
+            min[row] = max[row] = m[row * 4 + 3];
+            for (int col = 0; col < 3; col++) {
+                double a = m[row * 4 + col] * from[col], b = m[row * 4 + col] * to[col];
+                min[row] += Math.min(a, b);
+                max[row] += Math.max(a, b);
+            }
+        }
+        return new BoundingBox(new Point(min[0], min[1], min[2]), new Point(max[0], max[1], max[2]));
+    }
+
+    /**
+     * Transforms a point by a matrix
+     * @param matrix the matrix
+     * @param p      the point
+     * @return the transformed point
+     */
+    private static Point applyPoint(double[] matrix, Point p) {
+        double x = p.point.d1(), y = p.point.d2(), z = p.point.d3();
+        return new Point(
+                matrix[0] * x + matrix[1] * y + matrix[2] * z + matrix[3],
+                matrix[4] * x + matrix[5] * y + matrix[6] * z + matrix[7],
+                matrix[8] * x + matrix[9] * y + matrix[10] * z + matrix[11]);
+    }
+
+    /**
+     * Transforms a vector by the linear part of a matrix
+     * @param matrix the matrix
+     * @param v      the vector
+     * @return the transformed vector
+     */
+    private static Vector applyVector(double[] matrix, Vector v) {
+        double x = v.point.d1(), y = v.point.d2(), z = v.point.d3();
+        return new Vector(
+                matrix[0] * x + matrix[1] * y + matrix[2] * z,
+                matrix[4] * x + matrix[5] * y + matrix[6] * z,
+                matrix[8] * x + matrix[9] * y + matrix[10] * z);
+    }
+}
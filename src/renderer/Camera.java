@@ -3,8 +3,14 @@ import geometries.BVHBuilder;
 import primitives.*;
 import renderer.PixelManager.Pixel;
 
+import java.nio.file.Path;
 import java.util.LinkedList;
 import java.util.MissingResourceException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.IntStream;
 
 import scene.Scene;
@@ -49,11 +55,39 @@ public class Camera implements Cloneable {
      * Spare threads if trying to use all the cores
      */
     private static final int SPARE_THREADS = 2;
+    /**
+     * The multi-threading parameter of rendering by virtual threads - a virtual thread
+     * per tile, or per row if the tile size is 0
+     */
+    public static final int VIRTUAL_THREADS = -3;
+    /**
+     * The maximal amount of tiles rendered at once by virtual threads<br>
+     * if it is zero - all the tiles may run at once
+     */
+    private int virtualThreadsLimit = 0;
+    /** The amount of camera rays the wavefront ray tracer traces in a batch */
+    private static final int WAVEFRONT_BATCH_SIZE = 1 << 16;
     /**
      * Debug print interval in seconds (for progress percentage)<br>
      * if it is zero - there is no progress output
      */
     private double printInterval = 0;
+    /**
+     * Tile edge length in pixels for tile based rendering with work stealing or
+     * with virtual threads<br>
+     * if it is zero - tiles are not used and the threads take pixel by pixel (the
+     * virtual threads, and the threads with super sampling, take row by row)
+     */
+    private int tileSize = 0;
+    /**
+     * Maximal depth of adaptive super sampling - a pixel may be subdivided into up
+     * to 4^depth sub-pixels<br>
+     * if it is zero - there is no anti-aliasing and a single ray is traced through
+     * the center of each pixel
+     */
+    private int superSamplingDepth = 0;
+    /** Color difference between the corners of a (sub-)pixel above which it is subdivided */
+    private double superSamplingThreshold = 0;
     /**
      * Pixel manager for supporting:
      * <ul>
@@ -131,6 +165,10 @@ public class Camera implements Cloneable {
          * Set multi-threading <br>
          * Parameter value meaning:
          * <ul>
+         * <li>{@link Camera#VIRTUAL_THREADS} (-3) - a virtual thread per tile (or per row if
+         * the tile size is 0), see {@link #setVirtualThreadsLimit(int)}; a failure in any tile
+         * interrupts the running tiles, skips the tiles which haven't started and is rethrown
+         * by {@link Camera#renderImage()}</li>
          * <li>-2 - number of threads is number of logical processors less 2</li>
          * <li>-1 - stream processing parallelization (implicit multi-threading) is used</li>
          * <li>0 - multi-threading is not activated</li>
@@ -140,8 +178,8 @@ public class Camera implements Cloneable {
          * @return builder object itself
          */
         public Builder setMultithreading(int threads) {
-            if (threads < -3)
-                throw new IllegalArgumentException("Multithreading parameter must be -2 or higher");
+            if (threads < VIRTUAL_THREADS)
+                throw new IllegalArgumentException("Multithreading parameter must be " + VIRTUAL_THREADS + " or higher");
             if (threads == -2) {
                 int cores = Runtime.getRuntime().availableProcessors() - SPARE_THREADS;
                 camera.threadsCount = cores <= 2 ? 1 : cores;
@@ -160,6 +198,60 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Set the maximal amount of tiles rendered at once in the virtual threads mode, so
+         * that a render takes a bounded share of the carrier threads. The carrier threads
+         * themselves are the JVM-wide virtual thread scheduler, which can't be set per
+         * render - its size is set only at the JVM start by the
+         * jdk.virtualThreadScheduler.parallelism system property. If it's zero - all the
+         * tiles may run at once
+         * @param limit maximal amount of tiles rendered at once
+         * @return builder object itself
+         */
+        public Builder setVirtualThreadsLimit(int limit) {
+            if (limit < 0) throw new IllegalArgumentException("virtual threads limit must be non-negative");
+            camera.virtualThreadsLimit = limit;
+            return this;
+        }
+
+        /**
+         * Set tile based rendering for the threads multi-threading modes. The image
+         * is split into square tiles which the threads claim lock-free, stealing tiles
+         * from each other when they run out of their own. In the virtual threads mode
+         * there is a virtual thread per tile. If it's zero - the raw threads take the
+         * pixels one by one (the rows one by one with super sampling) and the virtual
+         * threads take the rows one by one
+         * @param tileSize tile edge length in pixels (e.g. 16 or 32)
+         * @return builder object itself
+         */
+        public Builder setTileSize(int tileSize) {
+            if (tileSize < 0) throw new IllegalArgumentException("tile size must be non-negative");
+            camera.tileSize = tileSize;
+            return this;
+        }
+
+        /**
+         * Set adaptive super sampling anti-aliasing. The rays are traced through the
+         * corners of the pixels (shared by the neighboring pixels, as are the corners and
+         * the edge middles of the sub-pixels), and a (sub-)pixel whose corner colors
+         * differ by more than the threshold is subdivided into 4 sub-pixels
+         * recursively, up to the maximal depth. The color of a (sub-)pixel
+         * is the average of its corners, or of its sub-pixels. E.g. depth 3 gives the
+         * quality of up to 81 samples per pixel in the detailed areas of the image.
+         * If the depth is zero - anti-aliasing is not used
+         * @param maxDepth  maximal depth of the subdivision
+         * @param threshold color difference (per component, 0-255 scale) above which a
+         *                  (sub-)pixel is subdivided
+         * @return builder object itself
+         */
+        public Builder setAdaptiveSuperSampling(int maxDepth, double threshold) {
+            if (maxDepth < 0) throw new IllegalArgumentException("super sampling depth must be non-negative");
+            if (threshold < 0) throw new IllegalArgumentException("super sampling threshold must be non-negative");
+            camera.superSamplingDepth     = maxDepth;
+            camera.superSamplingThreshold = threshold;
+            return this;
+        }
+
         /**
          * set the camera to a new camera
          * @param p0 the position of the camera
@@ -311,15 +403,78 @@ public class Camera implements Cloneable {
         public Builder setRayTracer (Scene scene ,RayTracerType rayTracerType) {
             switch (rayTracerType) {
                 case SIMPLE -> camera.rayTracer = new SimpleRayTracer(scene);
+                case GRID -> camera.rayTracer = new GridRayTracer(scene);
+                case WAVEFRONT -> camera.rayTracer = new WavefrontRayTracer(scene);
                 default -> camera.rayTracer = null;
             }
             return this;
         }
 
+        /**
+         * Turn on Russian roulette termination of the secondary rays of the ray tracer,
+         * see {@link SimpleRayTracer#setRussianRoulette(double)}
+         * @param threshold the attenuation below which the rays play the roulette
+         * @return this
+         */
+        public Builder setRussianRoulette(double threshold) {
+            if (!(camera.rayTracer instanceof SimpleRayTracer tracer))
+                throw new IllegalStateException("Russian roulette needs a simple or grid ray tracer");
+            tracer.setRussianRoulette(threshold);
+            return this;
+        }
+
+        /**
+         * Build a Bounding Volume Hierarchy over the scene geometries by median splits
+         * @return this
+         */
         public Builder enableBVH() {
             camera.rayTracer.scene.geometries.buildBVH();
             return this;
         }
+
+        /**
+         * Build a Bounding Volume Hierarchy over the scene geometries by the binned
+         * Surface Area Heuristic
+         * @param bins     the amount of bins per axis
+         * @param leafCost the cost of intersecting one primitive relative to traversing one box
+         * @return this
+         */
+        public Builder enableBVH(int bins, double leafCost) {
+            camera.rayTracer.scene.geometries.buildBVH(bins, leafCost);
+            return this;
+        }
+
+        /**
+         * Build a Linear Bounding Volume Hierarchy over the scene geometries from the
+         * Morton codes of their centroids - the fastest build, for very large scenes
+         * @return this
+         */
+        public Builder enableLinearBVH() {
+            camera.rayTracer.scene.geometries.buildLinearBVH();
+            return this;
+        }
+
+        /**
+         * Replace the scene geometries by a flattened, array based Bounding Volume
+         * Hierarchy with iterative traversal
+         * @return this
+         */
+        public Builder enableFlatBVH() {
+            camera.rayTracer.scene.geometries.buildFlatBVH();
+            return this;
+        }
+
+        /**
+         * Replace the scene geometries by a flattened, array based Bounding Volume
+         * Hierarchy which is loaded from a cache on the disk if it was saved there for
+         * the same geometries, or built and saved there otherwise
+         * @param cacheDirectory the directory of the cached hierarchies
+         * @return this
+         */
+        public Builder enableFlatBVH(Path cacheDirectory) {
+            camera.rayTracer.scene.geometries.buildFlatBVH(cacheDirectory);
+            return this;
+        }
     }
 
     /**
@@ -411,10 +566,14 @@ public class Camera implements Cloneable {
      */
     public Camera renderImage() {
         pixelManager = new PixelManager(nY, nX, printInterval);
+        if (rayTracer instanceof WavefrontRayTracer wavefront && superSamplingDepth == 0)
+            return renderImageWavefront(wavefront);
         return switch (threadsCount) {
             case 0 -> renderImageNoThreads();
             case -1 -> renderImageStream();
-            default -> renderImageRawThreads();
+            case VIRTUAL_THREADS -> renderImageVirtualThreads();
+            // super sampling shares the pixel corners inside blocks, so it never goes pixel by pixel
+            default -> tileSize > 0 || superSamplingDepth > 0 ? renderImageTiles() : renderImageRawThreads();
         };
     }
 
@@ -425,8 +584,10 @@ public class Camera implements Cloneable {
      */
     private Camera renderImageStream() {
         IntStream.range(0, nY).parallel()
-                .forEach(i -> IntStream.range(0, nX).parallel()
-                        .forEach(j -> castRay(j, i)));
+                .forEach(i -> {
+                    tracePixels(0, nX, i, i + 1, new int[nX]);
+                    pixelManager.pixelsDone(nX);
+                });
         return this;
     }
     /**
@@ -434,9 +595,11 @@ public class Camera implements Cloneable {
      * @return the camera object itself
      */
     private Camera renderImageNoThreads() {
-        for (int i = 0; i < nY; ++i)
-            for (int j = 0; j < nX; ++j)
-                castRay(j, i);
+        int[] row = new int[nX];
+        for (int i = 0; i < nY; ++i) {
+            tracePixels(0, nX, i, i + 1, row);
+            pixelManager.pixelsDone(nX);
+        }
         return this;
     }
     /**
@@ -458,6 +621,116 @@ public class Camera implements Cloneable {
         return this;
     }
 
+    /**
+     * Render image using multi-threading by raw threads which claim whole tiles (or
+     * whole rows if the tile size is 0) and steal tiles from each other when they run
+     * out of their own
+     * @return the camera object itself
+     */
+    private Camera renderImageTiles() {
+        int blockWidth  = tileSize > 0 ? tileSize : nX;
+        int blockHeight = tileSize > 0 ? tileSize : 1;
+        TileManager tileManager = new TileManager(nY, nX, blockWidth, blockHeight, threadsCount);
+        var threads = new LinkedList<Thread>();
+        for (int worker = 0; worker < threadsCount; ++worker) {
+            final int w = worker;
+            threads.add(new Thread(() -> {
+                int[] buffer = new int[blockWidth * blockHeight];
+                int tile;
+                while ((tile = tileManager.nextTile(w)) >= 0) {
+                    int startCol = tileManager.startCol(tile);
+                    int endCol   = tileManager.endCol(tile);
+                    int startRow = tileManager.startRow(tile);
+                    int endRow   = tileManager.endRow(tile);
+                    tracePixels(startCol, endCol, startRow, endRow, buffer);
+                    pixelManager.pixelsDone((endRow - startRow) * (endCol - startCol));
+                }
+            }));
+        }
+        for (var thread : threads) thread.start();
+        try {
+            for (var thread : threads) thread.join();
+        } catch (InterruptedException ignored) {}
+        return this;
+    }
+
+    /**
+     * Render image using a virtual thread per tile (or per row if the tile size is
+     * 0). The virtual threads run on the carrier threads of the JVM virtual thread
+     * scheduler (see the jdk.virtualThreadScheduler.parallelism system property), up
+     * to the virtual threads limit of tiles at once. A failure in any block shuts the
+     * executor down - the running blocks are interrupted and the blocks which haven't
+     * started are skipped - and is thrown once all the started blocks are finished
+     * @return the camera object itself
+     */
+    private Camera renderImageVirtualThreads() {
+        int blockWidth  = tileSize > 0 ? tileSize : nX;
+        int blockHeight = tileSize > 0 ? tileSize : 1;
+        TileManager tileManager = new TileManager(nY, nX, blockWidth, blockHeight, 1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Semaphore permits = virtualThreadsLimit > 0 ? new Semaphore(virtualThreadsLimit) : null;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int tile = 0; tile < tileManager.tileCount() && !executor.isShutdown(); ++tile) {
+                if (permits != null) permits.acquireUninterruptibly();
+                final int t = tile;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            if (Thread.currentThread().isInterrupted()) return; // the rendering is cancelled
+                            int startCol = tileManager.startCol(t);
+                            int endCol   = tileManager.endCol(t);
+                            int startRow = tileManager.startRow(t);
+                            int endRow   = tileManager.endRow(t);
+                            int pixels   = (endRow - startRow) * (endCol - startCol);
+                            tracePixels(startCol, endCol, startRow, endRow, new int[pixels]);
+                            pixelManager.pixelsDone(pixels);
+                        } catch (Throwable e) {
+                            if (failure.compareAndSet(null, e)) executor.shutdownNow();
+                        } finally {
+                            if (permits != null) permits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    break; // a block failed meanwhile and the executor is shut down
+                }
+            }
+        }
+        Throwable e = failure.get();
+        if (e instanceof RuntimeException runtimeException) throw runtimeException;
+        if (e instanceof Error error) throw error;
+        if (e != null) throw new IllegalStateException("Rendering failed", e);
+        return this;
+    }
+
+    /**
+     * Render image by the wavefront ray tracer in batches of whole rows: the camera rays
+     * of a batch are generated, and then traced by the ray tracer stage by stage. The
+     * stages run in parallel unless multi-threading is off
+     * @param wavefront the ray tracer
+     * @return the camera object itself
+     */
+    private Camera renderImageWavefront(WavefrontRayTracer wavefront) {
+        boolean parallel = threadsCount != 0;
+        int batchRows = Math.max(1, Math.min(nY, WAVEFRONT_BATCH_SIZE / nX));
+        RayBatch rays = new RayBatch(batchRows * nX);
+        int[] buffer = new int[rays.capacity()];
+        Color[] colors = new Color[rays.capacity()];
+        for (int startRow = 0; startRow < nY; startRow += batchRows) {
+            int start = startRow;
+            int endRow = Math.min(nY, startRow + batchRows);
+            rays.size = (endRow - startRow) * nX;
+            // the camera ray generation stage
+            IntStream range = IntStream.range(0, rays.size);
+            (parallel ? range.parallel() : range)
+                    .forEach(k -> rays.set(k, constructRay(nX, nY, k % nX, start + k / nX)));
+            wavefront.traceRays(rays, colors, parallel);
+            for (int k = 0; k < rays.size; ++k) buffer[k] = colors[k].getRGB();
+            imageWriter.writePixels(0, startRow, nX, endRow - startRow, buffer);
+            pixelManager.pixelsDone(rays.size);
+        }
+        return this;
+    }
+
     /**
      * print the grid on the image
      * @param interval the interval of the grid
@@ -485,6 +758,16 @@ public class Camera implements Cloneable {
         return this;
     }
 
+    /**
+     * Gets the color of a rendered pixel
+     * @param j the column of the pixel
+     * @param i the row of the pixel
+     * @return the color of the pixel, packed as 0xRRGGBB
+     */
+    int getPixel(int j, int i) {
+        return imageWriter.getPixel(j, i);
+    }
+
     /**
      * cast a ray from the camera to the point on the view plane
      * @param i the x coordinate of the pixel
@@ -494,4 +777,135 @@ public class Camera implements Cloneable {
         imageWriter.writePixel(j, i, rayTracer.traceRay(constructRay(nX ,nY, j, i)));// write the pixel to the image
         pixelManager.pixelDone(); // notify the pixel manager that the pixel is done
     }
+
+    /**
+     * trace rays through a block of pixels into a buffer and write the whole block
+     * to the image at once, without reporting progress
+     * @param startCol the first column of the block
+     * @param endCol   the column after the last column of the block
+     * @param startRow the first row of the block
+     * @param endRow   the row after the last row of the block
+     * @param buffer   the buffer of the block colors, big enough for the block
+     */
+    private void tracePixels(int startCol, int endCol, int startRow, int endRow, int[] buffer) {
+        int k = 0;
+        if (superSamplingDepth == 0) {
+            for (int i = startRow; i < endRow; ++i)
+                for (int j = startCol; j < endCol; ++j)
+                    buffer[k++] = rayTracer.traceRay(constructRay(nX, nY, j, i)).getRGB();
+        } else {
+            // the neighboring (sub-)pixels of the block share their corners and edge middles
+            Samples samples = new Samples(startCol, endCol, startRow, endRow);
+            int size = 1 << superSamplingDepth;
+            for (int i = startRow; i < endRow; ++i)
+                for (int j = startCol; j < endCol; ++j) {
+                    int x = (j - startCol) * size, y = (i - startRow) * size;
+                    buffer[k++] = superSample(samples, x, y, size, samples.get(x, y), samples.get(x + size, y),
+                            samples.get(x, y + size), samples.get(x + size, y + size), superSamplingDepth).getRGB();
+                }
+        }
+        imageWriter.writePixels(startCol, startRow, endCol - startCol, endRow - startRow, buffer);
+    }
+
+    /**
+     * trace a ray through a point of the view plane
+     * @param x the horizontal position in pixels from the left side of the view plane
+     * @param y the vertical position in pixels from the top side of the view plane
+     * @return the color of the ray
+     */
+    private Color traceSample(double x, double y) {
+        Point point = VP_Center;
+        double xOffset = (x - nX / 2d) * (width / nX);
+        double yOffset = -(y - nY / 2d) * (height / nY);
+        if (!Util.isZero(xOffset)) point = point.add(vRight.scale(xOffset));
+        if (!Util.isZero(yOffset)) point = point.add(vUp.scale(yOffset));
+        return rayTracer.traceRay(new Ray(p0, point.subtract(p0)));
+    }
+
+    /**
+     * The samples of a block of pixels for adaptive super sampling, on a grid whose step
+     * is the smallest sub-pixel. A sample is traced when it is first needed, so a corner
+     * or an edge middle shared by neighboring (sub-)pixels of the block is traced once
+     */
+    private final class Samples {
+        /** The traced samples, row by row, null where not traced yet */
+        private final Color[] colors;
+        /** The amount of samples in a row */
+        private final int stride;
+        /** The first column of the block */
+        private final int startCol;
+        /** The first row of the block */
+        private final int startRow;
+        /** The amount of grid steps in a pixel */
+        private final int scale;
+
+        /**
+         * Constructor for the samples of a block
+         * @param startCol the first column of the block
+         * @param endCol   the column after the last column of the block
+         * @param startRow the first row of the block
+         * @param endRow   the row after the last row of the block
+         */
+        Samples(int startCol, int endCol, int startRow, int endRow) {
+            this.startCol = startCol;
+            this.startRow = startRow;
+            scale  = 1 << superSamplingDepth;
+            stride = (endCol - startCol) * scale + 1;
+            colors = new Color[stride * ((endRow - startRow) * scale + 1)];
+        }
+
+        /**
+         * Get the color of a sample, tracing it if it isn't traced yet
+         * @param x the column of the sample in the grid of the block
+         * @param y the row of the sample in the grid of the block
+         * @return the color of the sample
+         */
+        Color get(int x, int y) {
+            int index = y * stride + x;
+            Color color = colors[index];
+            if (color == null)
+                colors[index] = color = traceSample(startCol + (double) x / scale, startRow + (double) y / scale);
+            return color;
+        }
+    }
+
+    /**
+     * calculate the color of a square (sub-)pixel by adaptive super sampling: if its
+     * corner colors are close enough (or the maximal depth is reached) it is their
+     * average, otherwise the (sub-)pixel is split into 4 sub-pixels which share the
+     * corners and the edge middles
+     * @param samples     the samples of the block of the (sub-)pixel
+     * @param x           the left side of the (sub-)pixel, in the grid of the samples
+     * @param y           the top side of the (sub-)pixel, in the grid of the samples
+     * @param size        the edge length of the (sub-)pixel, in the grid of the samples
+     * @param topLeft     the color of the top left corner
+     * @param topRight    the color of the top right corner
+     * @param bottomLeft  the color of the bottom left corner
+     * @param bottomRight the color of the bottom right corner
+     * @param depth       the remaining depth of subdivision
+     * @return the color of the (sub-)pixel
+     */
+    private Color superSample(Samples samples, int x, int y, int size, Color topLeft, Color topRight,
+                              Color bottomLeft, Color bottomRight, int depth) {
+        if (depth == 0
+                || topLeft.difference(topRight) <= superSamplingThreshold
+                && topLeft.difference(bottomLeft) <= superSamplingThreshold
+                && topLeft.difference(bottomRight) <= superSamplingThreshold
+                && topRight.difference(bottomLeft) <= superSamplingThreshold
+                && topRight.difference(bottomRight) <= superSamplingThreshold
+                && bottomLeft.difference(bottomRight) <= superSamplingThreshold)
+            return topLeft.add(topRight, bottomLeft, bottomRight).reduce(4);
+
+        int half = size / 2;
+        Color top    = samples.get(x + half, y);
+        Color left   = samples.get(x, y + half);
+        Color center = samples.get(x + half, y + half);
+        Color right  = samples.get(x + size, y + half);
+        Color bottom = samples.get(x + half, y + size);
+        return superSample(samples, x, y, half, topLeft, top, left, center, depth - 1)
+                .add(superSample(samples, x + half, y, half, top, topRight, center, right, depth - 1),
+                     superSample(samples, x, y + half, half, left, center, bottomLeft, bottom, depth - 1),
+                     superSample(samples, x + half, y + half, half, center, right, bottom, bottomRight, depth - 1))
+                .reduce(4);
+    }
 }
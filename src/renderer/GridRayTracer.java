@@ -0,0 +1,41 @@
+package renderer;
+
+import geometries.Grid;
+import primitives.Color;
+import primitives.Ray;
+import scene.Scene;
+
+/**
+ * GridRayTracer class is a ray tracer which traces the rays through a uniform grid
+ * built over the scene geometries instead of testing them all.
+ * The shading is the same as in SimpleRayTracer.
+ */
+public class GridRayTracer extends SimpleRayTracer {
+    /** Whether the grid was built over the scene geometries */
+    private volatile boolean gridBuilt = false;
+
+    /**
+     * Constructor for GridRayTracer - the grid is built over the scene geometries on the
+     * first traced ray, so geometries added to the scene after the ray tracer was set
+     * are in the grid
+     * @param scene The scene to be rendered
+     */
+    public GridRayTracer(Scene scene) {
+        super(scene, scene.geometries);
+    }
+
+    @Override
+    public Color traceRay(Ray ray) {
+        if (!gridBuilt) buildGrid();
+        return super.traceRay(ray);
+    }
+
+    /**
+     * Builds the grid over the current scene geometries, once for all the rendering threads
+     */
+    private synchronized void buildGrid() {
+        if (gridBuilt) return;
+        geometries = new Grid(scene.geometries.getPrimitives());
+        gridBuilt = true;
+    }
+}
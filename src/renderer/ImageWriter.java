@@ -1,6 +1,7 @@
 package renderer;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.*;
 
 import javax.imageio.ImageIO;
@@ -28,6 +29,11 @@ final class ImageWriter {
 
    /** Image generation buffer (the matrix of the pixels) */
    private final BufferedImage image;
+   /**
+    * The backing array of the image buffer - the pixels row by row, each packed
+    * into an int as 0xRRGGBB
+    */
+   private final int[]         pixels;
 
    // ***************** Constructors ********************** //
    /**
@@ -40,6 +46,7 @@ final class ImageWriter {
       this.nY = nY;
 
       image   = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+      pixels  = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
    }
 
    // ***************** Getters ********************** //
@@ -78,6 +85,29 @@ final class ImageWriter {
     * @param yIndex Y-axis index of the pixel
     * @param color  final color of the pixel
     */
-   void writePixel(int xIndex, int yIndex, Color color) { image.setRGB(xIndex, yIndex, color.getColor().getRGB()); }
+   void writePixel(int xIndex, int yIndex, Color color) { pixels[yIndex * nX + xIndex] = color.getRGB(); }
+
+   /**
+    * The function getPixel reads the color of a specific pixel from the pixel
+    * color matrix
+    * @param xIndex X-axis index of the pixel
+    * @param yIndex Y-axis index of the pixel
+    * @return the color of the pixel, packed as 0xRRGGBB
+    */
+   int getPixel(int xIndex, int yIndex) { return pixels[yIndex * nX + xIndex]; }
+
+   /**
+    * The function writePixels writes a block of pixels (e.g. a row or a tile)
+    * into pixel color matrix at once
+    * @param xStart X-axis index of the first pixel of the block
+    * @param yStart Y-axis index of the first pixel of the block
+    * @param width  amount of pixels in a row of the block
+    * @param height amount of rows of the block
+    * @param rgb    the colors of the block row by row, packed as 0xRRGGBB
+    */
+   void writePixels(int xStart, int yStart, int width, int height, int[] rgb) {
+      for (int row = 0; row < height; ++row)
+         System.arraycopy(rgb, row * width, pixels, (yStart + row) * nX + xStart, width);
+   }
 
 }
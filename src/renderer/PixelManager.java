@@ -92,11 +92,18 @@ class PixelManager {
     }
 
     /** Finish pixel processing by updating and printing of progress percentage */
-    void pixelDone() {
+    void pixelDone() { pixelsDone(1); }
+
+    /**
+     * Finish processing of a batch of pixels (e.g. a whole tile) by updating and
+     * printing of progress percentage
+     * @param amount the amount of processed pixels
+     */
+    void pixelsDone(int amount) {
         boolean flag       = false;
         int     percentage = 0;
         synchronized (mutexPixels) {
-            ++pixels;
+            pixels += amount;
             if (print) {
                 percentage = (int) (1000l * pixels / totalPixels);
                 if (percentage - lastPrinted >= printInterval) {
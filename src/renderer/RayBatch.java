@@ -0,0 +1,153 @@
+package renderer;
+
+import java.util.Arrays;
+
+import primitives.*;
+
+/**
+ * RayBatch is a batch of rays of the wavefront ray tracer, kept as a structure of
+ * arrays: the coordinates of the ray heads and directions, the accumulated
+ * attenuation, the pixel each ray contributes to and its level are each in a separate
+ * array, indexed by the ray number in the batch. The arrays grow on demand and are
+ * reused for all the waves traced through the batch.
+ */
+final class RayBatch {
+    /** The x coordinates of the ray heads */
+    double[] ox;
+    /** The y coordinates of the ray heads */
+    double[] oy;
+    /** The z coordinates of the ray heads */
+    double[] oz;
+    /** The x coordinates of the (normalized) ray directions */
+    double[] dx;
+    /** The y coordinates of the (normalized) ray directions */
+    double[] dy;
+    /** The z coordinates of the (normalized) ray directions */
+    double[] dz;
+    /** The red component of the accumulated attenuation */
+    double[] kr;
+    /** The green component of the accumulated attenuation */
+    double[] kg;
+    /** The blue component of the accumulated attenuation */
+    double[] kb;
+    /** The pixel (index in the batch of the camera rays) each ray contributes to, -1 for no ray */
+    int[] pixel;
+    /** The level of each ray, counting down from the camera rays */
+    int[] level;
+    /** The amount of rays in the batch */
+    int size;
+
+    /**
+     * Constructor for an empty batch
+     * @param capacity the initial maximal amount of rays in the batch
+     */
+    RayBatch(int capacity) {
+        ox = new double[capacity];
+        oy = new double[capacity];
+        oz = new double[capacity];
+        dx = new double[capacity];
+        dy = new double[capacity];
+        dz = new double[capacity];
+        kr = new double[capacity];
+        kg = new double[capacity];
+        kb = new double[capacity];
+        pixel = new int[capacity];
+        level = new int[capacity];
+    }
+
+    /**
+     * Gets the capacity of the batch
+     * @return the maximal amount of rays in the batch
+     */
+    int capacity() {
+        return ox.length;
+    }
+
+    /**
+     * Grows the batch, keeping its rays, if it can't hold the given amount of rays
+     * @param capacity the amount of rays the batch must hold
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity <= ox.length) return;
+        capacity = Math.max(capacity, ox.length * 2);
+        ox = Arrays.copyOf(ox, capacity);
+        oy = Arrays.copyOf(oy, capacity);
+        oz = Arrays.copyOf(oz, capacity);
+        dx = Arrays.copyOf(dx, capacity);
+        dy = Arrays.copyOf(dy, capacity);
+        dz = Arrays.copyOf(dz, capacity);
+        kr = Arrays.copyOf(kr, capacity);
+        kg = Arrays.copyOf(kg, capacity);
+        kb = Arrays.copyOf(kb, capacity);
+        pixel = Arrays.copyOf(pixel, capacity);
+        level = Arrays.copyOf(level, capacity);
+    }
+
+    /**
+     * Sets the head and the direction of a ray
+     * @param i   the ray number
+     * @param ray the ray
+     */
+    void set(int i, Ray ray) {
+        ox[i] = ray.headX;
+        oy[i] = ray.headY;
+        oz[i] = ray.headZ;
+        dx[i] = ray.dirX;
+        dy[i] = ray.dirY;
+        dz[i] = ray.dirZ;
+    }
+
+    /**
+     * Sets a ray with its state
+     * @param i     the ray number
+     * @param ray   the ray
+     * @param pixel the pixel the ray contributes to
+     * @param level the level of the ray
+     * @param k     the accumulated attenuation of the ray
+     */
+    void set(int i, Ray ray, int pixel, int level, Double3 k) {
+        set(i, ray);
+        this.pixel[i] = pixel;
+        this.level[i] = level;
+        kr[i] = k.d1();
+        kg[i] = k.d2();
+        kb[i] = k.d3();
+    }
+
+    /**
+     * Moves a ray with its state to another number in the batch
+     * @param from the ray number
+     * @param to   the new ray number
+     */
+    void move(int from, int to) {
+        ox[to] = ox[from];
+        oy[to] = oy[from];
+        oz[to] = oz[from];
+        dx[to] = dx[from];
+        dy[to] = dy[from];
+        dz[to] = dz[from];
+        kr[to] = kr[from];
+        kg[to] = kg[from];
+        kb[to] = kb[from];
+        pixel[to] = pixel[from];
+        level[to] = level[from];
+    }
+
+    /**
+     * Creates a ray of the batch
+     * @param i the ray number
+     * @return the ray
+     */
+    Ray ray(int i) {
+        return new Ray(ox[i], oy[i], oz[i], dx[i], dy[i], dz[i]);
+    }
+
+    /**
+     * Gets the accumulated attenuation of a ray
+     * @param i the ray number
+     * @return the attenuation
+     */
+    Double3 k(int i) {
+        return new Double3(kr[i], kg[i], kb[i]);
+    }
+}
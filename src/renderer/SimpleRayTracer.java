@@ -5,7 +5,8 @@ import scene.Scene;
 import primitives.*;
 import geometries.*;
 import geometries.Intersectable.Intersection;
-import java.util.List;
+
+import java.util.Arrays;
 
 
 
@@ -18,22 +19,147 @@ public class SimpleRayTracer extends RayTracerBase {
      * MAX_CALC_COLOR_LEVEL is the maximum level of recursion for color calculations.
      * It limits the depth of recursive calls when calculating color contributions from reflections and refractions.
      */
-    private static final int MAX_CALC_COLOR_LEVEL = 10;
+    static final int MAX_CALC_COLOR_LEVEL = 10;
     /**
      * MIN_CALC_COLOR_K is the minimum value for the color calculation coefficient.
      * It is used to determine when to stop further calculations based on the intensity of the color.
      */
-    private static final double MIN_CALC_COLOR_K = 0.001;
+    static final double MIN_CALC_COLOR_K = 0.001;
     /**
      * INITIAL_K is the initial value for the color calculation coefficient.
      * It is set to 1.0 for the initial color calculations.
      */
     private static final Double3 INITIAL_K = Double3.ONE;
+    /** The kind of a reflection ray in the Russian roulette */
+    static final int REFLECTION = 0;
+    /** The kind of a refraction ray in the Russian roulette */
+    static final int REFRACTION = 1;
+    /**
+     * The geometries the rays are traced against - the scene geometries, or an
+     * acceleration structure built over them
+     */
+    protected Intersectable geometries;
+    /**
+     * The attenuation below which the secondary rays are terminated by Russian roulette,
+     * 0 when the roulette is off and the rays are cut at MIN_CALC_COLOR_K
+     */
+    private double rouletteThreshold = 0;
+    /**
+     * The per-thread stack of the pending secondary rays of the iterative shading - reused
+     * for all the pixels traced by the thread
+     */
+    private final ThreadLocal<ShadingStack> shadingStack = ThreadLocal.withInitial(ShadingStack::new);
+    /**
+     * The per-thread visitor of the shadow rays towards the samples of a light - reused
+     * for all the intersections shaded by the thread
+     */
+    private final ThreadLocal<ShadowSampler> shadowSampler = ThreadLocal.withInitial(ShadowSampler::new);
+
+    /**
+     * ShadingStack is a stack of the pending secondary rays with their level and their
+     * accumulated attenuation, kept in parallel arrays which grow on demand.
+     */
+    private static final class ShadingStack {
+        /** The initial capacity of the stack */
+        private static final int INITIAL_CAPACITY = 2 * MAX_CALC_COLOR_LEVEL;
+        /** The pending rays */
+        private Ray[] rays = new Ray[INITIAL_CAPACITY];
+        /** The accumulated attenuation of the pending rays */
+        private Double3[] ks = new Double3[INITIAL_CAPACITY];
+        /** The levels of the pending rays */
+        private int[] levels = new int[INITIAL_CAPACITY];
+        /** The amount of pending rays */
+        private int size = 0;
+
+        /**
+         * Pushes a ray onto the stack
+         * @param ray the ray
+         * @param level the level of the ray
+         * @param k the accumulated attenuation of the ray
+         */
+        void push(Ray ray, int level, Double3 k) {
+            if (size == rays.length) {
+                rays = Arrays.copyOf(rays, size * 2);
+                ks = Arrays.copyOf(ks, size * 2);
+                levels = Arrays.copyOf(levels, size * 2);
+            }
+            rays[size] = ray;
+            ks[size] = k;
+            levels[size++] = level;
+        }
+    }
+    /**
+     * ShadowSampler casts the shadow rays from an intersection towards the samples of its
+     * light, and accumulates their transparency in numbers
+     */
+    private final class ShadowSampler implements LightSource.SampleVisitor {
+        /** The intersection the shadow rays are cast from */
+        private Intersection intersection;
+        /** The transparency of the first probe ray, null if no probe ray was cast yet */
+        private Double3 probe;
+        /** Whether the rays are probe rays, which stop at the first disagreement */
+        private boolean probing;
+        /** The sums of the transparency components of the sample rays */
+        private double k1, k2, k3;
+
+        /**
+         * Starts casting rays from an intersection
+         * @param intersection the intersection
+         * @param probing      whether the rays are probe rays
+         * @return this sampler
+         */
+        ShadowSampler start(Intersection intersection, boolean probing) {
+            this.intersection = intersection;
+            this.probing = probing;
+            probe = null;
+            k1 = k2 = k3 = 0;
+            return this;
+        }
+
+        @Override
+        public boolean visit(double x, double y, double z) {
+            Double3 ktr = transparency(intersection, x, y, z);
+            if (probing) {
+                if (probe == null) probe = ktr;
+                return probe.equals(ktr); // stop at the first disagreement - the point is in the penumbra
+            }
+            k1 += ktr.d1();
+            k2 += ktr.d2();
+            k3 += ktr.d3();
+            return true;
+        }
+    }
     /**
      * Constructor for SimpleRayTracer
      * @param scene The scene to be rendered
      */
-    public SimpleRayTracer(Scene scene) {super(scene);}
+    public SimpleRayTracer(Scene scene) {this(scene, scene.geometries);}
+    /**
+     * Constructor for SimpleRayTracer which traces the rays against an acceleration
+     * structure instead of the scene geometries
+     * @param scene      The scene to be rendered
+     * @param geometries The acceleration structure over the scene geometries
+     */
+    protected SimpleRayTracer(Scene scene, Intersectable geometries) {
+        super(scene);
+        this.geometries = geometries;
+    }
+    /**
+     * Turns on Russian roulette termination of the secondary rays: a ray whose accumulated
+     * attenuation is below the threshold survives with a probability proportional to the
+     * attenuation, and the attenuation of a surviving ray is divided by that probability,
+     * so the image is unbiased and only noisier. The roulette is drawn from a hash of the
+     * secondary ray, so the same scene always renders the same image
+     * @param threshold the attenuation below which the rays play the roulette, 0 to turn
+     *                  the roulette off
+     * @return this ray tracer
+     */
+    public SimpleRayTracer setRussianRoulette(double threshold) {
+        if (threshold < 0 || threshold > 1)
+            throw new IllegalArgumentException("Roulette threshold must be between 0 and 1");
+        rouletteThreshold = threshold;
+        return this;
+    }
     /**
      * Traces a ray through the scene and returns the color at the intersection point.
      * If there are no intersections, it returns the background color of the scene.
@@ -58,7 +184,7 @@ public class SimpleRayTracer extends RayTracerBase {
         Double3 attenuationCoefficient = point.geometry.getMaterial().KA;
 
         Color intensity = ambientLightIntensity.scale(attenuationCoefficient);
-        Color color = calcColor(point, MAX_CALC_COLOR_LEVEL, INITIAL_K);
+        Color color = calcColor(point, MAX_CALC_COLOR_LEVEL);
         return intensity.add(color);
     }
     /**
@@ -70,7 +196,8 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     public boolean preprocessIntersection (Intersection intersection, Vector RayDirection) {
         intersection.v = RayDirection.normalize();
-        intersection.n = intersection.geometry.getNormal(intersection.point);
+        // geometries made of several faces provide the normal of the hit face with the intersection
+        if (intersection.n == null) intersection.n = intersection.geometry.getNormal(intersection.point);
         intersection.nDotV = intersection.n.dotProduct(RayDirection);
         return !Util.isZero(intersection.nDotV); // Check if the intersection is valid.
     }
@@ -84,7 +211,7 @@ public class SimpleRayTracer extends RayTracerBase {
     public boolean setLightSource (Intersection intersection, LightSource light){
         intersection.light = light;
         intersection.l = light.getL(intersection.point);
-        intersection.lDotN = intersection.l.dotProduct(intersection.geometry.getNormal(intersection.point));
+        intersection.lDotN = intersection.l.dotProduct(intersection.n);
         return !Util.isZero(intersection.lDotN); // Check if the intersection is valid.
     }
     /**
@@ -97,7 +224,7 @@ public class SimpleRayTracer extends RayTracerBase {
     private Color calcColorLocalEffects(Intersection intersection, Double3 k) {
         Color color = intersection.geometry.getEmission();
         for (LightSource lightSource : scene.lights) {
-            // also checks if sign(lNormal) == sign(vNormal)) and if the intersection is unshaded
+            // also checks if sign(lNormal) == sign(vNormal))
             if (!setLightSource(intersection, lightSource))
                 continue;
 
@@ -118,7 +245,7 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param intersection The intersection point containing the material and light information
      * @return The calculated diffusive color component
      */
-    private Double3 calcDiffusive(Intersection intersection) {
+    Double3 calcDiffusive(Intersection intersection) {
         return intersection.material.KD.scale(Math.abs(intersection.lDotN));
     }
     /**
@@ -128,48 +255,107 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param intersection The intersection point containing the material and light information
      * @return The calculated specular color component
      */
-    private Double3 calcSpecular(Intersection intersection) {
+    Double3 calcSpecular(Intersection intersection) {
         Vector r = intersection.l.subtract(intersection.n.scale(2 * intersection.lDotN));
         double vr = -1 * intersection.v.dotProduct(r);
 
         return intersection.material.KS.scale(Math.pow(Math.max(0, vr), intersection.material.Nsh));
     }
     /**
-     * Checks if the point at the intersection is unshaded by casting a ray from the intersection point
-     * @param intersection
-     * @return
+     * Calculates the color at the intersection point considering reflections and refractions.
+     * The secondary rays are traced iteratively: the pending reflection and refraction rays
+     * are kept on the per-thread stack together with their accumulated attenuation, which
+     * scales the local effects of the geometries they hit.
+     * @param intersection The intersection point to calculate the color for
+     * @param level the maximal level of reflections/refractions
+     * @return The calculated color at the intersection point considering reflections and refractions
      */
-    private boolean unshaded(Intersection intersection) {
-        Ray check = new Ray(intersection.point, intersection.l.scale(-1), intersection.n);
-        List<Intersection> intersections = scene.geometries.calculateIntersections(check);
-        if (intersections == null) return true; // If there are no intersections, the point is unshaded
+    private Color calcColor(Intersection intersection, int level) {
+        ShadingStack stack = shadingStack.get();
+        int base = stack.size;
+        Color color = calcColorLocalEffects(intersection, INITIAL_K);
+        if (level > 1 && intersection.material.maxDepth > 0)
+            pushSecondaryRays(stack, intersection, level - 1, INITIAL_K);
+        while (stack.size > base) {
+            int top = --stack.size;
+            Ray ray = stack.rays[top];
+            Double3 k = stack.ks[top];
+            int rayLevel = stack.levels[top];
+            stack.rays[top] = null; // don't keep the ray alive after the pixel is done
 
-            for (Intersection i : intersections) {
-                if (intersection.point.distance(i.point) < intersection.light.getDistance(intersection.point)
-                        && i.geometry.getMaterial().KT.lowerThan(MIN_CALC_COLOR_K))
-                    return false; // If the distance is less than or equal to the bounding box size, the point is shaded
+            Intersection secondary = findClosestIntersection(ray);
+            if (secondary == null) {
+                color = color.add(scene.background.scale(k));
+                continue;
             }
-        return true;
+            if (!preprocessIntersection(secondary, ray.getVector())) continue;
+            color = color.add(calcColorLocalEffects(secondary, k).scale(k));
+            if (rayLevel > 1 && MAX_CALC_COLOR_LEVEL - rayLevel < secondary.material.maxDepth)
+                pushSecondaryRays(stack, secondary, rayLevel - 1, k);
+        }
+        return color;
     }
     /**
-     * Calculates the color at the intersection point considering reflections and refractions.
-     * @param intersection The intersection point to calculate the color for
-     * @param level the recursion level for reflections/refractions
-     * @param k the color coefficient for reflections/refractions
-     * @return The calculated color at the intersection point considering reflections and refractions
+     * Pushes the refraction and reflection rays of an intersection onto the shading stack,
+     * skipping the rays whose accumulated attenuation is negligible, or which lost the
+     * Russian roulette.
+     * @param stack the shading stack
+     * @param intersection the intersection to trace the secondary rays from
+     * @param level the level of the secondary rays
+     * @param k the accumulated attenuation at the intersection
+     */
+    private void pushSecondaryRays(ShadingStack stack, Intersection intersection, int level, Double3 k) {
+        Double3 kr = survive(k.product(intersection.material.KR), intersection.point, level, REFLECTION);
+        if (kr != null) stack.push(calcReflectionRay(intersection), level, kr);
+        Double3 kt = survive(k.product(intersection.material.KT), intersection.point, level, REFRACTION);
+        if (kt != null) stack.push(calcRefractionRay(intersection), level, kt);
+    }
+    /**
+     * Decides whether a secondary ray is traced
+     * @param k the accumulated attenuation of the ray
+     * @param point the point the ray starts from
+     * @param level the level of the ray
+     * @param kind {@link #REFLECTION} or {@link #REFRACTION}
+     * @return the attenuation to trace the ray with, or null if the ray is terminated
+     */
+    Double3 survive(Double3 k, Point point, int level, int kind) {
+        if (rouletteThreshold == 0) return k.lowerThan(MIN_CALC_COLOR_K) ? null : k;
+        double max = Math.max(k.d1(), Math.max(k.d2(), k.d3()));
+        if (max >= rouletteThreshold) return k;
+        if (max <= 0) return null;
+        double probability = max / rouletteThreshold;
+        return rouletteSample(point, level, kind) < probability ? k.reduce(probability) : null;
+    }
+    /**
+     * Draws the roulette of a secondary ray - a hash of the point it starts from, its level
+     * and its kind, so the decisions don't depend on the rendering threads or order
+     * @param point the point the ray starts from
+     * @param level the level of the ray
+     * @param kind {@link #REFLECTION} or {@link #REFRACTION}
+     * @return a number uniformly distributed in [0, 1)
+     */
+    private static double rouletteSample(Point point, int level, int kind) {
+        long hash = mix(Double.doubleToLongBits(point.point.d1()) + level * 2L + kind);
+        hash = mix(hash ^ Double.doubleToLongBits(point.point.d2()));
+        hash = mix(hash ^ Double.doubleToLongBits(point.point.d3()));
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+    /**
+     * Mixes the bits of a number (the finalizer of SplitMix64)
+     * @param z the number
+     * @return the mixed bits
      */
-    private Color calcColor(Intersection intersection, int level, Double3 k) {
-        Color color = calcColorLocalEffects(intersection, k);
-        if (level == 1)
-            return color;
-        return color.add(calcGlobalEffect(intersection, level, k));
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
     }
     /**
      * caculates the ray of transparency at the intersection point.
      * @param intersection The intersection point to calculate the transparency ray for
      * @return The calculated transparency ray at the intersection point
      */
-    private Ray calcRefractionRay(Intersection intersection) {
+    Ray calcRefractionRay(Intersection intersection) {
         return new Ray(intersection.point, intersection.v, intersection.n);
     }
     /**
@@ -177,91 +363,47 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param intersection The intersection point to calculate the reflection ray for
      * @return The calculated reflection ray at the intersection point
      */
-    private Ray calcReflectionRay(Intersection intersection) {
+    Ray calcReflectionRay(Intersection intersection) {
         Vector r = intersection.v.add((intersection.n.scale(-2 * intersection.nDotV)));
         return new Ray(intersection.point, r, intersection.n);
     }
-    /**
-     * Calculates the global effect of reflections and refractions at the intersection point.
-     * @param intersectionRay The ray that intersects the scene at the intersection point
-     * @param level the recursion level for reflections/refractions
-     * @param k the color coefficient for reflections/refractions
-     * @param KTR the transparency coefficient for reflections/refractions
-     * @return The calculated color at the intersection point considering global effects
-     */
-    private Color calcGlobalEffect(Ray intersectionRay, int level, Double3 k, Double3 KTR){
-        Double3 kkx = k.product(KTR);
-        if (kkx.lowerThan(MIN_CALC_COLOR_K)) {
-            return Color.BLACK; // If the product of k and KTR is below the threshold, return black color
-        }
-        Intersection intersection = findClosestIntersection(intersectionRay);
-        if (intersection == null) {
-            return scene.background.scale(KTR); // No intersection, return black color
-        }
-        if (preprocessIntersection(intersection, intersectionRay.getVector()))
-            return calcColor(intersection, level - 1, kkx).scale(KTR);
-        return Color.BLACK;
-    }
-    /**
-     * Calculates the global effect of reflections and refractions at the intersection point.
-     * @param intersection The intersection point to calculate the global effect for
-     * @param level the recursion level for reflections/refractions
-     * @param k the color coefficient for reflections/refractions
-     * @return The calculated color at the intersection point considering global effects
-     */
-    private Color calcGlobalEffect(Intersection intersection, int level, Double3 k) {
-        Color globalEffectColor1 = calcGlobalEffect(calcRefractionRay(intersection),
-                level, k, intersection.material.KT);
-
-        Color globalEffectColor2 = calcGlobalEffect(calcReflectionRay(intersection),
-                level, k, intersection.material.KR);
-
-        return globalEffectColor1.add(globalEffectColor2);
-    }
     /**
      * Finds the closest intersection point for a given ray in the scene.
      * @param ray The ray to be traced
      * @return The closest intersection point or null if there are no intersections
      */
-    private Intersection findClosestIntersection(Ray ray) {
-        List<Intersection> intersections = scene.geometries.calculateIntersections(ray);
-        return intersections == null ? null : ray.findClosestIntersection(intersections);
+    Intersection findClosestIntersection(Ray ray) {
+        return geometries.calculateClosestIntersection(ray);
     }
     /**
-     * Calculates the transparency at the intersection point.
+     * Calculates the transparency at the intersection point towards a sample of its light.
      * @param intersection The intersection point to calculate the transparency for
+     * @param x The x coordinate of the direction to the sample
+     * @param y The y coordinate of the direction to the sample
+     * @param z The z coordinate of the direction to the sample
      * @return The calculated transparency at the intersection point
      */
-    private Double3 transparency(Intersection intersection, Vector v1) {
+    private Double3 transparency(Intersection intersection, double x, double y, double z) {
         if (intersection.lDotN < 0 && (intersection.geometry.getClass() == Polygon.class || intersection.geometry instanceof Polygon_without || intersection.geometry instanceof Plane)) return Double3.ZERO; // If the dot product is negative, return zero transparency for polygons
-        Ray ray = new Ray(intersection.point, v1, intersection.n); // create a ray from the point to the light source
-        var intersections = scene.geometries.calculateIntersections(ray);
-
-        Double3 ktr = Double3.ONE;
-
-        if (intersections == null)
-            return ktr;
-        else {
-            for (Intersection i : intersections) {
-                if (intersection.point.distance(i.point) > intersection.light.getDistance(intersection.point)) // skip the intersection with the geometry itself
-                    continue;
-                if (ktr.lowerThan(MIN_CALC_COLOR_K))
-                    return Double3.ZERO;
-                ktr = ktr.product(i.material.KT);
-            }
-        }
-        return ktr;
+        Ray ray = new Ray(intersection.point, x, y, z, intersection.n); // create a ray from the point to the light source
+        // only the blockers between the ray head and the light source attenuate it
+        return geometries.calculateTransparency(ray, intersection.light.getDistance(ray.headX, ray.headY, ray.headZ),
+                MIN_CALC_COLOR_K);
     }
     /**
      * TransparencySoftShadows calculates the transparency of soft shadows at the intersection point.
+     * If the light has probe rays, they are cast first, and when they all agree (the point is fully
+     * lit or fully shaded) their transparency is used without the full sampling. The rays are
+     * cast by the sampler of the thread from the numbers of their directions, so nothing but the
+     * shadow rays themselves is created per sample.
      */
-    private Double3 transparencySoftShadows(Intersection intersection) {
-        Double3 ktr = Double3.ZERO;
-        int size = intersection.light.getNumOfRays();
-        List<Vector> vectors = intersection.light.generateSampleVectors(intersection.point);
-        for (int i = 0; i < size; i++) {
-            ktr = ktr.add(transparency(intersection,vectors.get(i)));
-        }
-        return ktr.scale(1.0 / size); // Average the transparency over the number of rays
+    Double3 transparencySoftShadows(Intersection intersection) {
+        LightSource light = intersection.light;
+        ShadowSampler sampler = shadowSampler.get();
+        if (light.getProbeCount() > 0 && light.forEachProbe(intersection.point, sampler.start(intersection, true)))
+            return sampler.probe;
+        light.forEachSample(intersection.point, sampler.start(intersection, false));
+        double scale = 1.0 / light.getNumOfRays(); // Average the transparency over the number of rays
+        return new Double3(sampler.k1 * scale, sampler.k2 * scale, sampler.k3 * scale);
     }
 }
@@ -0,0 +1,140 @@
+package renderer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TileManager is a helper class for tile based multi-threaded rendering.<br/>
+ * The image is split into tiles (square by default) which are numbered row by row. Each
+ * worker thread owns a contiguous range of tile numbers (its deque): the owner
+ * takes tiles from the front of its range, and when its range is exhausted it
+ * steals tiles from the back of the ranges of the other workers.<br/>
+ * Each range is packed into a single long (front in the high half, end in the
+ * low half), so tiles are claimed by compare-and-set without any locking and
+ * without allocating objects.
+ */
+class TileManager {
+    /** Mask of the low 32 bits of a packed range */
+    private static final long     LOW_MASK = 0xFFFFFFFFL;
+
+    /** Maximum rows of pixels */
+    private final int             maxRows;
+    /** Maximum columns of pixels */
+    private final int             maxCols;
+    /** Tile width in pixels */
+    private final int             tileWidth;
+    /** Tile height in pixels */
+    private final int             tileHeight;
+    /** Amount of tiles in a row of tiles */
+    private final int             tilesInRow;
+    /** Amount of tiles in the image */
+    private final int             tiles;
+    /** Per worker range of tile numbers - [front, end) packed into a long */
+    private final AtomicLongArray ranges;
+
+    /**
+     * Initialize tile manager and deal the tiles evenly to the workers
+     * @param maxRows  the amount of pixel rows
+     * @param maxCols  the amount of pixel columns
+     * @param tileSize tile edge length in pixels
+     * @param workers  the amount of worker threads
+     */
+    TileManager(int maxRows, int maxCols, int tileSize, int workers) {
+        this(maxRows, maxCols, tileSize, tileSize, workers);
+    }
+
+    /**
+     * Initialize tile manager for rectangular tiles and deal the tiles evenly to
+     * the workers
+     * @param maxRows    the amount of pixel rows
+     * @param maxCols    the amount of pixel columns
+     * @param tileWidth  tile width in pixels
+     * @param tileHeight tile height in pixels
+     * @param workers    the amount of worker threads
+     */
+    TileManager(int maxRows, int maxCols, int tileWidth, int tileHeight, int workers) {
+        if (tileWidth <= 0 || tileHeight <= 0) throw new IllegalArgumentException("tile size must be positive");
+        if (workers <= 0) throw new IllegalArgumentException("amount of workers must be positive");
+        this.maxRows    = maxRows;
+        this.maxCols    = maxCols;
+        this.tileWidth  = tileWidth;
+        this.tileHeight = tileHeight;
+        tilesInRow      = (maxCols + tileWidth - 1) / tileWidth;
+        tiles           = tilesInRow * ((maxRows + tileHeight - 1) / tileHeight);
+
+        ranges = new AtomicLongArray(workers);
+        for (int w = 0; w < workers; ++w)
+            ranges.set(w, pack((int) ((long) tiles * w / workers), (int) ((long) tiles * (w + 1) / workers)));
+    }
+
+    /**
+     * Pack a range of tiles into a long
+     * @param  front first tile of the range
+     * @param  end   tile after the last tile of the range
+     * @return       the packed range
+     */
+    private static long pack(int front, int end) { return ((long) front << 32) | (end & LOW_MASK); }
+
+    /**
+     * Claim the next tile for a worker: from the front of its own range or,
+     * when it is empty, from the back of another worker's range
+     * @param  worker the worker number
+     * @return        tile number, or -1 if there are no more tiles
+     */
+    int nextTile(int worker) {
+        // take from the front of the own range
+        while (true) {
+            long range = ranges.get(worker);
+            int  front = (int) (range >>> 32);
+            int  end   = (int) range;
+            if (front >= end) break;
+            if (ranges.compareAndSet(worker, range, pack(front + 1, end))) return front;
+        }
+        // steal from the back of the other ranges
+        int workers = ranges.length();
+        for (int i = 1; i < workers; ++i) {
+            int victim = (worker + i) % workers;
+            while (true) {
+                long range = ranges.get(victim);
+                int  front = (int) (range >>> 32);
+                int  end   = (int) range;
+                if (front >= end) break;
+                if (ranges.compareAndSet(victim, range, pack(front, end - 1))) return end - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Amount of tiles in the image
+     * @return the amount of tiles
+     */
+    int tileCount() { return tiles; }
+
+    /**
+     * First pixel row of a tile
+     * @param  tile tile number
+     * @return      the row number
+     */
+    int startRow(int tile) { return tile / tilesInRow * tileHeight; }
+
+    /**
+     * Pixel row after the last row of a tile
+     * @param  tile tile number
+     * @return      the row number
+     */
+    int endRow(int tile) { return Math.min(startRow(tile) + tileHeight, maxRows); }
+
+    /**
+     * First pixel column of a tile
+     * @param  tile tile number
+     * @return      the column number
+     */
+    int startCol(int tile) { return tile % tilesInRow * tileWidth; }
+
+    /**
+     * Pixel column after the last column of a tile
+     * @param  tile tile number
+     * @return      the column number
+     */
+    int endCol(int tile) { return Math.min(startCol(tile) + tileWidth, maxCols); }
+}
@@ -0,0 +1,242 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import lighting.LightSource;
+import primitives.*;
+import scene.Scene;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * WavefrontRayTracer class is a ray tracer which traces whole batches of rays stage by
+ * stage instead of tracing each pixel depth first. A wave of rays (at first the camera
+ * rays, kept in a {@link RayBatch}) goes through the stages:
+ * <ol>
+ * <li>extension - finding the closest hit of every ray</li>
+ * <li>shading - the background of the missing rays and the emission of the hits</li>
+ * <li>shadow queries - for each light in turn, the transparency of the blockers between
+ * every hit and the light, followed by the lighting - the contribution of the light at
+ * every hit which it reaches</li>
+ * <li>enqueueing - attenuating the contributions (or adding the ambient light of the
+ * camera rays) and enqueueing the reflection and refraction rays of the hits as the next
+ * wave</li>
+ * </ol>
+ * Each stage runs over the whole wave, in parallel if requested. The waves are kept in
+ * two batches of the tracing thread, which take turns holding the current wave and
+ * receiving the next one, so the buffers are allocated only when a wave outgrows them.
+ * The shading is the same as in SimpleRayTracer, which is also used for tracing single
+ * rays.
+ */
+public class WavefrontRayTracer extends SimpleRayTracer {
+    /**
+     * The per-thread buffers of the waves - reused for all the batches traced by the
+     * thread
+     */
+    private final ThreadLocal<Waves> waves = ThreadLocal.withInitial(Waves::new);
+
+    /**
+     * Waves keeps the buffers of the waves: the two batches of the secondary rays, and
+     * the closest hit, the contribution and the shadow query result of every ray of the
+     * current wave. The buffers grow on demand.
+     */
+    private static final class Waves {
+        /** The batch receiving the next wave */
+        private RayBatch next = new RayBatch(0);
+        /** The other batch of the secondary rays */
+        private RayBatch spare = new RayBatch(0);
+        /** The closest hit of each ray, null if the ray misses */
+        private Intersection[] hits = new Intersection[0];
+        /** The contribution of each ray */
+        private Color[] contributions = new Color[0];
+        /** The transparency towards the current light at each hit, null if the light is cut */
+        private Double3[] shadows = new Double3[0];
+
+        /**
+         * Grows the buffers of the current wave, if they can't hold the given amount of rays
+         * @param size the amount of rays of the current wave
+         */
+        void ensureCapacity(int size) {
+            if (size <= hits.length) return;
+            size = Math.max(size, hits.length * 2);
+            hits = new Intersection[size];
+            contributions = new Color[size];
+            shadows = new Double3[size];
+        }
+    }
+
+    /**
+     * Constructor for WavefrontRayTracer
+     * @param scene The scene to be rendered
+     */
+    public WavefrontRayTracer(Scene scene) {
+        super(scene);
+    }
+
+    /**
+     * Traces a batch of camera rays with all their reflections and refractions
+     * @param rays     the camera rays - only their heads and directions are used
+     * @param colors   receives the colors of the camera rays, in the order of the batch
+     * @param parallel whether the stages run in parallel
+     */
+    void traceRays(RayBatch rays, Color[] colors, boolean parallel) {
+        Arrays.fill(colors, 0, rays.size, Color.BLACK);
+        LightSource[] lights = scene.lights.toArray(new LightSource[0]);
+        for (int i = 0; i < rays.size; ++i) {
+            rays.pixel[i] = i;
+            rays.level[i] = MAX_CALC_COLOR_LEVEL;
+            rays.kr[i] = rays.kg[i] = rays.kb[i] = 1;
+        }
+
+        Waves buffers = waves.get();
+        RayBatch wave = rays;
+        while (wave.size > 0) {
+            int size = wave.size;
+            buffers.ensureCapacity(size);
+            RayBatch current = wave, next = buffers.next;
+            next.ensureCapacity(size * 2);
+            Intersection[] hits = buffers.hits;
+            Color[] contributions = buffers.contributions;
+            Double3[] shadows = buffers.shadows;
+
+            stage(size, parallel, i -> extend(current, i, hits));
+            stage(size, parallel, i -> shade(current, i, hits, contributions));
+            for (LightSource light : lights) {
+                stage(size, parallel, i -> queryShadow(current, i, hits[i], light, shadows));
+                stage(size, parallel, i -> illuminate(i, hits[i], light, shadows, contributions));
+            }
+            stage(size, parallel, i -> enqueue(current, i, hits[i], contributions, next));
+
+            for (int i = 0; i < size; ++i) {
+                colors[wave.pixel[i]] = colors[wave.pixel[i]].add(contributions[i]);
+                hits[i] = null; // don't keep the hits alive after the wave is done
+            }
+            compact(next, size * 2);
+            // the batch of the done wave receives the wave after the next one
+            buffers.next = wave == rays ? buffers.spare : wave;
+            buffers.spare = next;
+            wave = next;
+        }
+    }
+
+    /**
+     * Runs a stage over a wave
+     * @param size     the amount of items of the stage
+     * @param parallel whether the items are processed in parallel
+     * @param stage    processes an item
+     */
+    private static void stage(int size, boolean parallel, IntConsumer stage) {
+        if (parallel) IntStream.range(0, size).parallel().forEach(stage);
+        else for (int i = 0; i < size; ++i) stage.accept(i);
+    }
+
+    /**
+     * The extension stage - finds the closest hit of a ray
+     * @param wave the wave of rays
+     * @param i    the ray number
+     * @param hits receives the closest hit, null if the ray misses
+     */
+    private void extend(RayBatch wave, int i, Intersection[] hits) {
+        hits[i] = findClosestIntersection(wave.ray(i));
+    }
+
+    /**
+     * The shading stage - calculates the background of a missing ray or the emission of a
+     * hit
+     * @param wave          the wave of rays
+     * @param i             the ray number
+     * @param hits          the closest hits, an invalid hit is removed
+     * @param contributions receives the contribution of the ray
+     */
+    private void shade(RayBatch wave, int i, Intersection[] hits, Color[] contributions) {
+        Intersection hit = hits[i];
+        if (hit == null) {
+            contributions[i] = scene.background.scale(wave.k(i));
+            return;
+        }
+        if (!preprocessIntersection(hit, new Vector(wave.dx[i], wave.dy[i], wave.dz[i]))) {
+            hits[i] = null;
+            contributions[i] = Color.BLACK;
+            return;
+        }
+        contributions[i] = hit.geometry.getEmission();
+    }
+
+    /**
+     * The shadow query stage - sets a light on a hit and calculates the transparency of
+     * the blockers between the hit and the light. The hit keeps the direction of the light
+     * for the lighting stage which follows
+     * @param wave    the wave of rays
+     * @param i       the number of the ray of the hit
+     * @param hit     the hit, null if there is none
+     * @param light   the light
+     * @param shadows receives the transparency, null if the hit faces away from the light
+     *                or the light is negligible
+     */
+    private void queryShadow(RayBatch wave, int i, Intersection hit, LightSource light, Double3[] shadows) {
+        if (hit == null || !setLightSource(hit, light)) {
+            shadows[i] = null;
+            return;
+        }
+        Double3 ktr = transparencySoftShadows(hit);
+        boolean negligible = ktr.d1() * wave.kr[i] < MIN_CALC_COLOR_K && ktr.d2() * wave.kg[i] < MIN_CALC_COLOR_K
+                && ktr.d3() * wave.kb[i] < MIN_CALC_COLOR_K;
+        shadows[i] = negligible ? null : ktr;
+    }
+
+    /**
+     * The lighting stage - adds the contribution of a light at a hit, by the result of its
+     * shadow query
+     * @param i             the number of the ray of the hit
+     * @param hit           the hit, with the light set by the shadow query
+     * @param light         the light
+     * @param shadows       the transparency towards the light at the hits
+     * @param contributions the contributions of the rays, receives the light contribution
+     */
+    private void illuminate(int i, Intersection hit, LightSource light, Double3[] shadows, Color[] contributions) {
+        Double3 ktr = shadows[i];
+        if (ktr == null) return;
+        contributions[i] = contributions[i].add(light.getIntensity(hit.point).scale(ktr)
+                .scale(calcDiffusive(hit).add(calcSpecular(hit))));
+    }
+
+    /**
+     * The enqueueing stage - attenuates the contribution of a ray (or adds the ambient
+     * light to the contribution of a camera ray), and puts the reflection and refraction
+     * rays of its hit into the next wave, at the numbers 2i and 2i + 1
+     * @param wave          the wave of rays
+     * @param i             the ray number
+     * @param hit           the closest hit of the ray, null if there is none
+     * @param contributions the contributions of the rays
+     * @param next          receives the reflection and refraction rays, with the pixel -1 if
+     *                      terminated
+     */
+    private void enqueue(RayBatch wave, int i, Intersection hit, Color[] contributions, RayBatch next) {
+        next.pixel[2 * i] = next.pixel[2 * i + 1] = -1;
+        if (hit == null) return;
+        int level = wave.level[i];
+        Double3 k = wave.k(i);
+        contributions[i] = level == MAX_CALC_COLOR_LEVEL
+                ? scene.ambientLight.getIntensity().scale(hit.material.KA).add(contributions[i]) // a camera ray
+                : contributions[i].scale(k);
+
+        if (level <= 1 || MAX_CALC_COLOR_LEVEL - level >= hit.material.maxDepth) return;
+        Double3 kr = survive(k.product(hit.material.KR), hit.point, level - 1, REFLECTION);
+        if (kr != null) next.set(2 * i, calcReflectionRay(hit), wave.pixel[i], level - 1, kr);
+        Double3 kt = survive(k.product(hit.material.KT), hit.point, level - 1, REFRACTION);
+        if (kt != null) next.set(2 * i + 1, calcRefractionRay(hit), wave.pixel[i], level - 1, kt);
+    }
+
+    /**
+     * Packs the secondary rays of a wave to the front of the next wave, in their order
+     * @param next  the next wave, 2 numbers per ray of the wave
+     * @param count the amount of numbers of the next wave
+     */
+    private static void compact(RayBatch next, int count) {
+        int size = 0;
+        for (int j = 0; j < count; ++j)
+            if (next.pixel[j] >= 0) next.move(j, size++);
+        next.size = size;
+    }
+}
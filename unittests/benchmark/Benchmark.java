@@ -0,0 +1,126 @@
+package unittests.benchmark;
+
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark is a small benchmark harness in the spirit of JMH, for measuring the
+ * average time of an operation.<br>
+ * Each benchmark runs several warmup iterations, whose results are dropped, and
+ * then several measured iterations. An iteration repeats the operation until its
+ * time is over (at least once). The results of the operation are consumed, so the
+ * JIT compiler can't eliminate the measured code, and an optional setup, whose
+ * time is not measured, prepares a fresh state for every invocation.<br>
+ * The defaults can be overridden by system properties:
+ * <ul>
+ * <li>bench.warmups - the amount of warmup iterations</li>
+ * <li>bench.iterations - the amount of measured iterations</li>
+ * <li>bench.time - the time of an iteration in milliseconds</li>
+ * <li>bench.filter - a regular expression the benchmark names must contain</li>
+ * </ul>
+ */
+public class Benchmark {
+    /** Nanoseconds in a millisecond */
+    private static final long NANOS_IN_MILLI = 1_000_000L;
+    /** Receives the results of the operations so that they are not eliminated */
+    private static volatile Object sink;
+
+    /** The amount of warmup iterations */
+    private final int warmups;
+    /** The amount of measured iterations */
+    private final int iterations;
+    /** The time of an iteration in nanoseconds */
+    private final long iterationNanos;
+    /** The filter of the benchmark names */
+    private final Pattern filter;
+
+    /**
+     * Constructor for Benchmark - prints the header of the results table
+     * @param warmups         the default amount of warmup iterations
+     * @param iterations      the default amount of measured iterations
+     * @param iterationMillis the default time of an iteration in milliseconds
+     */
+    public Benchmark(int warmups, int iterations, long iterationMillis) {
+        this.warmups = Integer.getInteger("bench.warmups", warmups);
+        this.iterations = Integer.getInteger("bench.iterations", iterations);
+        if (this.warmups < 0 || this.iterations <= 0)
+            throw new IllegalArgumentException("There must be at least one measured iteration");
+        iterationNanos = Long.getLong("bench.time", iterationMillis) * NANOS_IN_MILLI;
+        filter = Pattern.compile(System.getProperty("bench.filter", ""));
+        System.out.printf("%-50s %5s %15s %12s  %s%n", "Benchmark", "Cnt", "Score", "Error", "Units");
+    }
+
+    /**
+     * Measures an operation without a setup
+     * @param name      the name of the benchmark
+     * @param batch     the amount of operations done by one invocation
+     * @param operation the measured operation
+     */
+    public void measure(String name, int batch, Supplier<?> operation) {
+        measure(name, batch, () -> null, state -> operation.get());
+    }
+
+    /**
+     * Measures an operation, preparing a fresh state for every invocation
+     * @param name      the name of the benchmark
+     * @param batch     the amount of operations done by one invocation
+     * @param setup     prepares the state of an invocation, it is not measured
+     * @param operation the measured operation on the state
+     * @param <T>       the type of the state
+     */
+    public <T> void measure(String name, int batch, Supplier<T> setup, Function<T, ?> operation) {
+        if (!filter.matcher(name).find()) return;
+        if (batch <= 0) throw new IllegalArgumentException("Batch must be positive");
+
+        for (int i = 0; i < warmups; i++) iteration(batch, setup, operation);
+        double[] scores = new double[iterations];
+        double mean = 0;
+        for (int i = 0; i < iterations; i++) {
+            scores[i] = iteration(batch, setup, operation);
+            mean += scores[i];
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double score : scores) variance += (score - mean) * (score - mean);
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : Double.NaN;
+
+        // choose the units by the magnitude of the score
+        String units = "ns/op";
+        double scale = 1;
+        if (mean >= 1e9) {
+            units = "s/op";
+            scale = 1e9;
+        } else if (mean >= 1e6) {
+            units = "ms/op";
+            scale = 1e6;
+        } else if (mean >= 1e3) {
+            units = "us/op";
+            scale = 1e3;
+        }
+        System.out.printf(Locale.ROOT, "%-50s %5d %15.3f %12.3f  %s%n", name, iterations, mean / scale,
+                error / scale, units);
+    }
+
+    /**
+     * Runs a single iteration
+     * @param batch     the amount of operations done by one invocation
+     * @param setup     prepares the state of an invocation
+     * @param operation the measured operation on the state
+     * @param <T>       the type of the state
+     * @return the average time of an operation in nanoseconds
+     */
+    private <T> double iteration(int batch, Supplier<T> setup, Function<T, ?> operation) {
+        long time = 0;
+        long invocations = 0;
+        do {
+            T state = setup.get();
+            long start = System.nanoTime();
+            sink = operation.apply(state);
+            time += System.nanoTime() - start;
+            invocations++;
+        } while (time < iterationNanos);
+        return (double) time / (invocations * batch);
+    }
+}
@@ -0,0 +1,95 @@
+package unittests.benchmark;
+
+import geometries.*;
+import primitives.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Benchmarks of the Bounding Volume Hierarchy builders on procedurally generated
+ * scenes of random spheres and triangles. The scene is generated anew for every
+ * build, out of the measured time.<br>
+ * Run by {@code java unittests.benchmark.BvhBuildBenchmarks [sizes...]}, the
+ * default sizes are 1000, 100000 and 1000000 primitives; see {@link Benchmark}
+ * for the options. The largest scene needs a heap of a few gigabytes.
+ */
+public final class BvhBuildBenchmarks {
+    /** The default scene sizes */
+    private static final int[] SIZES = { 1_000, 100_000, 1_000_000 };
+
+    /** Don't let anyone instantiate this class */
+    private BvhBuildBenchmarks() {}
+
+    /**
+     * Generates a scene of random spheres and triangles, whose density doesn't
+     * depend on the size of the scene
+     * @param size the amount of primitives
+     * @return the geometries of the scene
+     */
+    private static Geometries randomScene(int size) {
+        Random rand = new Random(size);
+        double side = 10 * Math.cbrt(size);
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < size; i++) {
+            double x = rand.nextDouble() * side, y = rand.nextDouble() * side, z = rand.nextDouble() * side;
+            geometries.add(i % 2 == 0
+                    ? new Sphere(new Point(x, y, z), 0.5 + rand.nextDouble() * 2)
+                    : new Triangle(new Point(x, y, z), new Point(x + 3, y, z), new Point(x, y + 3, z + 1)));
+        }
+        return geometries;
+    }
+
+    /**
+     * Runs the benchmarks
+     * @param args the scene sizes, optional
+     */
+    public static void main(String[] args) {
+        int[] sizes = SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        Path cache;
+        try {
+            cache = Files.createTempDirectory("bvh-cache");
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error - can't create the cache directory", e);
+        }
+
+        Benchmark benchmark = new Benchmark(1, 3, 1000);
+        for (int size : sizes) {
+            benchmark.measure("buildBVH.median[" + size + "]", 1, () -> randomScene(size), geometries -> {
+                geometries.buildBVH();
+                return geometries;
+            });
+            benchmark.measure("buildBVH.sah[" + size + "]", 1, () -> randomScene(size), geometries -> {
+                geometries.buildBVH(12, 2);
+                return geometries;
+            });
+            benchmark.measure("buildFlatBVH[" + size + "]", 1, () -> randomScene(size), geometries -> {
+                geometries.buildFlatBVH();
+                return geometries;
+            });
+            benchmark.measure("buildFlatBVH.cached[" + size + "]", 1, () -> randomScene(size), geometries -> {
+                geometries.buildFlatBVH(cache); // built and saved by the warmup, loaded by the measured iterations
+                return geometries;
+            });
+            benchmark.measure("buildLinearBVH[" + size + "]", 1, () -> randomScene(size), geometries -> {
+                geometries.buildLinearBVH();
+                return geometries;
+            });
+            benchmark.measure("refitBVH[" + size + "]", 1, () -> {
+                Geometries geometries = randomScene(size);
+                geometries.buildBVH();
+                return geometries;
+            }, geometries -> {
+                geometries.refit();
+                return geometries;
+            });
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package unittests.benchmark;
+
+import geometries.*;
+import primitives.*;
+
+import java.util.Random;
+
+/**
+ * Microbenchmarks of the ray intersection of the basic geometries and of the
+ * bounding box test. Every invocation intersects a batch of random rays aimed
+ * around the geometry, about half of them hit it.<br>
+ * Run by {@code java unittests.benchmark.IntersectionBenchmarks}, see
+ * {@link Benchmark} for the options.
+ */
+public final class IntersectionBenchmarks {
+    /** The amount of rays in a batch */
+    private static final int RAYS = 1024;
+
+    /** Don't let anyone instantiate this class */
+    private IntersectionBenchmarks() {}
+
+    /**
+     * Creates random rays from around the camera position towards the area around
+     * the origin
+     * @return the rays
+     */
+    private static Ray[] randomRays() {
+        Random rand = new Random(1);
+        Ray[] rays = new Ray[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            Point head = new Point(rand.nextDouble() - 0.5, rand.nextDouble() - 0.5, 10);
+            Point target = new Point(rand.nextDouble() * 4 - 2, rand.nextDouble() * 4 - 2, 0);
+            rays[i] = new Ray(head, target.subtract(head));
+        }
+        return rays;
+    }
+
+    /**
+     * Creates a wavy height field mesh over the area around the origin
+     * @param cells the amount of cells along each side, 2 faces per cell
+     * @return the mesh
+     */
+    private static TriangleMesh heightField(int cells) {
+        int side = cells + 1;
+        double[] positions = new double[side * side * 3];
+        for (int i = 0; i < side; i++)
+            for (int j = 0; j < side; j++) {
+                double x = 4.0 * j / cells - 2, y = 4.0 * i / cells - 2;
+                positions[(i * side + j) * 3] = x;
+                positions[(i * side + j) * 3 + 1] = y;
+                positions[(i * side + j) * 3 + 2] = 0.2 * Math.sin(3 * x) * Math.cos(3 * y);
+            }
+        int[] indices = new int[cells * cells * 6];
+        int k = 0;
+        for (int i = 0; i < cells; i++)
+            for (int j = 0; j < cells; j++) {
+                int corner = i * side + j;
+                indices[k++] = corner;
+                indices[k++] = corner + 1;
+                indices[k++] = corner + side;
+                indices[k++] = corner + 1;
+                indices[k++] = corner + side + 1;
+                indices[k++] = corner + side;
+            }
+        return new TriangleMesh(positions, indices);
+    }
+
+    /**
+     * Measures the intersection of a batch of rays with a geometry
+     * @param benchmark the harness
+     * @param name      the name of the benchmark
+     * @param geometry  the geometry
+     * @param rays      the rays
+     */
+    private static void measure(Benchmark benchmark, String name, Intersectable geometry, Ray[] rays) {
+        benchmark.measure(name, RAYS, () -> {
+            int hits = 0;
+            for (Ray ray : rays)
+                if (geometry.calculateIntersections(ray) != null) hits++;
+            return hits;
+        });
+    }
+
+    /**
+     * Runs the benchmarks
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        Benchmark benchmark = new Benchmark(3, 5, 1000);
+        Ray[] rays = randomRays();
+
+        measure(benchmark, "intersect.sphere", new Sphere(new Point(0, 0, -2), 1.5), rays);
+        measure(benchmark, "intersect.triangle",
+                new Triangle(new Point(-2, -1.5, 0), new Point(2, -1.5, 0), new Point(0, 1.5, 0)), rays);
+        measure(benchmark, "intersect.polygon",
+                new Polygon(new Point(-1.5, -1.5, 0), new Point(1.5, -1.5, 0), new Point(1.5, 1.5, 0),
+                        new Point(-1.5, 1.5, 0)), rays);
+        measure(benchmark, "intersect.cylinder",
+                new Cylinder(new Ray(new Point(-1.5, 0, -2), Vector.AXIS_X), 1, 3), rays);
+        measure(benchmark, "intersect.mesh", heightField(64), rays);
+
+        BoundingBox box = new BoundingBox(new Point(-1.5, -1.5, -1), new Point(1.5, 1.5, 1));
+        benchmark.measure("intersect.boundingBox", RAYS, () -> {
+            int hits = 0;
+            for (Ray ray : rays)
+                if (box.intersects(ray)) hits++;
+            return hits;
+        });
+    }
+}
@@ -3,7 +3,16 @@ package unittests.geometries;
 import geometries.*;
 import primitives.*;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 
 class GeometriesTest {
@@ -38,4 +47,223 @@ class GeometriesTest {
         intersections = geometries.findIntersections(ray);
         assertNull(intersections, "Expected no intersections with empty geometries collection, but got some");
     }
-}
\ No newline at end of file
+
+    /**
+     * Builds a random scene of small spheres
+     * @return the geometries of the scene
+     */
+    private static Geometries randomSpheres() {
+        return randomSpheres(500);
+    }
+
+    /**
+     * Builds a random scene of small spheres
+     * @param count the amount of spheres
+     * @return the geometries of the scene
+     */
+    private static Geometries randomSpheres(int count) {
+        Random rand = new Random(7);
+        double side = 100 * Math.cbrt(count / 500.0);
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < count; i++)
+            geometries.add(new Sphere(new Point(rand.nextDouble() * side, rand.nextDouble() * side, rand.nextDouble() * side),
+                    0.5 + rand.nextDouble() * 3));
+        return geometries;
+    }
+
+    @Test
+    void buildBVH() {
+        Geometries flat = randomSpheres();
+        Geometries median = randomSpheres();
+        median.buildBVH();
+        Geometries sah = randomSpheres();
+        sah.buildBVH(12, 2);
+        Geometries flatBVH = randomSpheres();
+        flatBVH.buildFlatBVH();
+        Geometries linear = randomSpheres();
+        linear.buildLinearBVH();
+        Random rand = new Random(11);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the hierarchies find the same intersections as the flat list
+        for (int i = 0; i < 200; i++) {
+            Ray ray = new Ray(new Point(-50, rand.nextDouble() * 100, rand.nextDouble() * 100),
+                    new Vector(1, rand.nextDouble() - 0.5, rand.nextDouble() - 0.5));
+            List<Point> expected = flat.findIntersections(ray);
+            int size = expected == null ? 0 : expected.size();
+            List<Point> result = median.findIntersections(ray);
+            assertEquals(size, result == null ? 0 : result.size(), "Median BVH missed intersections");
+            result = sah.findIntersections(ray);
+            assertEquals(size, result == null ? 0 : result.size(), "SAH BVH missed intersections");
+            result = flatBVH.findIntersections(ray);
+            assertEquals(size, result == null ? 0 : result.size(), "Flat BVH missed intersections");
+            result = linear.findIntersections(ray);
+            assertEquals(size, result == null ? 0 : result.size(), "Linear BVH missed intersections");
+        }
+        // =============== Boundary Values Tests ==================
+        // TC02: illegal SAH parameters
+        assertThrows(IllegalArgumentException.class, () -> sah.buildBVH(1, 2), "SAH BVH needs at least 2 bins");
+        assertThrows(IllegalArgumentException.class, () -> sah.buildBVH(12, 0), "SAH BVH needs positive leaf cost");
+    }
+
+    @Test
+    void buildBVHLarge() {
+        // a scene big enough for the parallel build of the subtrees and the parallel bounds and bins
+        Geometries flat = randomSpheres(20000);
+        Geometries median = randomSpheres(20000);
+        median.buildBVH();
+        Geometries sah = randomSpheres(20000);
+        sah.buildBVH(12, 2);
+        Geometries linear = randomSpheres(20000);
+        linear.buildLinearBVH();
+        Random rand = new Random(17);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the hierarchies find the same closest intersections as the flat list
+        for (int i = 0; i < 200; i++) {
+            Ray ray = new Ray(new Point(-50, rand.nextDouble() * 270, rand.nextDouble() * 270),
+                    new Vector(1, rand.nextDouble() - 0.5, rand.nextDouble() - 0.5));
+            Intersectable.Intersection closest = flat.calculateClosestIntersection(ray);
+            for (Geometries bvh : List.of(median, sah, linear)) {
+                Intersectable.Intersection intersection = bvh.calculateClosestIntersection(ray);
+                assertEquals(closest == null ? null : closest.point, intersection == null ? null : intersection.point,
+                        "BVH found a wrong closest intersection");
+            }
+        }
+        assertEquals(20000, median.getPrimitives().size(), "Median BVH lost primitives");
+        assertEquals(20000, sah.getPrimitives().size(), "SAH BVH lost primitives");
+        assertEquals(20000, linear.getPrimitives().size(), "Linear BVH lost primitives");
+    }
+
+    @Test
+    void refit() {
+        Geometries flat = randomSpheres();
+        Geometries bvh = randomSpheres();
+        List<Intersectable> flatSpheres = flat.getPrimitives();
+        List<Intersectable> bvhSpheres = bvh.getPrimitives(); // in the same order, before the build
+        bvh.buildBVH();
+        double builtCost = bvh.sahCost();
+        Random rand = new Random(19);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a few spheres move far away - the refitted hierarchy finds them
+        for (int i = 0; i < 5; i++) {
+            Point center = new Point(150 + rand.nextDouble() * 50, rand.nextDouble() * 100, rand.nextDouble() * 100);
+            assertTrue(flat.replace(flatSpheres.get(i), new Sphere(center, 2)), "Sphere not replaced");
+            assertTrue(bvh.replace(bvhSpheres.get(i), new Sphere(center, 2)), "Sphere not replaced in the BVH");
+        }
+        assertFalse(bvh.refit(100), "Rebuilt a hierarchy which hardly decayed");
+        for (int i = 0; i < 200; i++) {
+            Ray ray = new Ray(new Point(-50, rand.nextDouble() * 100, rand.nextDouble() * 100),
+                    new Vector(1, rand.nextDouble() * 0.2 - 0.1, rand.nextDouble() * 0.2 - 0.1));
+            Intersectable.Intersection closest = flat.calculateClosestIntersection(ray);
+            Intersectable.Intersection intersection = bvh.calculateClosestIntersection(ray);
+            assertEquals(closest == null ? null : closest.point, intersection == null ? null : intersection.point,
+                    "Refitted BVH found a wrong closest intersection");
+        }
+        // TC02: all the spheres move - the decayed hierarchy is rebuilt
+        bvhSpheres = bvh.getPrimitives();
+        for (Intersectable sphere : bvhSpheres)
+            bvh.replace(sphere, new Sphere(new Point(rand.nextDouble() * 100, rand.nextDouble() * 100,
+                    rand.nextDouble() * 100), 1));
+        bvh.refit();
+        assertTrue(bvh.sahCost() > builtCost * 1.5, "Moving all the spheres should decay the hierarchy");
+        assertTrue(bvh.refit(1.5), "The decayed hierarchy wasn't rebuilt");
+        assertTrue(bvh.sahCost() < builtCost * 1.5, "The rebuilt hierarchy is still decayed");
+        assertEquals(500, bvh.getPrimitives().size(), "Rebuild lost spheres");
+        // =============== Boundary Values Tests ==================
+        // TC11: illegal decay and replacement
+        assertThrows(IllegalArgumentException.class, () -> bvh.refit(0.5), "Decay must be at least 1");
+        assertThrows(IllegalArgumentException.class,
+                () -> bvh.replace(bvh.getPrimitives().get(0), new Plane(new Point(0, 0, 0), new Vector(0, 0, 1))),
+                "A bounded geometry can't be replaced by an unbounded one");
+    }
+
+    @Test
+    void buildFlatBVHCache(@TempDir Path cache) throws IOException {
+        Geometries flat = spheresOnPlane();
+        Geometries built = spheresOnPlane();
+        built.buildFlatBVH(cache);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the built hierarchy is saved, keyed by the geometries
+        List<Path> files;
+        try (Stream<Path> list = Files.list(cache)) {
+            files = list.toList();
+        }
+        assertEquals(1, files.size(), "The hierarchy wasn't saved");
+        assertNotNull(FlatBVH.load(files.get(0), spheresOnPlane().getPrimitives()), "The saved hierarchy wasn't loaded");
+        // TC02: a hierarchy saved for other geometries isn't loaded
+        assertNull(FlatBVH.load(files.get(0), randomSpheres(400).getPrimitives()), "Loaded a hierarchy of other geometries");
+        // TC03: the loaded hierarchy finds the same intersections as the flat list
+        Geometries loaded = spheresOnPlane();
+        loaded.buildFlatBVH(cache);
+        Random rand = new Random(23);
+        for (int i = 0; i < 200; i++) {
+            Ray ray = new Ray(new Point(-50, rand.nextDouble() * 100, rand.nextDouble() * 100),
+                    new Vector(1, rand.nextDouble() - 0.5, rand.nextDouble() - 0.6));
+            Intersectable.Intersection closest = flat.calculateClosestIntersection(ray);
+            Intersectable.Intersection intersection = loaded.calculateClosestIntersection(ray);
+            assertEquals(closest == null ? null : closest.point, intersection == null ? null : intersection.point,
+                    "Loaded BVH found a wrong closest intersection");
+            List<Point> expected = flat.findIntersections(ray);
+            List<Point> result = loaded.findIntersections(ray);
+            assertEquals(expected == null ? 0 : expected.size(), result == null ? 0 : result.size(),
+                    "Loaded BVH missed intersections");
+        }
+        // =============== Boundary Values Tests ==================
+        // TC11: a damaged file is rebuilt and saved again
+        Files.write(files.get(0), new byte[] { 1, 2, 3 });
+        assertNull(FlatBVH.load(files.get(0), spheresOnPlane().getPrimitives()), "Loaded a damaged hierarchy");
+        spheresOnPlane().buildFlatBVH(cache);
+        assertNotNull(FlatBVH.load(files.get(0), spheresOnPlane().getPrimitives()), "The hierarchy wasn't saved again");
+        // TC12: a file whose root points to itself as its right child isn't loaded
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(files.get(0))).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(24 + data.getInt(20) * 6 * Double.BYTES, 0);
+        Files.write(files.get(0), data.array());
+        assertNull(FlatBVH.load(files.get(0), spheresOnPlane().getPrimitives()), "Loaded a hierarchy with a damaged node");
+    }
+
+    /**
+     * Builds a random scene of small spheres over a ground plane, with some of the
+     * spheres in a nested collection
+     * @return the geometries of the scene
+     */
+    private static Geometries spheresOnPlane() {
+        Geometries geometries = randomSpheres();
+        Geometries nested = new Geometries(new Sphere(new Point(50, 50, 150), 5), new Sphere(new Point(-50, 50, 50), 5));
+        geometries.add(new Plane(new Point(0, 0, -10), new Vector(0, 0, 1)), nested);
+        return geometries;
+    }
+
+    @Test
+    void buildBVHWithPlane() {
+        Geometries flat = spheresOnPlane();
+        Geometries median = spheresOnPlane();
+        median.buildBVH();
+        Geometries sah = spheresOnPlane();
+        sah.buildBVH(12, 2);
+        Geometries flatBVH = spheresOnPlane();
+        flatBVH.buildFlatBVH();
+        Geometries linear = spheresOnPlane();
+        linear.buildLinearBVH();
+        Random rand = new Random(13);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the plane is found even far from the bounded geometries
+        Ray ray = new Ray(new Point(500, 500, 100), new Vector(0, 0, -1));
+        assertEquals(new Point(500, 500, -10), flat.calculateClosestIntersection(ray).point,
+                "The plane was culled by the box of the bounded geometries");
+        assertNull(flat.getBoundingBox(), "A collection with a plane must be unbounded");
+        // TC02: the hierarchies find the same intersections as the flat list
+        for (int i = 0; i < 200; i++) {
+            ray = new Ray(new Point(-50, rand.nextDouble() * 100, rand.nextDouble() * 100),
+                    new Vector(1, rand.nextDouble() - 0.5, rand.nextDouble() - 0.6));
+            List<Point> expected = flat.findIntersections(ray);
+            int size = expected == null ? 0 : expected.size();
+            Intersectable.Intersection closest = flat.calculateClosestIntersection(ray);
+            for (Geometries bvh : List.of(median, sah, flatBVH, linear)) {
+                List<Point> result = bvh.findIntersections(ray);
+                assertEquals(size, result == null ? 0 : result.size(), "BVH missed intersections");
+                Intersectable.Intersection intersection = bvh.calculateClosestIntersection(ray);
+                assertEquals(closest == null ? null : closest.point, intersection == null ? null : intersection.point,
+                        "BVH found a wrong closest intersection");
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package unittests.geometries;
+
+import geometries.*;
+import geometries.Intersectable.Intersection;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the uniform grid accelerator
+ */
+class GridTests {
+    /**
+     * Builds a random scene of spheres and triangles with a ground plane
+     * @return the geometries of the scene
+     */
+    private static Geometries randomScene() {
+        Random rand = new Random(3);
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 300; i++) {
+            double x = rand.nextDouble() * 100, y = rand.nextDouble() * 100, z = rand.nextDouble() * 100;
+            geometries.add(i % 2 == 0
+                    ? new Sphere(new Point(x, y, z), 0.5 + rand.nextDouble() * 3)
+                    : new Triangle(new Point(x, y, z), new Point(x + 5, y, z), new Point(x, y + 5, z + 1)));
+        }
+        geometries.add(new Plane(new Point(0, -10, 0), Vector.AXIS_Y));
+        return geometries;
+    }
+
+    /**
+     * Counts the intersections of a ray by testing all the geometries one by one
+     * @param primitives the geometries
+     * @param ray        the ray
+     * @return the amount of intersections
+     */
+    private static int countIntersections(List<Intersectable> primitives, Ray ray) {
+        int count = 0;
+        for (Intersectable geo : primitives) {
+            List<Point> points = geo.findIntersections(ray);
+            if (points != null) count += points.size();
+        }
+        return count;
+    }
+
+    /**
+     * Finds the closest intersection of a ray by testing all the geometries one by one
+     * @param primitives the geometries
+     * @param ray        the ray
+     * @return the closest intersection point, or null if there is none
+     */
+    private static Point closestIntersection(List<Intersectable> primitives, Ray ray) {
+        Intersection closest = null;
+        for (Intersectable geo : primitives) {
+            Intersection intersection = geo.calculateClosestIntersection(ray);
+            if (intersection != null && (closest == null || intersection.distance < closest.distance))
+                closest = intersection;
+        }
+        return closest == null ? null : closest.point;
+    }
+
+    @Test
+    void testIntersections() {
+        List<Intersectable> primitives = randomScene().getPrimitives();
+        Grid grid = new Grid(primitives);
+        Random rand = new Random(17);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: rays from outside and inside the grid find the same intersections as the flat list
+        for (int i = 0; i < 300; i++) {
+            Point head = i % 2 == 0
+                    ? new Point(-50, rand.nextDouble() * 100, rand.nextDouble() * 100)
+                    : new Point(rand.nextDouble() * 100, rand.nextDouble() * 100, rand.nextDouble() * 100);
+            Ray ray = new Ray(head, new Vector(rand.nextDouble() + 0.1, rand.nextDouble() - 0.5, rand.nextDouble() - 0.5));
+
+            List<Point> result = grid.findIntersections(ray);
+            assertEquals(countIntersections(primitives, ray), result == null ? 0 : result.size(),
+                    "Grid missed intersections");
+
+            Intersection closest = grid.calculateClosestIntersection(ray);
+            assertEquals(closestIntersection(primitives, ray), closest == null ? null : closest.point,
+                    "Grid found a wrong closest intersection");
+
+            Double3 ktr = Double3.ONE;
+            for (Intersectable geo : primitives) ktr = ktr.product(geo.calculateTransparency(ray, 60, 0.001));
+            assertEquals(ktr.lowerThan(0.001), grid.calculateTransparency(ray, 60, 0.001) == Double3.ZERO,
+                    "Grid found a wrong transparency");
+        }
+        // =============== Boundary Values Tests ==================
+        // TC02: a ray parallel to the axes along the grid side
+        Ray ray = new Ray(new Point(-50, 50, 50), Vector.AXIS_X);
+        List<Point> result = grid.findIntersections(ray);
+        assertEquals(countIntersections(primitives, ray), result == null ? 0 : result.size(),
+                "Grid missed intersections of an axis parallel ray");
+        // TC03: an empty grid
+        assertNull(new Grid(List.of()).findIntersections(ray), "Empty grid found intersections");
+    }
+}
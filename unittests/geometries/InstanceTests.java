@@ -0,0 +1,96 @@
+package unittests.geometries;
+
+import geometries.*;
+import geometries.Intersectable.Intersection;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the instances of shared geometries
+ */
+class InstanceTests {
+    /** Delta value for accuracy when comparing the numbers of type 'double' */
+    private static final double DELTA = 0.000001;
+    /** A shared unit sphere */
+    private final Sphere sphere = new Sphere(Point.ZERO, 1);
+
+    /** Test method for {@link geometries.Instance#Instance(Intersectable, Transform)}. */
+    @Test
+    void testConstructor() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The box of the instance is the transformed box of the geometry
+        Instance instance = new Instance(sphere, Transform.scaling(2).then(Transform.translation(new Vector(5, 0, 0))));
+        assertEquals(new Point(3, -2, -2), instance.getBoundingBox().min, "Wrong minimal corner");
+        assertEquals(new Point(7, 2, 2), instance.getBoundingBox().max, "Wrong maximal corner");
+        // TC02: An instance of an unbounded geometry is unbounded
+        assertNull(new Instance(new Plane(Point.ZERO, Vector.AXIS_Z), Transform.IDENTITY).getBoundingBox(),
+                "An instance of a plane must be unbounded");
+    }
+
+    /** Test method for {@link geometries.Instance#calculateClosestIntersection(Ray)}. */
+    @Test
+    void testClosestIntersection() {
+        Instance instance = new Instance(sphere, Transform.scaling(2).then(Transform.translation(new Vector(5, 0, 0))));
+        Sphere placed = new Sphere(new Point(5, 0, 0), 2);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The intersection is found in the world, with its normal and distance
+        Ray ray = new Ray(new Point(0, 1, 0), new Vector(1, 0, 0));
+        Intersection expected = placed.calculateClosestIntersection(ray);
+        Intersection result = instance.calculateClosestIntersection(ray);
+        assertEquals(0, expected.point.distance(result.point), DELTA, "Wrong intersection point");
+        assertEquals(expected.distance, result.distance, DELTA, "Wrong intersection distance");
+        assertEquals(placed.getNormal(expected.point), result.n, "Wrong normal");
+        assertSame(sphere, result.geometry, "The intersection must keep the shared geometry");
+        // TC02: The opaque instance blocks a shadow ray only up to the maximal distance
+        assertEquals(Double3.ZERO, instance.calculateTransparency(ray, 4, 0.001), "The instance didn't block the ray");
+        assertEquals(Double3.ONE, instance.calculateTransparency(ray, 2, 0.001),
+                "Found a blocker beyond the maximal distance");
+        // TC03: The ray misses the instance
+        assertNull(instance.calculateClosestIntersection(new Ray(new Point(0, 3, 0), new Vector(1, 0, 0))),
+                "Found an intersection of a missing ray");
+    }
+
+    /** Test method for {@link geometries.Instance#calculateIntersections(Ray)}. */
+    @Test
+    void testInstancesOfMesh() {
+        TriangleMesh mesh = new TriangleMesh(new double[] { 0, 0, 0, 2, 0, 0, 0, 2, 0, 0, 0, 2 },
+                new int[] { 0, 1, 2, 0, 1, 3, 0, 2, 3, 1, 2, 3 });
+        Random rand = new Random(3);
+        Geometries instances = new Geometries();
+        Geometries triangles = new Geometries();
+        for (int i = 0; i < 50; i++) {
+            Transform transform = Transform.rotation(new Vector(rand.nextDouble(), 1, rand.nextDouble()), rand.nextDouble() * 360)
+                    .then(Transform.scaling(0.5 + rand.nextDouble()))
+                    .then(Transform.translation(new Vector(rand.nextDouble() * 40, rand.nextDouble() * 40, 0)));
+            instances.add(new Instance(mesh, transform));
+            Point[] v = { new Point(0, 0, 0), new Point(2, 0, 0), new Point(0, 2, 0), new Point(0, 0, 2) };
+            for (int k = 0; k < v.length; k++) v[k] = transform.apply(v[k]);
+            triangles.add(new Triangle(v[0], v[1], v[2]), new Triangle(v[0], v[1], v[3]),
+                    new Triangle(v[0], v[2], v[3]), new Triangle(v[1], v[2], v[3]));
+        }
+        instances.buildBVH();
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The instances under a top level hierarchy are hit as the transformed triangles
+        for (int i = 0; i < 200; i++) {
+            Ray ray = new Ray(new Point(rand.nextDouble() * 40, rand.nextDouble() * 40, 20),
+                    new Vector(rand.nextDouble() - 0.5, rand.nextDouble() - 0.5, -1));
+            Intersection expected = triangles.calculateClosestIntersection(ray);
+            Intersection result = instances.calculateClosestIntersection(ray);
+            if (expected == null) {
+                assertNull(result, "Found an intersection of a missing ray");
+                continue;
+            }
+            assertEquals(0, expected.point.distance(result.point), DELTA, "Wrong intersection point");
+            assertEquals(expected.distance, result.distance, DELTA, "Wrong intersection distance");
+            assertEquals(0, Math.abs(expected.geometry.getNormal(expected.point).dotProduct(result.n)) - 1, DELTA,
+                    "Wrong normal");
+            List<Point> all = triangles.findIntersections(ray);
+            assertEquals(all.size(), instances.findIntersections(ray).size(), "Wrong amount of intersections");
+        }
+    }
+}
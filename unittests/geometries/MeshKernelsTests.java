@@ -0,0 +1,105 @@
+package geometries;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.*;
+
+/**
+ * Testing the kernels of the meshes - the scalar kernels and the kernels in use, which
+ * are vectorized if the tests run with the Vector API module
+ */
+class MeshKernelsTests {
+    /** The kernels tested */
+    private final List<MeshKernels> kernels = List.of(new ScalarMeshKernels(), MeshKernels.KERNELS);
+    /** Random positions of vertices, 3 numbers per vertex */
+    private final double[] positions = new double[30 * 3];
+    /** Random rays, some of them parallel to the axes or starting on the sides of the boxes */
+    private final Ray[] rays = new Ray[300];
+
+    /** Builds the random vertices and rays */
+    MeshKernelsTests() {
+        Random rand = new Random(7);
+        for (int i = 0; i < positions.length; i++) positions[i] = rand.nextInt(10);
+        for (int i = 0; i < rays.length; i++) {
+            Point head = new Point(rand.nextInt(12) - 1, rand.nextInt(12) - 1, rand.nextInt(12) - 1);
+            Vector direction = switch (i % 3) {
+                case 0 -> new Vector(rand.nextDouble() - 0.5, rand.nextDouble() - 0.5, rand.nextDouble() - 0.5);
+                case 1 -> new Vector(rand.nextInt(3) - 1, rand.nextInt(3) - 1, 1);
+                default -> new Vector(1, 0, 0);
+            };
+            rays[i] = new Ray(head, direction);
+        }
+    }
+
+    /** Test method for {@link geometries.MeshKernels#boxEntries(double[], int, Ray, double, double[])}. */
+    @Test
+    void testBoxEntries() {
+        Random rand = new Random(3);
+        for (MeshKernels kernel : kernels) {
+            int width = kernel.width();
+            // the boxes of the lanes, and the same boxes one after the other
+            double[] lanes = new double[6 * width + 6];
+            double[] boxes = new double[6 * width];
+            for (int c = 0; c < width; c++)
+                for (int axis = 0; axis < 3; axis++) {
+                    double min = rand.nextInt(10), max = min + rand.nextInt(4);
+                    // the last lane is an unused child
+                    if (c == width - 1) {
+                        min = Double.POSITIVE_INFINITY;
+                        max = Double.NEGATIVE_INFINITY;
+                    }
+                    lanes[6 + axis * width + c] = boxes[c * 6 + axis] = min;
+                    lanes[6 + (3 + axis) * width + c] = boxes[c * 6 + 3 + axis] = max;
+                }
+            double[] entries = new double[width];
+            for (Ray ray : rays)
+                for (double maxDistance : new double[] { 5, Double.POSITIVE_INFINITY }) {
+                    kernel.boxEntries(lanes, 6, ray, maxDistance, entries);
+                    // ============ Equivalence Partitions Tests ==============
+                    // TC01: Each lane is the slab test of its box
+                    for (int c = 0; c < width - 1; c++)
+                        assertEquals(BoundingBox.entryDistance(boxes, c * 6, ray, maxDistance), entries[c],
+                                kernel.getClass().getSimpleName() + ": wrong entry of box " + c + " for " + ray);
+                    // =============== Boundary Values Tests ==================
+                    // TC11: The rays miss an empty box
+                    assertEquals(Double.POSITIVE_INFINITY, entries[width - 1],
+                            kernel.getClass().getSimpleName() + ": entered an empty box");
+                }
+        }
+    }
+
+    /** Test method for {@link geometries.MeshKernels#faceDistances(double[], int[], int, Ray, double[])}. */
+    @Test
+    void testFaceDistances() {
+        Random rand = new Random(4);
+        for (MeshKernels kernel : kernels) {
+            int width = kernel.width();
+            int[] corners = new int[3 + 3 * width];
+            for (int i = 3; i < corners.length; i++) corners[i] = rand.nextInt(positions.length / 3) * 3;
+            double[] distances = new double[width];
+            for (Ray ray : rays) {
+                kernel.faceDistances(positions, corners, 3, ray, distances);
+                // ============ Equivalence Partitions Tests ==============
+                // TC01: Each lane is the intersection of its face
+                for (int i = 0; i < width; i++)
+                    assertEquals(ScalarMeshKernels.hitDistance(positions,
+                                    corners[3 + i], corners[3 + width + i], corners[3 + 2 * width + i],
+                                    ray.headX, ray.headY, ray.headZ, ray.dirX, ray.dirY, ray.dirZ), distances[i],
+                            kernel.getClass().getSimpleName() + ": wrong distance of face " + i + " for " + ray);
+            }
+        }
+        // =============== Boundary Values Tests ==================
+        // TC11: A ray through the edge of a face hits it
+        double[] face = { 0, 0, 0, 1, 0, 0, 1, 1, 0 };
+        assertEquals(1, ScalarMeshKernels.hitDistance(face, 0, 3, 6, 1, 0.5, 1, 0, 0, -1), 1e-12,
+                "A ray through the edge missed the face");
+        // TC12: A ray parallel to a face misses it
+        assertEquals(Double.POSITIVE_INFINITY, ScalarMeshKernels.hitDistance(face, 0, 3, 6, 0, 0, 0, 1, 0, 0),
+                "A ray parallel to the face hit it");
+    }
+}
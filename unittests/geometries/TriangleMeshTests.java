@@ -0,0 +1,147 @@
+package unittests.geometries;
+
+import geometries.*;
+import geometries.Intersectable.Intersection;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the indexed triangle mesh
+ */
+class TriangleMeshTests {
+    /** Random positions of a mesh, 3 numbers per vertex */
+    private final double[] positions = new double[600 * 3];
+    /** Random faces of a mesh, 3 indices per face */
+    private final int[] indices = new int[400 * 3];
+
+    /** Builds a random triangle soup sharing vertices */
+    TriangleMeshTests() {
+        Random rand = new Random(5);
+        for (int i = 0; i < positions.length; i++) positions[i] = rand.nextDouble() * 100;
+        for (int f = 0; f < indices.length / 3; f++) {
+            indices[f * 3] = rand.nextInt(600);
+            indices[f * 3 + 1] = (indices[f * 3] + 1 + rand.nextInt(10)) % 600;
+            indices[f * 3 + 2] = (indices[f * 3] + 11 + rand.nextInt(10)) % 600;
+        }
+    }
+
+    /**
+     * Creates the faces of the mesh as separate triangles
+     * @return the triangles
+     */
+    private List<Triangle> triangles() {
+        List<Triangle> triangles = new ArrayList<>();
+        for (int f = 0; f < indices.length / 3; f++)
+            triangles.add(new Triangle(vertex(indices[f * 3]), vertex(indices[f * 3 + 1]), vertex(indices[f * 3 + 2])));
+        return triangles;
+    }
+
+    /**
+     * Gets a vertex of the mesh
+     * @param index the vertex index
+     * @return the vertex
+     */
+    private Point vertex(int index) {
+        return new Point(positions[index * 3], positions[index * 3 + 1], positions[index * 3 + 2]);
+    }
+
+    /** Test method for {@link geometries.TriangleMesh#TriangleMesh(double[], int[])}. */
+    @Test
+    void testConstructor() {
+        Point[] square = { new Point(0, 0, 0), new Point(1, 0, 0), new Point(1, 1, 0), new Point(0, 1, 0) };
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Correct mesh of two faces
+        assertEquals(2, new TriangleMesh(square, 0, 1, 2, 0, 2, 3).getFaceCount(), "Wrong amount of faces");
+        // TC02: Index out of the vertices
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(square, 0, 1, 4),
+                "Constructed a mesh with an index out of the vertices");
+        // =============== Boundary Values Tests ==================
+        // TC11: Incomplete face
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(square, 0, 1, 2, 3),
+                "Constructed a mesh with an incomplete face");
+        // TC12: No faces
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(square),
+                "Constructed a mesh without faces");
+        // TC13: Degenerate face
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(square, 0, 1, 1),
+                "Constructed a mesh with a degenerate face");
+    }
+
+    /** Test method for {@link geometries.TriangleMesh#getNormal(primitives.Point)}. */
+    @Test
+    void testGetNormal() {
+        TriangleMesh mesh = new TriangleMesh(
+                new Point[] { new Point(0, 0, 0), new Point(1, 0, 0), new Point(1, 1, 0), new Point(1, 1, 1) },
+                0, 1, 2, 1, 3, 2);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A point on the first face
+        assertEquals(new Vector(0, 0, 1), mesh.getNormal(new Point(0.8, 0.2, 0)), "Wrong normal of the first face");
+        // TC02: A point on the second face
+        assertEquals(new Vector(-1, 0, 0), mesh.getNormal(new Point(1, 0.8, 0.2)), "Wrong normal of the second face");
+        // TC03: A point outside the mesh
+        assertThrows(IllegalArgumentException.class, () -> mesh.getNormal(new Point(5, 5, 5)),
+                "Found a normal of a point outside the mesh");
+    }
+
+    @Test
+    void testIntersections() {
+        TriangleMesh mesh = new TriangleMesh(positions, indices);
+        List<Triangle> triangles = triangles();
+        Random rand = new Random(11);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: rays from outside and inside the mesh find the same intersections as the separate triangles,
+        // where the hits of the faces at the same distance (the mesh has a duplicate face) are one hit
+        for (int i = 0; i < 300; i++) {
+            Point head = i % 2 == 0
+                    ? new Point(-50, rand.nextDouble() * 100, rand.nextDouble() * 100)
+                    : new Point(rand.nextDouble() * 100, rand.nextDouble() * 100, rand.nextDouble() * 100);
+            Ray ray = new Ray(head, new Vector(rand.nextDouble() + 0.1, rand.nextDouble() - 0.5, rand.nextDouble() - 0.5));
+
+            List<Double> distances = new ArrayList<>();
+            Intersection closest = null;
+            for (Triangle triangle : triangles) {
+                Intersection intersection = triangle.calculateClosestIntersection(ray);
+                if (intersection == null) continue;
+                if (distances.stream().noneMatch(d -> Math.abs(d - intersection.distance) < 1e-9))
+                    distances.add(intersection.distance);
+                if (closest == null || intersection.distance < closest.distance) closest = intersection;
+            }
+
+            List<Point> result = mesh.findIntersections(ray);
+            assertEquals(distances.size(), result == null ? 0 : result.size(), "Mesh missed intersections");
+
+            Intersection intersection = mesh.calculateClosestIntersection(ray);
+            if (closest == null) assertNull(intersection, "Mesh found a wrong intersection");
+            else {
+                assertNotNull(intersection, "Mesh missed the closest intersection");
+                assertEquals(closest.distance, intersection.distance, 1e-9, "Mesh found a wrong closest intersection");
+                assertEquals(closest.geometry.getNormal(closest.point), intersection.n, "Mesh provided a wrong normal");
+            }
+
+            assertEquals(closest != null && closest.distance < 30, mesh.calculateTransparency(ray, 30, 0.001) == Double3.ZERO,
+                    "Mesh found a wrong transparency");
+        }
+        // =============== Boundary Values Tests ==================
+        // TC02: a ray through the shared edge of two faces hits the mesh
+        TriangleMesh square = new TriangleMesh(
+                new Point[] { new Point(0, 0, 0), new Point(1, 0, 0), new Point(1, 1, 0), new Point(0, 1, 0) },
+                0, 1, 2, 0, 2, 3);
+        Ray seam = new Ray(new Point(0.5, 0.5, 1), new Vector(0, 0, -1));
+        assertNotNull(square.calculateClosestIntersection(seam), "A ray through the shared edge leaked through the mesh");
+        // TC03: a ray through the shared edge of two faces hits the mesh once
+        assertEquals(1, square.findIntersections(seam).size(), "A ray through the shared edge hit the mesh twice");
+        // TC04: a shadow ray through the shared edge of a transparent mesh is attenuated once
+        square.setMaterial(new Material().setKT(0.5));
+        assertEquals(new Double3(0.5), square.calculateTransparency(seam, 2, 0.001),
+                "A shadow ray through the shared edge was attenuated twice");
+        // TC05: a ray through the shared vertex of two faces hits the mesh once
+        assertEquals(1, square.findIntersections(new Ray(new Point(0, 0, 1), new Vector(0, 0, -1))).size(),
+                "A ray through the shared vertex hit the mesh twice");
+    }
+}
@@ -1,8 +1,10 @@
 package unittests.geometries;
 
+import geometries.Intersectable;
 import geometries.Polygon;
 import org.junit.jupiter.api.Test;
 import geometries.Triangle;
+import primitives.Double3;
 import primitives.Point;
 import primitives.Vector;
 import primitives.Ray;
@@ -41,4 +43,25 @@ class TriangleTests {
         // TC07: the intersection point is parallel to the Polygon but in the same plane
         assertNull(mesh.findIntersections(new Ray(new Point(1 ,1 ,1), new Vector(-1, 1, 0))), "Failed to find the intersection point when the intersection point is parallel to the Polygon but in the same plane");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCalculateClosestIntersection() {
+        Triangle mesh = new Triangle(new Point(3, 0, 0), new Point(0, 3, 0), new Point(0,0,3));
+        Ray ray = new Ray(new Point(0 ,1 ,0), new Vector(0.5, 1, 0.5));
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the intersection point is inside the triangle and nearer than the limit
+        Intersectable.Intersection intersection = mesh.calculateClosestIntersection(ray);
+        assertNotNull(intersection, "Failed to find the closest intersection inside the triangle");
+        assertEquals(new Point(0.5,2,0.5), intersection.point, "Wrong closest intersection point");
+        assertEquals(Math.sqrt(1.5), intersection.distance, 1e-10, "Wrong distance to the closest intersection");
+        // TC02: the intersection point is outside the triangle
+        assertNull(mesh.calculateClosestIntersection(new Ray(new Point(3, 3, 3), new Vector(0, 0, 1))), "Found an intersection outside the triangle");
+        // TC03: the intersection point is farther than the light
+        assertSame(Double3.ONE, mesh.calculateTransparency(ray, 1, 0.001), "A farther triangle must not block the ray");
+        // TC04: the intersection point is nearer than the light
+        assertSame(Double3.ZERO, mesh.calculateTransparency(ray, 2, 0.001), "An opaque nearer triangle must block the ray");
+        // ============ Boundary Values Tests ==============
+        // TC05: the intersection point is on an edge of the triangle
+        assertNull(mesh.calculateClosestIntersection(new Ray(new Point(0 ,0 ,0), new Vector(1, 1, 0))), "Found an intersection on the edge of the triangle");
+    }
+}
@@ -0,0 +1,133 @@
+package unittests.lighting;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import lighting.PointLight;
+import primitives.*;
+
+/**
+ * Testing the sampling of the point lights for soft shadows
+ */
+class PointLightTests {
+    /** Delta value for accuracy when comparing the numbers of type 'double' */
+    private static final double DELTA = 0.000001;
+    /** The position of the light */
+    private static final Point  POSITION = new Point(10, 20, 30);
+    /** The point the light is sampled from */
+    private static final Point  POINT    = new Point(1, -2, 3);
+
+    /**
+     * Collects the directions visited by the samples of a light
+     * @param light the light
+     * @return the directions
+     */
+    private static List<Vector> samples(PointLight light) {
+        List<Vector> directions = new ArrayList<>();
+        assertTrue(light.forEachSample(POINT, (x, y, z) -> directions.add(new Vector(x, y, z))),
+                "The samples weren't all visited");
+        return directions;
+    }
+
+    /** Test method for {@link lighting.PointLight#forEachSample(Point, lighting.LightSource.SampleVisitor)}. */
+    @Test
+    void testForEachSample() {
+        PointLight light = new PointLight(new Color(100, 100, 100), POSITION);
+        light.setSoftShadow(3, 81);
+        List<Vector> samples = samples(light);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The samples are the directions of generateSampleVectors, without the light position
+        List<Vector> vectors = light.generateSampleVectors(POINT);
+        assertEquals(82, vectors.size(), "Wrong amount of sample vectors");
+        assertEquals(POSITION.subtract(POINT), vectors.get(81), "The last sample vector isn't the light position");
+        assertEquals(vectors.subList(0, 81), samples, "The samples differ from the sample vectors");
+        // TC02: The samples are on a golden ratio spiral on the sphere of the light
+        double phi = (1 + Math.sqrt(5)) / 2;
+        for (int i = 0; i < 81; i++) {
+            double theta = 2 * Math.PI * i / phi;
+            double z = 1 - (2.0 * i + 1) / 81;
+            double r = Math.sqrt(1 - z * z);
+            Point sample = POSITION.add(new Vector(r * Math.cos(theta), r * Math.sin(theta), z).scale(3));
+            assertEquals(0, POINT.add(samples.get(i)).distance(sample), DELTA, "Wrong sample " + i);
+        }
+        // TC03: The visitor stops the samples
+        int[] visited = { 0 };
+        assertFalse(light.forEachSample(POINT, (x, y, z) -> ++visited[0] < 5), "The samples didn't stop");
+        assertEquals(5, visited[0], "Visited samples after the visitor stopped");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A light without soft shadows has a single sample, in its position
+        assertEquals(List.of(POSITION.subtract(POINT)),
+                samples(new PointLight(new Color(100, 100, 100), POSITION)), "Wrong sample of a hard shadow");
+    }
+
+    /** Test method for {@link lighting.PointLight#forEachProbe(Point, lighting.LightSource.SampleVisitor)}. */
+    @Test
+    void testForEachProbe() {
+        PointLight light = new PointLight(new Color(100, 100, 100), POSITION);
+        light.setSoftShadow(3, 8, 100);
+        List<Vector> probes = new ArrayList<>();
+        assertTrue(light.forEachProbe(POINT, (x, y, z) -> probes.add(new Vector(x, y, z))),
+                "The probes weren't all visited");
+        Vector toLight = POSITION.subtract(POINT);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: There is a probe per probe ray
+        assertEquals(8, probes.size(), "Wrong amount of probes");
+        // TC02: The probes are on the rim of the light, on a ring orthogonal to the direction to the light
+        for (int i = 0; i < 8; i++) {
+            Vector offset = POINT.add(probes.get(i)).subtract(POSITION);
+            assertEquals(3, offset.length(), DELTA, "Probe " + i + " isn't on the rim of the light");
+            assertEquals(0, offset.dotProduct(toLight), DELTA, "Probe " + i + " isn't orthogonal to the light");
+        }
+        // TC03: The probes are evenly spaced on the ring
+        for (int i = 0; i < 8; i++) {
+            Vector offset = POINT.add(probes.get(i)).subtract(POSITION);
+            Vector next = POINT.add(probes.get((i + 1) % 8)).subtract(POSITION);
+            assertEquals(9 * Math.cos(Math.PI / 4), offset.dotProduct(next), DELTA, "Probes " + i + " aren't evenly spaced");
+        }
+        // TC04: The visitor stops the probes
+        int[] visited = { 0 };
+        assertFalse(light.forEachProbe(POINT, (x, y, z) -> ++visited[0] < 3), "The probes didn't stop");
+        assertEquals(3, visited[0], "Visited probes after the visitor stopped");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A light without probes visits none
+        PointLight hard = new PointLight(new Color(100, 100, 100), POSITION);
+        hard.setSoftShadow(3, 81);
+        assertEquals(0, hard.getProbeCount(), "A light without probes has probes");
+        assertTrue(hard.forEachProbe(POINT, (x, y, z) -> fail("A probe of a light without probes was visited")),
+                "A light without probes stopped");
+    }
+
+    /** Test method for {@link lighting.PointLight#setSoftShadow(double, int, int)}. */
+    @Test
+    void testSetSoftShadow() {
+        PointLight light = new PointLight(new Color(100, 100, 100), POSITION);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Adaptive soft shadows keep the probes and the maximal samples
+        light.setSoftShadow(3, 8, 100);
+        assertEquals(8, light.getProbeCount(), "Wrong amount of probes");
+        assertEquals(100, light.getNumOfRays(), "Wrong amount of samples");
+        // TC02: Soft shadows without probes drop the probes
+        light.setSoftShadow(3, 81);
+        assertEquals(0, light.getProbeCount(), "Probes kept after soft shadows without probes");
+        assertEquals(81, light.getNumOfRays(), "Wrong amount of samples");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Less than 2 probes
+        assertThrows(IllegalArgumentException.class, () -> light.setSoftShadow(3, 1, 100),
+                "Less than 2 probes were accepted");
+        // TC12: Less samples than probes
+        assertThrows(IllegalArgumentException.class, () -> light.setSoftShadow(3, 8, 7),
+                "Less samples than probes were accepted");
+        // TC13: As many samples as probes
+        assertDoesNotThrow(() -> light.setSoftShadow(3, 8, 8), "As many samples as probes were rejected");
+        // TC14: No samples
+        assertThrows(IllegalArgumentException.class, () -> light.setSoftShadow(3, 0),
+                "Soft shadows without samples were accepted");
+    }
+}
@@ -0,0 +1,64 @@
+package unittests.primitives;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+/**
+ * Testing the slab test of the bounding box
+ */
+class BoundingBoxTests {
+    /** The unit box, as 6 numbers: the minimal x, y, z and then the maximal x, y, z */
+    private final double[] bounds = { 0, 0, 0, 1, 1, 1 };
+    /** Delta value for accuracy when comparing the numbers of type 'double' */
+    private static final double DELTA = 0.000001;
+
+    /** Test method for {@link primitives.BoundingBox#entryDistance(double[], int, Ray, double)}. */
+    @Test
+    void testEntryDistance() {
+        final double inf = Double.POSITIVE_INFINITY;
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The ray enters the box
+        assertEquals(2, BoundingBox.entryDistance(bounds, 0, new Ray(new Point(0.5, 0.5, 3), new Vector(0, 0, -1)), inf),
+                DELTA, "Wrong entry distance");
+        // TC02: The ray starts inside the box
+        assertEquals(0, BoundingBox.entryDistance(bounds, 0, new Ray(new Point(0.5, 0.5, 0.5), new Vector(1, 2, -1)), inf),
+                DELTA, "Wrong entry distance from inside");
+        // TC03: The ray misses the box
+        assertEquals(inf, BoundingBox.entryDistance(bounds, 0, new Ray(new Point(2, 2, 3), new Vector(0, 1, -1)), inf),
+                "Found a box the ray misses");
+        // TC04: The box is behind the ray
+        assertEquals(inf, BoundingBox.entryDistance(bounds, 0, new Ray(new Point(0.5, 0.5, 3), new Vector(0, 0, 1)), inf),
+                "Found a box behind the ray");
+        // TC05: The ray enters the box beyond the maximal distance
+        assertEquals(inf, BoundingBox.entryDistance(bounds, 0, new Ray(new Point(0.5, 0.5, 3), new Vector(0, 0, -1)), 1.5),
+                "Found a box beyond the maximal distance");
+        // TC06: A box in the middle of the array
+        double[] boxes = { 5, 5, 5, 6, 6, 6, 0, 0, 0, 1, 1, 1 };
+        assertEquals(1, BoundingBox.entryDistance(boxes, 6, new Ray(new Point(-1, 0.5, 0.5), new Vector(1, 0, 0)), inf),
+                DELTA, "Wrong entry distance of a box in the middle of the array");
+        // =============== Boundary Values Tests ==================
+        // TC11: The ray is parallel to a side of the box, on the side
+        assertEquals(1, BoundingBox.entryDistance(bounds, 0, new Ray(new Point(-1, 0, 0.5), new Vector(1, 0, 0)), inf),
+                DELTA, "Wrong entry distance along a side");
+        // TC12: The ray is parallel to a side of the box, out of the box
+        assertEquals(inf, BoundingBox.entryDistance(bounds, 0, new Ray(new Point(-1, -0.5, 0.5), new Vector(1, 0, 0)), inf),
+                "Found a box beside a parallel ray");
+        // TC13: The ray touches a corner of the box
+        assertEquals(1, BoundingBox.entryDistance(bounds, 0, new Ray(new Point(2, 1, 1), new Vector(-1, 0, 0)), inf),
+                DELTA, "Wrong entry distance at an edge");
+    }
+
+    /** Test method for {@link primitives.BoundingBox#intersects(Ray, double)}. */
+    @Test
+    void testIntersects() {
+        BoundingBox box = new BoundingBox(new Point(0, 0, 0), new Point(1, 1, 1));
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The ray enters the box before the maximal distance
+        assertTrue(box.intersects(new Ray(new Point(0.5, 0.5, 3), new Vector(0, 0, -1)), 2.5), "Missed the box");
+        // TC02: The ray enters the box after the maximal distance
+        assertFalse(box.intersects(new Ray(new Point(0.5, 0.5, 3), new Vector(0, 0, -1)), 1.5), "Found a far box");
+        // TC03: The ray goes away from the box
+        assertFalse(box.intersects(new Ray(new Point(0.5, 0.5, 3), new Vector(0, 0, 1))), "Found a box behind the ray");
+    }
+}
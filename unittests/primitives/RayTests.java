@@ -37,4 +37,26 @@ class RayTests {
         points = List.of(new Point(2, 2, 3), new Point(4, 2, 3), new Point(0, 0, 1));
         assertEquals(new Point(0, 0, 1), ray.findClosestPoint(points), "Bad findClosestPoint with last point in the list");
     }
+    @Test
+    void constructFromNumbers() {
+        Point head = new Point(1, 2, 3);
+        Vector n = new Vector(0, 0, 1);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The direction is on the side of the normal
+        assertEquals(new Ray(head, new Vector(1, 2, 2), n), new Ray(head, 1, 2, 2, n),
+                "Bad ray from numbers on the side of the normal");
+        // TC02: The direction is on the other side of the normal
+        Ray ray = new Ray(head, 1, 2, -2, n);
+        assertEquals(new Ray(head, new Vector(1, 2, -2), n), ray, "Bad ray from numbers against the normal");
+        assertEquals(new Point(1, 2, 2.9), ray.getPoint(0), "Bad head of a ray from numbers");
+        assertEquals(new Vector(1, 2, -2).normalize(), ray.getVector(), "Bad direction of a ray from numbers");
+        // =============== Boundary Values Tests ==================
+        // TC11: The direction is zero
+        assertThrows(IllegalArgumentException.class, () -> new Ray(head, 0, 0, 0, n), "Constructed a ray without direction");
+        // TC12: The numbers of the head and of a normalized direction are kept as they are
+        Ray copy = new Ray(ray.headX, ray.headY, ray.headZ, ray.dirX, ray.dirY, ray.dirZ);
+        assertEquals(ray, copy, "Bad ray from the numbers of its head and direction");
+        assertEquals(ray.invDirZ, copy.invDirZ, "Bad reciprocal direction of a ray from numbers");
+        assertEquals(ray.signZ, copy.signZ, "Bad direction sign of a ray from numbers");
+    }
 }
\ No newline at end of file
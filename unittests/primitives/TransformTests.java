@@ -0,0 +1,82 @@
+package unittests.primitives;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+/**
+ * Testing the affine transformations
+ */
+class TransformTests {
+    /** Delta value for accuracy when comparing the numbers of type 'double' */
+    private static final double DELTA = 0.000001;
+
+    /**
+     * Asserts that two points are equal up to {@link #DELTA}
+     * @param expected the expected point
+     * @param actual   the actual point
+     * @param message  the message of a failure
+     */
+    private static void assertPoint(Point expected, Point actual, String message) {
+        assertEquals(0, expected.distance(actual), DELTA, message);
+    }
+
+    /** Test method for {@link primitives.Transform#apply(Point)}. */
+    @Test
+    void testApply() {
+        Point p = new Point(1, 2, 3);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Translation
+        assertPoint(new Point(2, 2, 1), Transform.translation(new Vector(1, 0, -2)).apply(p), "Wrong translation");
+        // TC02: Scaling
+        assertPoint(new Point(2, -2, 9), Transform.scaling(2, -1, 3).apply(p), "Wrong scaling");
+        // TC03: Rotation around the Z axis
+        assertPoint(new Point(-2, 1, 3), Transform.rotation(Vector.AXIS_Z, 90).apply(p), "Wrong rotation");
+        // TC04: Scaling, then rotation, then translation
+        Transform combined = Transform.scaling(2).then(Transform.rotation(Vector.AXIS_Z, 90))
+                .then(Transform.translation(new Vector(0, 0, 1)));
+        assertPoint(new Point(-4, 2, 7), combined.apply(p), "Wrong combined transformation");
+        // TC05: Vectors are not translated
+        assertEquals(new Vector(1, 0, 0), Transform.translation(new Vector(5, 5, 5)).applyVector(Vector.AXIS_X),
+                "Translated a vector");
+        // =============== Boundary Values Tests ==================
+        // TC11: Scaling by zero
+        assertThrows(IllegalArgumentException.class, () -> Transform.scaling(1, 0, 1), "Scaling by zero");
+    }
+
+    /** Test method for {@link primitives.Transform#inverse()}. */
+    @Test
+    void testInverse() {
+        Transform transform = Transform.rotation(new Vector(1, 1, 0), 30).then(Transform.scaling(1, 2, 3))
+                .then(Transform.translation(new Vector(4, -5, 6)));
+        Point p = new Point(1, 2, 3);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The inverse transformation returns the point
+        assertPoint(p, transform.applyInverse(transform.apply(p)), "Wrong inverse transformation");
+        assertPoint(p, transform.inverse().apply(transform.apply(p)), "Wrong inverse");
+    }
+
+    /** Test method for {@link primitives.Transform#applyNormal(Vector)}. */
+    @Test
+    void testApplyNormal() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The normal stays perpendicular to the scaled plane x + y = 0
+        Transform scaling = Transform.scaling(4, 1, 1);
+        Vector tangent = scaling.applyVector(new Vector(1, -1, 0));
+        Vector normal = scaling.applyNormal(new Vector(1, 1, 0));
+        assertEquals(0, normal.dotProduct(tangent), DELTA, "The normal isn't perpendicular to the surface");
+        assertEquals(1, normal.length(), DELTA, "The normal isn't normalized");
+    }
+
+    /** Test method for {@link primitives.Transform#apply(BoundingBox)}. */
+    @Test
+    void testApplyBoundingBox() {
+        BoundingBox box = new BoundingBox(new Point(0, 0, 0), new Point(1, 1, 1));
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A rotated box grows to contain the rotated corners
+        BoundingBox rotated = Transform.rotation(Vector.AXIS_Z, 45).apply(box);
+        double half = Math.sqrt(0.5);
+        assertPoint(new Point(-half, 0, 0), rotated.min, "Wrong minimal corner");
+        assertPoint(new Point(half, 2 * half, 1), rotated.max, "Wrong maximal corner");
+    }
+}
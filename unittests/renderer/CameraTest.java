@@ -2,11 +2,24 @@ package renderer;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
+import geometries.Geometry;
+import geometries.Triangle;
 import primitives.*;
 import renderer.Camera;
+import scene.Scene;
 
 /**
  * Testing Camera Class
@@ -89,4 +102,186 @@ class CameraTest {
       // BV01: set to a target on Y-axis without up
       assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setDirection(new Point(0, 10, 0)).build());
    }
+
+   /**
+    * Test method for {@link renderer.Camera.Builder#setAdaptiveSuperSampling(int, double)}.
+    */
+   @Test
+   void testAdaptiveSuperSampling() {
+      AtomicInteger traced = new AtomicInteger();
+      Scene scene = new Scene("Flat scene");
+      // a geometry which is never hit - it counts the rays, and the image is the flat background
+      scene.geometries.add(new Geometry() {
+         @Override
+         public Vector getNormal(Point point) { return Vector.AXIS_Z; }
+
+         @Override
+         protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+            traced.incrementAndGet();
+            return null;
+         }
+      });
+      cameraBuilder.setDirection(new Point(0, 0, -1), Vector.AXIS_Y) //
+              .setVpSize(8, 8).setResolution(16, 16) //
+              .setRayTracer(scene, RayTracerType.SIMPLE) //
+              .setAdaptiveSuperSampling(3, 0);
+      // every row of pixels traces its top and bottom corners, and a tile traces all its corners once
+      int rowCorners  = 16 * 17 * 2;
+      int tileCorners = 4 * 9 * 9;
+
+      // ============ Equivalence Partitions Tests ==============
+      // EP01: a flat image isn't subdivided in any multi-threading mode - only the corners are traced
+      int[] modes = { 0, -1, 2, Camera.VIRTUAL_THREADS };
+      for (int threads : modes) {
+         traced.set(0);
+         cameraBuilder.setMultithreading(threads).setTileSize(0).build().renderImage();
+         assertEquals(rowCorners, traced.get(), "Wrong amount of rays in multi-threading mode " + threads);
+      }
+      // EP02: the tiles share the corners of their pixels
+      for (int threads : new int[] { 2, Camera.VIRTUAL_THREADS }) {
+         traced.set(0);
+         cameraBuilder.setMultithreading(threads).setTileSize(8).build().renderImage();
+         assertEquals(tileCorners, traced.get(), "Wrong amount of rays with tiles in multi-threading mode " + threads);
+      }
+   }
+
+   /**
+    * Test method for {@link renderer.Camera.Builder#setAdaptiveSuperSampling(int, double)}
+    * over a high contrast edge.
+    */
+   @Test
+   void testAdaptiveSuperSamplingEdge() {
+      // the samples traced, as their positions on the view plane in 1/64 pixels
+      List<Long> samples = Collections.synchronizedList(new ArrayList<>());
+      Scene scene = new Scene("Edge scene");
+      // a white half plane whose vertical edge crosses the third column of pixels at 0.3 of its width,
+      // and a geometry which is never hit - it records the rays
+      scene.geometries.add(new Triangle(new Point(3, -1000, -100), new Point(1000, 0, -100), new Point(3, 1000, -100))
+              .setEmission(new Color(255, 255, 255)), new Geometry() {
+         @Override
+         public Vector getNormal(Point point) { return Vector.AXIS_Z; }
+
+         @Override
+         protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+            long x = Math.round(ray.dirX / -ray.dirZ * 10 * 64), y = Math.round(ray.dirY / -ray.dirZ * 10 * 64);
+            samples.add(x << 32 | y & 0xFFFFFFFFL);
+            return null;
+         }
+      });
+      Camera camera = cameraBuilder.setDirection(new Point(0, 0, -1), Vector.AXIS_Y) //
+              .setVpSize(4, 4).setResolution(4, 4) //
+              .setRayTracer(scene, RayTracerType.SIMPLE) //
+              .setAdaptiveSuperSampling(3, 10) //
+              .setMultithreading(2).setTileSize(4) //
+              .build().renderImage();
+
+      // ============ Equivalence Partitions Tests ==============
+      // EP01: the pixels crossed by the edge are subdivided down to 1/8 pixel - the sub-pixel crossed by
+      // the edge is half white, so the pixel is 5.5/8 white (the coverage is 0.7, within half a sub-pixel)
+      for (int i = 0; i < 4; ++i) {
+         assertEquals(0, camera.getPixel(0, i), "The left pixel isn't black");
+         assertEquals(0, camera.getPixel(1, i), "The pixel left to the edge isn't black");
+         assertEquals(255 * 5.5 / 8, camera.getPixel(2, i) & 0xFF, 1, "Wrong color of the pixel of the edge");
+         assertEquals(0xFFFFFF, camera.getPixel(3, i), "The pixel right to the edge isn't white");
+      }
+      // EP02: the samples around the edge are 1/8 pixel apart, and no sample is closer
+      for (long sample : samples) {
+         assertEquals(0, (sample >> 32) % 8, "A sub-pixel was subdivided beyond the maximal depth");
+         assertEquals(0, (int) sample % 8, "A sub-pixel was subdivided beyond the maximal depth");
+      }
+      assertTrue(samples.contains(16L << 32 | 0) && samples.contains(24L << 32 | 0),
+              "The sub-pixels of the edge weren't subdivided to the maximal depth");
+      // EP03: the corners and the edge middles shared by neighboring (sub-)pixels are traced once
+      assertEquals(new HashSet<>(samples).size(), samples.size(), "A sample was traced twice");
+   }
+
+   /**
+    * Test method for {@link renderer.Camera#renderImage()} with
+    * {@link renderer.Camera#VIRTUAL_THREADS}.
+    */
+   @Test
+   void testRenderImageVirtualThreads() {
+      AtomicInteger traced = new AtomicInteger();
+      IllegalStateException failure = new IllegalStateException("Tile failed");
+      Scene scene = new Scene("Failing scene");
+      scene.geometries.add(new Geometry() {
+         @Override
+         public Vector getNormal(Point point) { return Vector.AXIS_Z; }
+
+         @Override
+         protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+            traced.incrementAndGet();
+            throw failure;
+         }
+      });
+      Camera camera = cameraBuilder.setDirection(new Point(0, 0, -1), Vector.AXIS_Y) //
+              .setVpSize(8, 8).setResolution(64, 64) //
+              .setRayTracer(scene, RayTracerType.SIMPLE) //
+              .setMultithreading(Camera.VIRTUAL_THREADS).setTileSize(1) //
+              .build();
+
+      // ============ Equivalence Partitions Tests ==============
+      // EP01: the failure of a tile is rethrown, and the tiles which haven't started are skipped
+      assertSame(failure, assertThrows(IllegalStateException.class, camera::renderImage), "The failure wasn't rethrown");
+      assertTrue(traced.get() < 64 * 64 / 2, "The tiles kept rendering after the failure");
+
+      // EP02: the failure of a tile interrupts the running tiles
+      AtomicInteger calls = new AtomicInteger();
+      AtomicInteger interrupted = new AtomicInteger();
+      CountDownLatch blocked = new CountDownLatch(3);
+      Scene blocking = new Scene("Blocking scene");
+      blocking.geometries.add(new Geometry() {
+         @Override
+         public Vector getNormal(Point point) { return Vector.AXIS_Z; }
+
+         @Override
+         protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+            try {
+               if (calls.getAndIncrement() > 0) {
+                  blocked.countDown();
+                  Thread.sleep(60_000); // until the failure interrupts the tile
+               } else if (blocked.await(60, TimeUnit.SECONDS))
+                  throw failure;
+            } catch (InterruptedException e) {
+               interrupted.incrementAndGet();
+            }
+            return null;
+         }
+      });
+      Camera stuck = cameraBuilder.setResolution(2, 2).setRayTracer(blocking, RayTracerType.SIMPLE).build();
+      long start = System.nanoTime();
+      assertSame(failure, assertThrows(IllegalStateException.class, stuck::renderImage), "The failure wasn't rethrown");
+      assertEquals(3, interrupted.get(), "The running tiles weren't interrupted");
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30), "The render waited for the running tiles");
+
+      // EP03: no more tiles than the limit are rendered at once
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger maxRunning = new AtomicInteger();
+      Scene slow = new Scene("Slow scene");
+      slow.geometries.add(new Geometry() {
+         @Override
+         public Vector getNormal(Point point) { return Vector.AXIS_Z; }
+
+         @Override
+         protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+               Thread.sleep(2);
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return null;
+         }
+      });
+      cameraBuilder.setResolution(8, 8).setRayTracer(slow, RayTracerType.SIMPLE).setVirtualThreadsLimit(2).build()
+              .renderImage();
+      assertTrue(maxRunning.get() <= 2, maxRunning.get() + " tiles were rendered at once");
+
+      // =============== Boundary Values Tests ==================
+      // BV01: below the virtual threads parameter
+      assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setMultithreading(Camera.VIRTUAL_THREADS - 1));
+      // BV02: negative limit of tiles rendered at once
+      assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setVirtualThreadsLimit(-1));
+   }
 }
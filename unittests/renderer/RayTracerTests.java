@@ -0,0 +1,171 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Testing the ray tracers - the accelerated and batched ray tracers must render the same
+ * images as the simple ray tracer, and the secondary rays must be cut where configured
+ */
+class RayTracerTests {
+   /** Default constructor to satisfy JavaDoc generator */
+   RayTracerTests() { /* to satisfy JavaDoc generator */ }
+
+   /** The resolution of the compared images */
+   private static final int RESOLUTION = 100;
+
+   /**
+    * Creates a camera builder over the compared scene - the two spheres on mirrors at a
+    * low resolution
+    * @param scene the scene
+    * @param type  the ray tracer type
+    * @return the camera builder
+    */
+   private static Camera.Builder cameraBuilder(Scene scene, RayTracerType type) {
+      return RenderScenes.twoSpheresOnMirrors(scene, type).setResolution(RESOLUTION, RESOLUTION);
+   }
+
+   /**
+    * Asserts that two cameras rendered the same image
+    * @param expected the camera of the expected image
+    * @param actual   the camera of the actual image
+    * @param message  the message of a failure
+    */
+   private static void assertSameImage(Camera expected, Camera actual, String message) {
+      for (int i = 0; i < RESOLUTION; ++i)
+         for (int j = 0; j < RESOLUTION; ++j)
+            assertEquals(expected.getPixel(j, i), actual.getPixel(j, i), message + " at pixel " + j + "," + i);
+   }
+
+   /**
+    * Builds a scene of a mirror facing the camera rays, and a red sphere behind the camera
+    * which is seen only in the mirror
+    * @param  mirror the material of the mirror
+    * @return        the scene
+    */
+   private static Scene mirrorScene(Material mirror) {
+      Scene scene = new Scene("Mirror scene");
+      scene.geometries.add(new Plane(new Point(0, 0, -100), Vector.AXIS_Z).setMaterial(mirror), //
+              new Sphere(new Point(0, 0, 1000), 800d).setEmission(new Color(200, 0, 0)));
+      return scene;
+   }
+
+   /**
+    * Creates a camera ray of the mirror scene
+    * @param  n the number of the ray, 0 to 399
+    * @return   the ray
+    */
+   private static Ray mirrorRay(int n) {
+      return new Ray(Point.ZERO, new Vector((n % 20 - 9.5) / 100, (n / 20 - 9.5) / 100, -1));
+   }
+
+   /** Test method for {@link primitives.Material#setMaxDepth(int)}. */
+   @Test
+   void testMaxDepth() {
+      Ray ray = mirrorRay(210);
+      // ============ Equivalence Partitions Tests ==============
+      // TC01: The mirror reflects the sphere
+      assertEquals(new Color(200, 0, 0).getRGB(),
+              new SimpleRayTracer(mirrorScene(new Material().setKR(1))).traceRay(ray).getRGB(),
+              "The mirror didn't reflect");
+      // TC02: The mirror under its maximal depth reflects the sphere
+      assertEquals(new Color(200, 0, 0).getRGB(),
+              new SimpleRayTracer(mirrorScene(new Material().setKR(1).setMaxDepth(1))).traceRay(ray).getRGB(),
+              "The mirror didn't reflect under its maximal depth");
+
+      // =============== Boundary Values Tests ==================
+      // TC11: The mirror with maximal depth 0 doesn't spawn reflection rays
+      assertEquals(Color.BLACK.getRGB(),
+              new SimpleRayTracer(mirrorScene(new Material().setKR(1).setMaxDepth(0))).traceRay(ray).getRGB(),
+              "The mirror reflected beyond its maximal depth");
+   }
+
+   /** Test method for {@link renderer.SimpleRayTracer#setRussianRoulette(double)}. */
+   @Test
+   void testRussianRoulette() {
+      Scene scene = mirrorScene(new Material().setKR(0.3));
+      SimpleRayTracer plain = new SimpleRayTracer(scene);
+      SimpleRayTracer roulette = new SimpleRayTracer(scene).setRussianRoulette(1);
+      SimpleRayTracer again = new SimpleRayTracer(scene).setRussianRoulette(1);
+      // ============ Equivalence Partitions Tests ==============
+      // TC01: Without the roulette every reflection is traced and attenuated
+      // TC02: The roulette cuts about 70% of the reflections, and the surviving reflections
+      // are divided by their survival probability
+      // TC03: The roulette decisions are the same in every run
+      int cut = 0;
+      for (int n = 0; n < 400; ++n) {
+         Ray ray = mirrorRay(n);
+         assertEquals(new Color(60, 0, 0).getRGB(), plain.traceRay(ray).getRGB(), "Wrong attenuated reflection");
+         int color = roulette.traceRay(ray).getRGB();
+         if (color == Color.BLACK.getRGB()) ++cut;
+         else assertEquals(new Color(200, 0, 0).getRGB(), color, "Wrong surviving reflection");
+         assertEquals(color, again.traceRay(ray).getRGB(), "The roulette isn't reproducible");
+      }
+      assertTrue(cut > 240 && cut < 320, "The roulette cut " + cut + " reflections of 400 instead of about 280");
+
+      // =============== Boundary Values Tests ==================
+      // TC11: Reflections above the threshold always survive
+      SimpleRayTracer low = new SimpleRayTracer(scene).setRussianRoulette(0.3);
+      for (int n = 0; n < 400; ++n)
+         assertEquals(new Color(60, 0, 0).getRGB(), low.traceRay(mirrorRay(n)).getRGB(), "Cut a reflection above the threshold");
+   }
+
+   /**
+    * Produce the picture of the two spheres on the mirrors with the secondary rays
+    * terminated by Russian roulette
+    */
+   @Test
+   void twoSpheresOnMirrorsRussianRoulette() {
+      RenderScenes.twoSpheresOnMirrors(RayTracerType.SIMPLE) //
+              .setRussianRoulette(0.1) //
+              .build() //
+              .renderImage() //
+              .writeToImage("reflectionTwoSpheresMirroredRussianRoulette");
+   }
+
+   /**
+    * Produce the picture of the two spheres on the mirrors by the wavefront ray
+    * tracer
+    */
+   @Test
+   void twoSpheresOnMirrorsWavefront() {
+      RenderScenes.twoSpheresOnMirrors(RayTracerType.WAVEFRONT) //
+              .setMultithreading(-1) //
+              .build() //
+              .renderImage() //
+              .writeToImage("reflectionTwoSpheresMirroredWavefront");
+   }
+
+   /** Test method for {@link renderer.WavefrontRayTracer#traceRays(RayBatch, boolean)}. */
+   @Test
+   void testWavefront() {
+      Scene scene = new Scene("Wavefront scene");
+      RenderScenes.addTwoSpheresOnMirrors(scene);
+      Camera simple = cameraBuilder(scene, RayTracerType.SIMPLE).build().renderImage();
+      // ============ Equivalence Partitions Tests ==============
+      // TC01: The wavefront renders the image of the simple ray tracer
+      assertSameImage(simple, cameraBuilder(scene, RayTracerType.WAVEFRONT).build().renderImage(),
+              "The wavefront rendered a different image");
+      // TC02: The stages of the wavefront run in parallel
+      assertSameImage(simple, cameraBuilder(scene, RayTracerType.WAVEFRONT).setMultithreading(-1).build().renderImage(),
+              "The parallel wavefront rendered a different image");
+   }
+
+   /** Test method for {@link renderer.GridRayTracer#traceRay(Ray)}. */
+   @Test
+   void testGrid() {
+      Scene scene = new Scene("Grid scene");
+      // ============ Equivalence Partitions Tests ==============
+      // TC01: The grid is built over the geometries added after the ray tracer was set
+      Camera.Builder grid = cameraBuilder(scene, RayTracerType.GRID);
+      RenderScenes.addTwoSpheresOnMirrors(scene);
+      Camera simple = cameraBuilder(scene, RayTracerType.SIMPLE).build().renderImage();
+      assertSameImage(simple, grid.build().renderImage(), "The grid rendered a different image");
+   }
+}
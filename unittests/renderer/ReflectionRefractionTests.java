@@ -50,29 +50,7 @@ class ReflectionRefractionTest {
    /** Produce a picture of a sphere lighted by a spot light */
    @Test
    void twoSpheresOnMirrors() {
-      scene.geometries.add( //
-              new Sphere(new Point(-950, -900, -1000), 400d).setEmission(new Color(0, 50, 100)) //
-                      .setMaterial(new Material().setKD(0.25).setKS(0.25).setShininess(20) //
-                              .setKT(new Double3(0.5, 0, 0))), //
-              new Sphere(new Point(-950, -900, -1000), 200d).setEmission(new Color(100, 50, 20)) //
-                      .setMaterial(new Material().setKD(0.25).setKS(0.25).setShininess(20)), //
-              new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500), //
-                      new Point(670, 670, 3000)) //
-                      .setEmission(new Color(20, 20, 20)) //
-                      .setMaterial(new Material().setKR(1)), //
-              new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500), //
-                      new Point(-1500, -1500, -2000)) //
-                      .setEmission(new Color(20, 20, 20)) //
-                      .setMaterial(new Material().setKR(new Double3(0.5, 0, 0.4))));
-      scene.setAmbientLight(new AmbientLight(new Color(26, 26, 26)));
-      scene.lights.add(new SpotLight(new Color(1020, 400, 400), new Point(-750, -750, -150), new Vector(-1, -1, -4)) //
-              .setKl(0.00001).setKq(0.000005));
-
-      cameraBuilder
-              .setLocation(new Point(0, 0, 10000)) //
-              .setDirection(Point.ZERO, Vector.AXIS_Y) //
-              .setVpDistance(10000).setVpSize(2500, 2500) //
-              .setResolution(500, 500) //
+      RenderScenes.twoSpheresOnMirrors(RayTracerType.SIMPLE) //
               .build() //
               .renderImage() //
               .writeToImage("reflectionTwoSpheresMirrored");
@@ -85,24 +63,7 @@ class ReflectionRefractionTest {
     */
    @Test
    void trianglesTransparentSphere() {
-      scene.geometries.add(
-              new Triangle(new Point(-150, -150, -115), new Point(150, -150, -135),
-                      new Point(75, 75, -150))
-                      .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(60)),
-              new Triangle(new Point(-150, -150, -115), new Point(-70, 70, -140), new Point(75, 75, -150))
-                      .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(60)),
-              new Sphere(new Point(60, 50, -50), 30d).setEmission(new Color(BLUE))
-                      .setMaterial(new Material().setKD(0.2).setKS(0.2).setShininess(30).setKT(0.6)));
-      scene.setAmbientLight(new AmbientLight(new Color(38, 38, 38)));
-      scene.lights.add(
-              new SpotLight(new Color(700, 400, 400), new Point(60, 50, 0), new Vector(0, 0, -1))
-                      .setKl(4E-5).setKq(2E-7));
-
-      cameraBuilder
-              .setLocation(new Point(0, 0, 1000)) //
-              .setDirection(Point.ZERO, Vector.AXIS_Y) //
-              .setVpDistance(1000).setVpSize(200, 200) //
-              .setResolution(600, 600) //
+      RenderScenes.trianglesTransparentSphere(RayTracerType.SIMPLE) //
               .build() //
               .renderImage() //
               .writeToImage("refractionShadow");
@@ -0,0 +1,55 @@
+package renderer;
+
+import java.util.function.Supplier;
+
+import unittests.benchmark.Benchmark;
+
+/**
+ * End to end benchmarks of rendering the teapot and the reflection and refraction
+ * test scenes in each multi-threading mode of the camera. The scene and the camera
+ * are prepared anew for every render, out of the measured time, and the image is
+ * not written.<br>
+ * Run by {@code java renderer.RenderBenchmarks}, see {@link Benchmark} for the
+ * options.
+ */
+final class RenderBenchmarks {
+    /** The tile edge length of the tile based rendering */
+    private static final int TILE_SIZE = 16;
+
+    /** Don't let anyone instantiate this class */
+    private RenderBenchmarks() {}
+
+    /**
+     * Measures the rendering of a scene in all the multi-threading modes
+     * @param benchmark the harness
+     * @param name      the name of the scene
+     * @param scene     prepares the camera builder of the scene
+     */
+    private static void measure(Benchmark benchmark, String name, Supplier<Camera.Builder> scene) {
+        benchmark.measure(name + "[threads=0]", 1, () -> scene.get().setMultithreading(0).build(), Camera::renderImage);
+        benchmark.measure(name + "[stream]", 1, () -> scene.get().setMultithreading(-1).build(), Camera::renderImage);
+        benchmark.measure(name + "[threads]", 1, () -> scene.get().setMultithreading(-2).build(), Camera::renderImage);
+        benchmark.measure(name + "[tiles]", 1,
+                () -> scene.get().setMultithreading(-2).setTileSize(TILE_SIZE).build(), Camera::renderImage);
+        benchmark.measure(name + "[virtual]", 1,
+                () -> scene.get().setMultithreading(Camera.VIRTUAL_THREADS).setTileSize(TILE_SIZE).build(), Camera::renderImage);
+    }
+
+    /**
+     * Runs the benchmarks
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        Benchmark benchmark = new Benchmark(1, 3, 0);
+        measure(benchmark, "render.teapot", () -> RenderScenes.teapot(RayTracerType.SIMPLE).enableBVH());
+        measure(benchmark, "render.teapot.linearBVH", () -> RenderScenes.teapot(RayTracerType.SIMPLE).enableLinearBVH());
+        measure(benchmark, "render.twoSpheresOnMirrors", () -> RenderScenes.twoSpheresOnMirrors(RayTracerType.SIMPLE));
+        benchmark.measure("render.twoSpheresOnMirrors[roulette]", 1,
+                () -> RenderScenes.twoSpheresOnMirrors(RayTracerType.SIMPLE).setRussianRoulette(0.1).build(),
+                Camera::renderImage);
+        measure(benchmark, "render.trianglesTransparentSphere",
+                () -> RenderScenes.trianglesTransparentSphere(RayTracerType.SIMPLE));
+        measure(benchmark, "render.twoSpheresOnMirrors.wavefront",
+                () -> RenderScenes.twoSpheresOnMirrors(RayTracerType.WAVEFRONT));
+    }
+}
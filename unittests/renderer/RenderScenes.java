@@ -0,0 +1,117 @@
+package renderer;
+
+import static java.awt.Color.BLUE;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Scenes shared by the rendering tests and the rendering benchmarks - the teapot (whose
+ * model is kept in its test) and the reflection and refraction scenes. Every call prepares a new scene with a camera
+ * builder over it, without multi-threading and without an acceleration structure.
+ */
+public final class RenderScenes {
+    /** Don't let anyone instantiate this class */
+    private RenderScenes() {}
+
+    /**
+     * Add the geometries and the lights of the scene of two spheres on mirrors
+     * @param scene the scene
+     */
+    public static void addTwoSpheresOnMirrors(Scene scene) {
+        scene.geometries.add( //
+                new Sphere(new Point(-950, -900, -1000), 400d).setEmission(new Color(0, 50, 100)) //
+                        .setMaterial(new Material().setKD(0.25).setKS(0.25).setShininess(20) //
+                                .setKT(new Double3(0.5, 0, 0))), //
+                new Sphere(new Point(-950, -900, -1000), 200d).setEmission(new Color(100, 50, 20)) //
+                        .setMaterial(new Material().setKD(0.25).setKS(0.25).setShininess(20)), //
+                new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500), //
+                        new Point(670, 670, 3000)) //
+                        .setEmission(new Color(20, 20, 20)) //
+                        .setMaterial(new Material().setKR(1)), //
+                new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500), //
+                        new Point(-1500, -1500, -2000)) //
+                        .setEmission(new Color(20, 20, 20)) //
+                        .setMaterial(new Material().setKR(new Double3(0.5, 0, 0.4))));
+        scene.setAmbientLight(new AmbientLight(new Color(26, 26, 26)));
+        scene.lights.add(new SpotLight(new Color(1020, 400, 400), new Point(-750, -750, -150), new Vector(-1, -1, -4)) //
+                .setKl(0.00001).setKq(0.000005));
+    }
+
+    /**
+     * Prepare the camera of the scene of two spheres on mirrors over a given scene, which
+     * may be filled later by {@link #addTwoSpheresOnMirrors(Scene)}
+     * @param  scene the scene
+     * @param  type  the ray tracer type
+     * @return       camera builder looking at the scene
+     */
+    public static Camera.Builder twoSpheresOnMirrors(Scene scene, RayTracerType type) {
+        return Camera.getBuilder() //
+                .setRayTracer(scene, type) //
+                .setLocation(new Point(0, 0, 10000)) //
+                .setDirection(Point.ZERO, Vector.AXIS_Y) //
+                .setVpDistance(10000).setVpSize(2500, 2500) //
+                .setResolution(500, 500);
+    }
+
+    /**
+     * Prepare the scene of two spheres on mirrors
+     * @param  type the ray tracer type
+     * @return      camera builder with all the data of the scene
+     */
+    public static Camera.Builder twoSpheresOnMirrors(RayTracerType type) {
+        Scene scene = new Scene("Test scene");
+        addTwoSpheresOnMirrors(scene);
+        return twoSpheresOnMirrors(scene, type);
+    }
+
+    /**
+     * Prepare the scene of two triangles lighted by a spot light with a partially
+     * transparent sphere producing partial shadow
+     * @param  type the ray tracer type
+     * @return      camera builder with all the data of the scene
+     */
+    public static Camera.Builder trianglesTransparentSphere(RayTracerType type) {
+        Scene scene = new Scene("Test scene");
+        scene.geometries.add(
+                new Triangle(new Point(-150, -150, -115), new Point(150, -150, -135),
+                        new Point(75, 75, -150))
+                        .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(60)),
+                new Triangle(new Point(-150, -150, -115), new Point(-70, 70, -140), new Point(75, 75, -150))
+                        .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(60)),
+                new Sphere(new Point(60, 50, -50), 30d).setEmission(new Color(BLUE))
+                        .setMaterial(new Material().setKD(0.2).setKS(0.2).setShininess(30).setKT(0.6)));
+        scene.setAmbientLight(new AmbientLight(new Color(38, 38, 38)));
+        scene.lights.add(
+                new SpotLight(new Color(700, 400, 400), new Point(60, 50, 0), new Vector(0, 0, -1))
+                        .setKl(4E-5).setKq(2E-7));
+
+        return Camera.getBuilder() //
+                .setRayTracer(scene, type) //
+                .setLocation(new Point(0, 0, 1000)) //
+                .setDirection(Point.ZERO, Vector.AXIS_Y) //
+                .setVpDistance(1000).setVpSize(200, 200) //
+                .setResolution(600, 600);
+    }
+
+    /**
+     * Prepare the scene of the teapot - a triangle mesh with bubbles rising from it
+     * @param  type the ray tracer type
+     * @return      camera builder with all the data of the scene
+     */
+    public static Camera.Builder teapot(RayTracerType type) {
+        Scene scene = new Scene("Test scene");
+        TeapotTest.addTeapotToScene(scene);
+        scene.geometries.add(TeapotTest.bubbles());
+
+        scene.lights.add(new PointLight(new Color(500, 500, 500), new Point(100, 0, -100)).setKq(0.000001));
+
+        return Camera.getBuilder() //
+                .setResolution(1000, 1000) //
+                .setRayTracer(scene, type) //
+                .setLocation(new Point(0, 0, -1000)).setDirection(Point.ZERO, Vector.AXIS_Y) //
+                .setVpDistance(1000).setVpSize(200, 200);
+    }
+}
@@ -268,4 +268,40 @@ class RenderTests {
       camera.renderImage()
               .writeToImage("aight");
    }
+
+   /**
+    * Produce the picture of the two triangles with the partially transparent
+    * sphere, anti-aliased by adaptive super sampling
+    */
+   @Test
+   void trianglesTransparentSphereSuperSampling() {
+      RenderScenes.trianglesTransparentSphere(RayTracerType.SIMPLE) //
+              .setAdaptiveSuperSampling(3, 10) //
+              .build() //
+              .renderImage() //
+              .writeToImage("refractionShadowSuperSampling");
+   }
+
+   /**
+    * Produce a forest of 10000 instances of one shared tree mesh under a top level
+    * Bounding Volume Hierarchy
+    */
+   @Test
+   void instancesForest() {
+      Geometry tree = new TriangleMesh(new double[] { 0, 3, 0, -1, 0, -1, 1, 0, -1, 1, 0, 1, -1, 0, 1 },
+              new int[] { 0, 1, 2, 0, 2, 3, 0, 3, 4, 0, 4, 1, 1, 3, 2, 1, 4, 3 })
+              .setEmission(new Color(10, 60, 10)).setMaterial(new Material().setKD(0.6).setKS(0.2).setShininess(30));
+      Scene scene = new Scene("Instances forest").setAmbientLight(new AmbientLight(new Color(40, 40, 40)))
+              .setBackground(new Color(150, 190, 230));
+      Random rand = new Random(21);
+      for (int i = 0; i < 10000; i++)
+         scene.geometries.add(new Instance(tree, Transform.scaling(0.5 + rand.nextDouble(), 0.6 + rand.nextDouble() * 1.5, 0.5 + rand.nextDouble())
+                 .then(Transform.rotation(Vector.AXIS_Y, rand.nextDouble() * 90))
+                 .then(Transform.translation(new Vector(rand.nextDouble() * 400 - 200, 0, -10 - rand.nextDouble() * 400)))));
+      scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Y).setEmission(new Color(60, 40, 20)));
+      scene.lights.add(new DirectionalLight(new Color(200, 200, 160), new Vector(1, -1, -1)));
+      camera.setLocation(new Point(0, 20, 40)).setDirection(new Point(0, 0, -150), Vector.AXIS_Y)
+              .setVpDistance(400).setResolution(500, 500).setRayTracer(scene, RayTracerType.SIMPLE).enableBVH().build()
+              .renderImage().writeToImage("instances forest");
+   }
 }
@@ -1,10 +1,12 @@
 package renderer;
 
 import static java.awt.Color.BLUE;
+import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.Test;
 
 import geometries.*;
+import geometries.Intersectable.Intersection;
 import lighting.*;
 import primitives.*;
 import scene.Scene;
@@ -121,4 +123,80 @@ class ShadowTest {
               .writeToImage("shadowTrianglesSphere");
    }
 
+   /**
+    * Produce a picture of a two triangles lighted by a spot light with a Sphere
+    * producing a soft shadow, sampled adaptively, and check that the samples are
+    * traced only in the penumbra
+    */
+   @Test
+   void trianglesSphereAdaptiveSoftShadow() {
+      scene.geometries //
+              .add( //
+                      new Triangle(new Point(-150, -150, -115), new Point(150, -150, -135), new Point(75, 75, -150)) //
+                              .setMaterial(new Material().setKS(0.8).setShininess(60)), //
+                      new Triangle(new Point(-150, -150, -115), new Point(-70, 70, -140), new Point(75, 75, -150)) //
+                              .setMaterial(new Material().setKS(0.8).setShininess(60)), //
+                      new Sphere(new Point(0, 0, -11), 30d) //
+                              .setEmission(new Color(BLUE)) //
+                              .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(30)) //
+              );
+      scene.setAmbientLight(new AmbientLight(new Color(38, 38, 38)));
+      // the light counts the probe rays and the samples traced towards it
+      int[] probes = { 0 }, samples = { 0 };
+      SpotLight spot = new SpotLight(new Color(700, 400, 400), new Point(40, 40, 115), new Vector(-1, -1, -4)) {
+         @Override
+         public boolean forEachProbe(Point point, SampleVisitor visitor) {
+            return super.forEachProbe(point, (x, y, z) -> {
+               ++probes[0];
+               return visitor.visit(x, y, z);
+            });
+         }
+
+         @Override
+         public boolean forEachSample(Point point, SampleVisitor visitor) {
+            return super.forEachSample(point, (x, y, z) -> {
+               ++samples[0];
+               return visitor.visit(x, y, z);
+            });
+         }
+      }.setKl(4E-4).setKq(2E-5);
+      spot.setSoftShadow(10, 8, 100);
+      scene.lights.add(spot);
+
+      // scan the triangles across the shadow of the sphere, from the lit side through the umbra to the lit side
+      SimpleRayTracer tracer = new SimpleRayTracer(scene);
+      Point location = new Point(0, 0, 1000);
+      int lit = 0, shadowed = 0, penumbra = 0;
+      for (double s = -60; s <= 100; s += 0.5) {
+         Ray ray = new Ray(location, new Point(-38 + s, -38 - s, -130).subtract(location));
+         Intersection intersection = tracer.findClosestIntersection(ray);
+         if (intersection == null || !tracer.preprocessIntersection(intersection, ray.getVector())
+             || !tracer.setLightSource(intersection, spot))
+            continue;
+         probes[0] = samples[0] = 0;
+         Double3 ktr = tracer.transparencySoftShadows(intersection);
+         if (samples[0] == 0) {
+            // fully lit and fully shadowed points stop after the probe rays
+            assertEquals(8, probes[0], "Wrong amount of probe rays at " + intersection.point);
+            if (ktr.equals(Double3.ONE)) ++lit;
+            else if (ktr.equals(Double3.ZERO)) ++shadowed;
+            else fail("Partial shadow without samples at " + intersection.point);
+         } else {
+            // penumbra points, where the probe rays disagree, use all the samples
+            assertTrue(probes[0] <= 8, "Too many probe rays at " + intersection.point);
+            assertEquals(100, samples[0], "Wrong amount of samples at " + intersection.point);
+            ++penumbra;
+         }
+      }
+      assertTrue(lit > 0, "No fully lit points");
+      assertTrue(shadowed > 0, "No fully shadowed points");
+      assertTrue(penumbra > 0, "No penumbra points");
+
+      camera//
+              .setResolution(600, 600) //
+              .build() //
+              .renderImage() //
+              .writeToImage("shadowTrianglesSphereAdaptiveSoftShadow");
+   }
+
 }
\ No newline at end of file
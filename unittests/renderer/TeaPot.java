@@ -8,7 +8,6 @@ import org.junit.jupiter.api.*;
 import static java.lang.Math.*;
 
 import geometries.*;
-import lighting.PointLight;
 import primitives.*;
 import renderer.*;
 import scene.Scene;
@@ -63,25 +62,8 @@ class TeapotTest {
      * @return camera builder with all the data for the test
      */
     Camera.Builder prepareTeapot() {
-        Scene scene = new Scene("Test scene");
-        addTeapotToScene(scene);
-
-        if (bubbles == null) {
-            setCone(90., 30., 0.2, 0.3, 70.);
-            setBubbleSize(0.1, 1.);
-            setBubbleMaterial(0.0, 0.1, 0.2, 0.1, 0.);
-            prepareBubbles(400);
-        }
-        scene.geometries.add(bubbles);
-
-        scene.lights.add(new PointLight(new Color(500, 500, 500), new Point(100, 0, -100)).setKq(0.000001));
-
-        return Camera.getBuilder() //
-                .setResolution(1000, 1000) //
+        return RenderScenes.teapot(RayTracerType.SIMPLE) //
                 // .setResolution(1, 1) //
-                .setRayTracer(scene, RayTracerType.SIMPLE) //
-                .setLocation(new Point(0, 0, -1000)).setDirection(Point.ZERO, Vector.AXIS_Y) //
-                .setVpDistance(1000).setVpSize(200, 200) //
                 // .setMultithreading(-3) // fail - paging file size
                 // .setMultithreading(-2) // 9.3
                 // .setMultithreading(-1) // 9.6
@@ -638,7 +620,7 @@ class TeapotTest {
      * Produce a scene with a 3D model of the teapot
      * @param scene the scene data container
      */
-    private void addTeapotToScene(Scene scene) {
+    static void addTeapotToScene(Scene scene) {
         scene.geometries.add( //
                 new Triangle(points[7], points[6], points[1]).setEmission(color).setMaterial(material), //
                 new Triangle(points[1], points[2], points[7]).setEmission(color).setMaterial(material), //
@@ -1734,4 +1716,18 @@ class TeapotTest {
             bubbles.add(getRandomBubble(random(0, maxConeHeight)));
         }
     }
+
+    /**
+     * Get the bubbles rising from the teapot, they are generated at the first call
+     * @return composite geometry containing the bubbles
+     */
+    static Geometries bubbles() {
+        if (bubbles == null) {
+            setCone(90., 30., 0.2, 0.3, 70.);
+            setBubbleSize(0.1, 1.);
+            setBubbleMaterial(0.0, 0.1, 0.2, 0.1, 0.);
+            prepareBubbles(400);
+        }
+        return bubbles;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the tile scheduler of the multi-threaded rendering
+ */
+class TileManagerTest {
+   /** Default constructor to satisfy JavaDoc generator */
+   TileManagerTest() { /* to satisfy JavaDoc generator */ }
+
+   /**
+    * Claims all the tiles of a tile manager by workers running in parallel, and counts
+    * how many times every pixel was covered by a claimed tile
+    * @param  manager the tile manager
+    * @param  rows    the amount of pixel rows
+    * @param  cols    the amount of pixel columns
+    * @param  workers the amount of workers which claim tiles - the first workers of the
+    *                 manager, the others never run
+    * @return         the amount of claims of every pixel, row by row
+    * @throws InterruptedException if interrupted while waiting for the workers
+    */
+   private static int[] claimAll(TileManager manager, int rows, int cols, int workers) throws InterruptedException {
+      AtomicIntegerArray pixels = new AtomicIntegerArray(rows * cols);
+      Thread[] threads = new Thread[workers];
+      for (int w = 0; w < workers; ++w) {
+         final int worker = w;
+         threads[w] = new Thread(() -> {
+            int tile;
+            while ((tile = manager.nextTile(worker)) >= 0)
+               for (int i = manager.startRow(tile); i < manager.endRow(tile); ++i)
+                  for (int j = manager.startCol(tile); j < manager.endCol(tile); ++j)
+                     pixels.incrementAndGet(i * cols + j);
+         });
+         threads[w].start();
+      }
+      for (Thread thread : threads) thread.join();
+      int[] counts = new int[rows * cols];
+      for (int p = 0; p < counts.length; ++p) counts[p] = pixels.get(p);
+      return counts;
+   }
+
+   /**
+    * Asserts that every pixel was claimed exactly once
+    * @param counts  the amount of claims of every pixel
+    * @param message the message of a failure
+    */
+   private static void assertClaimedOnce(int[] counts, String message) {
+      for (int p = 0; p < counts.length; ++p)
+         assertEquals(1, counts[p], message + " - pixel " + p);
+   }
+
+   /** Test method for {@link renderer.TileManager#nextTile(int)}. */
+   @Test
+   void testNextTile() throws InterruptedException {
+      // ============ Equivalence Partitions Tests ==============
+      // TC01: A single worker claims every pixel exactly once
+      assertClaimedOnce(claimAll(new TileManager(64, 64, 16, 1), 64, 64, 1), "Single worker");
+      // TC02: Several workers claim every pixel exactly once
+      assertClaimedOnce(claimAll(new TileManager(300, 200, 16, 4), 300, 200, 4), "Several workers");
+      // TC03: Tiles which don't divide the image are cut at its edges
+      TileManager uneven = new TileManager(37, 50, 16, 3);
+      assertEquals(12, uneven.tileCount(), "Wrong amount of tiles");
+      assertEquals(32, uneven.startRow(11), "Wrong first row of the last tile");
+      assertEquals(37, uneven.endRow(11), "Wrong end row of the last tile");
+      assertEquals(48, uneven.startCol(11), "Wrong first column of the last tile");
+      assertEquals(50, uneven.endCol(11), "Wrong end column of the last tile");
+      assertClaimedOnce(claimAll(uneven, 37, 50, 3), "Uneven tiles");
+      // TC04: Rectangular tiles - rows of the image
+      assertClaimedOnce(claimAll(new TileManager(45, 70, 70, 1, 4), 45, 70, 4), "Rectangular tiles");
+      // TC05: A worker which runs alone steals the tiles of the workers which never run
+      assertClaimedOnce(claimAll(new TileManager(100, 100, 16, 8), 100, 100, 1), "Stealing worker");
+
+      // =============== Boundary Values Tests ==================
+      // TC11: More workers than tiles
+      assertClaimedOnce(claimAll(new TileManager(20, 20, 16, 8), 20, 20, 8), "More workers than tiles");
+      // TC12: A tile bigger than the image
+      assertClaimedOnce(claimAll(new TileManager(10, 7, 32, 2), 10, 7, 2), "Tile bigger than the image");
+      // TC13: Tiles of a single pixel
+      assertClaimedOnce(claimAll(new TileManager(13, 11, 1, 3), 13, 11, 3), "Single pixel tiles");
+      // TC14: Nothing is left after all the tiles were claimed
+      TileManager done = new TileManager(16, 16, 16, 2);
+      claimAll(done, 16, 16, 2);
+      assertEquals(-1, done.nextTile(0), "Claimed a tile after all the tiles were claimed");
+   }
+
+   /** Test method for {@link renderer.TileManager#TileManager(int, int, int, int)}. */
+   @Test
+   void testConstructor() {
+      // =============== Boundary Values Tests ==================
+      // TC11: Tile size must be positive
+      assertThrows(IllegalArgumentException.class, () -> new TileManager(10, 10, 0, 1), "Zero tile size");
+      // TC12: Amount of workers must be positive
+      assertThrows(IllegalArgumentException.class, () -> new TileManager(10, 10, 4, 0), "No workers");
+   }
+}